@@ -0,0 +1,125 @@
+#!/usr/bin/env python3
+"""
+Load test: does a pile of slow AI calls starve the rest of the API?
+
+Measures throughput and latency of a cheap endpoint (default GET
+/api/forum/topics) twice: once on an idle server, then while N advice calls
+(default 50) are pending against Ollama. Advice requests use made-up disease
+names so they miss the advice cache and really hit the model.
+
+With blocking controllers each pending advice call holds a Tomcat worker,
+and the second measurement collapses once they run out. With asynchronous
+controllers the two measurements should be close.
+
+Usage:
+    python3 ai_endpoint_starvation.py --base-url http://localhost:8080
+    python3 ai_endpoint_starvation.py --pending 50 --duration 30 --probe-path /api/forum/topics
+
+Only the Python standard library is needed.
+"""
+
+import argparse
+import json
+import statistics
+import threading
+import time
+import urllib.request
+import uuid
+
+
+def request(method, url, body=None, timeout=10.0):
+    data = json.dumps(body).encode() if body is not None else None
+    req = urllib.request.Request(url, data=data, method=method,
+                                 headers={"Content-Type": "application/json"})
+    start = time.perf_counter()
+    with urllib.request.urlopen(req, timeout=timeout) as resp:
+        resp.read()
+        status = resp.status
+    return status, time.perf_counter() - start
+
+
+def probe(base_url, path, concurrency, duration):
+    """Hammer the probe endpoint for `duration` seconds; return (ok, errors, latencies)."""
+    deadline = time.perf_counter() + duration
+    latencies, errors = [], [0]
+    lock = threading.Lock()
+
+    def worker():
+        while time.perf_counter() < deadline:
+            try:
+                status, elapsed = request("GET", base_url + path, timeout=5.0)
+                with lock:
+                    if status == 200:
+                        latencies.append(elapsed)
+                    else:
+                        errors[0] += 1
+            except Exception:
+                with lock:
+                    errors[0] += 1
+
+    threads = [threading.Thread(target=worker) for _ in range(concurrency)]
+    for t in threads:
+        t.start()
+    for t in threads:
+        t.join()
+    return len(latencies), errors[0], latencies
+
+
+def report(label, ok, errors, latencies, duration):
+    if latencies:
+        ordered = sorted(latencies)
+        p95 = ordered[min(len(ordered) - 1, int(len(ordered) * 0.95))]
+        print(f"{label:>22}: {ok / duration:8.1f} req/s  ok={ok} errors={errors}  "
+              f"p50={statistics.median(ordered) * 1000:.0f} ms  p95={p95 * 1000:.0f} ms")
+    else:
+        print(f"{label:>22}: no successful requests (errors={errors})")
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--base-url", default="http://localhost:8080")
+    parser.add_argument("--pending", type=int, default=50, help="concurrent advice calls to keep pending")
+    parser.add_argument("--duration", type=float, default=20.0, help="seconds per probe measurement")
+    parser.add_argument("--probe-path", default="/api/forum/topics")
+    parser.add_argument("--probe-concurrency", type=int, default=8)
+    parser.add_argument("--advice-timeout", type=float, default=200.0)
+    args = parser.parse_args()
+
+    print(f"Baseline: {args.probe_path} for {args.duration:.0f}s, no AI load")
+    report("baseline", *probe(args.base_url, args.probe_path, args.probe_concurrency, args.duration), args.duration)
+
+    run = uuid.uuid4().hex[:8]
+    pending = [0]
+    done = {"ok": 0, "failed": 0}
+    lock = threading.Lock()
+
+    def advice_call(i):
+        with lock:
+            pending[0] += 1
+        try:
+            request("POST", args.base_url + "/api/ml/advice", {
+                "crop_name": "Loadtest",
+                "disease_name": f"Synthetic blight {run}-{i}",
+                "confidence": "0.9",
+            }, timeout=args.advice_timeout)
+            key = "ok"
+        except Exception:
+            key = "failed"
+        with lock:
+            pending[0] -= 1
+            done[key] += 1
+
+    # Daemon threads: the script exits without waiting for advice calls to finish
+    for i in range(args.pending):
+        threading.Thread(target=advice_call, args=(i,), daemon=True).start()
+    time.sleep(2.0)  # let the advice requests reach the server
+
+    print(f"Under load: {args.probe_path} for {args.duration:.0f}s with {pending[0]} advice calls pending")
+    report("with pending advice", *probe(args.base_url, args.probe_path, args.probe_concurrency, args.duration),
+           args.duration)
+    with lock:
+        print(f"Advice calls still pending: {pending[0]}, finished ok: {done['ok']}, failed: {done['failed']}")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,137 @@
+#!/usr/bin/env python3
+"""
+Accuracy parity: does server-side downscaling (ml.preprocess.*) change what
+the classifier predicts?
+
+Walks a dataset laid out like the seeder's Basic_dataset
+(<root>/<Crop___Disease>/<image>) and predicts every image twice:
+
+  * original - the untouched file posted straight to the ML service /predict
+  * backend  - the same file posted to the backend /api/ml/predict, which
+               orients, downscales and re-encodes it before inference
+
+and reports top-1 accuracy against the folder label for both, how often the
+two agree, the largest confidence difference, and per-image latency.
+
+The backend caches predictions by upload content, so run it against a fresh
+backend (or one whose cache has not seen these files) with
+ml.preprocess.enabled=true. Each backend prediction may also queue
+speculative advice generation for the predicted disease.
+
+Usage:
+    python3 downscale_accuracy_parity.py --dataset ../Basic_dataset
+    python3 downscale_accuracy_parity.py --per-class 20 --ml-url http://localhost:5000 \\
+        --backend-url http://localhost:8080
+
+Only the Python standard library is needed.
+"""
+
+import argparse
+import json
+import mimetypes
+import os
+import statistics
+import time
+import urllib.error
+import urllib.request
+import uuid
+
+IMAGE_EXTENSIONS = {".jpg", ".jpeg", ".png", ".bmp", ".webp"}
+
+
+def post_image(url, path, timeout):
+    boundary = uuid.uuid4().hex
+    with open(path, "rb") as f:
+        data = f.read()
+    filename = os.path.basename(path)
+    content_type = mimetypes.guess_type(filename)[0] or "application/octet-stream"
+    body = (f"--{boundary}\r\n"
+            f'Content-Disposition: form-data; name="image"; filename="{filename}"\r\n'
+            f"Content-Type: {content_type}\r\n\r\n").encode() + data + f"\r\n--{boundary}--\r\n".encode()
+    req = urllib.request.Request(url, data=body, method="POST",
+                                 headers={"Content-Type": f"multipart/form-data; boundary={boundary}"})
+    start = time.perf_counter()
+    try:
+        with urllib.request.urlopen(req, timeout=timeout) as resp:
+            payload = json.loads(resp.read())
+    except urllib.error.HTTPError as e:
+        payload = {"error": f"HTTP {e.code}"}
+    return payload, time.perf_counter() - start, len(data)
+
+
+def dataset_images(root, per_class):
+    for label in sorted(os.listdir(root)):
+        folder = os.path.join(root, label)
+        if not os.path.isdir(folder):
+            continue
+        files = sorted(f for f in os.listdir(folder) if os.path.splitext(f)[1].lower() in IMAGE_EXTENSIONS)
+        for name in files[:per_class] if per_class > 0 else files:
+            yield label, os.path.join(folder, name)
+
+
+def summarize(name, latencies):
+    if not latencies:
+        return f"{name}: no successful calls"
+    ordered = sorted(latencies)
+    p95 = ordered[min(len(ordered) - 1, int(len(ordered) * 0.95))]
+    return f"{name}: mean {statistics.mean(ordered) * 1000:.0f} ms, p95 {p95 * 1000:.0f} ms"
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__.split("\n\n")[0])
+    parser.add_argument("--dataset", default="../Basic_dataset")
+    parser.add_argument("--per-class", type=int, default=10, help="images per class, 0 for all")
+    parser.add_argument("--ml-url", default="http://localhost:5000")
+    parser.add_argument("--backend-url", default="http://localhost:8080")
+    parser.add_argument("--timeout", type=float, default=60.0)
+    args = parser.parse_args()
+
+    if not os.path.isdir(args.dataset):
+        parser.error(f"dataset directory not found: {args.dataset}")
+
+    total = correct_original = correct_backend = agree = errors = 0
+    max_confidence_delta = 0.0
+    original_latency, backend_latency, sizes = [], [], []
+    disagreements = []
+
+    for label, path in dataset_images(args.dataset, args.per_class):
+        original, t_original, size = post_image(args.ml_url.rstrip("/") + "/predict", path, args.timeout)
+        backend_response, t_backend, _ = post_image(args.backend_url.rstrip("/") + "/api/ml/predict",
+                                                    path, args.timeout)
+        backend = backend_response.get("prediction") or backend_response
+
+        if original.get("error") or backend.get("error"):
+            errors += 1
+            print(f"  error {path}: {original.get('error') or backend.get('error')}")
+            continue
+
+        total += 1
+        sizes.append(size)
+        original_latency.append(t_original)
+        backend_latency.append(t_backend)
+        correct_original += original.get("prediction") == label
+        correct_backend += backend.get("prediction") == label
+        if original.get("prediction") == backend.get("prediction"):
+            agree += 1
+            if original.get("confidence") is not None and backend.get("confidence") is not None:
+                max_confidence_delta = max(max_confidence_delta,
+                                           abs(original["confidence"] - backend["confidence"]))
+        else:
+            disagreements.append((path, original.get("prediction"), backend.get("prediction")))
+
+    if total == 0:
+        print(f"No images predicted ({errors} errors)")
+        return
+
+    print(f"\n{total} images, {errors} errors, mean upload {statistics.mean(sizes) / 1024:.0f} KiB")
+    print(f"top-1 accuracy  original {correct_original / total:.1%}   downscaled {correct_backend / total:.1%}")
+    print(f"agreement       {agree / total:.1%} ({len(disagreements)} differ), "
+          f"max confidence delta when agreeing {max_confidence_delta:.3f}")
+    print(summarize("original (ML direct)", original_latency))
+    print(summarize("downscaled (backend)", backend_latency))
+    for path, a, b in disagreements[:20]:
+        print(f"  differs: {path}: {a} -> {b}")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,235 @@
+#!/usr/bin/env python3
+"""
+Tail latency with and without ML request hedging (ml.hedge.*).
+
+Two parts:
+
+  stub  - a stand-in for the ML service on one or more ports. /predict and
+          /predict-batch answer after --base-ms, except that a --stall-rate
+          fraction of requests stalls for --stall-ms first (model warm-up, GC).
+  load  - closed-loop clients posting unique synthetic leaf images to the
+          backend /api/ml/predict, reporting p50/p95/p99/max. Every image is
+          different, so the prediction cache never answers.
+
+Run the backend against the stub once per mode and compare:
+
+    python3 hedging_tail_latency.py stub --ports 5000 5001
+
+    # hedging off
+    ./mvnw spring-boot:run -Dspring-boot.run.arguments="--ml.base-url=http://localhost:5000 \\
+        --ml.hedge.enabled=false"
+    python3 hedging_tail_latency.py load --label off --json-out off.json
+
+    # hedging on, duplicates going to the second stub
+    ./mvnw spring-boot:run -Dspring-boot.run.arguments="--ml.base-url=http://localhost:5000 \\
+        --ml.hedge.enabled=true --ml.hedge.urls=http://localhost:5001"
+    python3 hedging_tail_latency.py load --label on --json-out on.json
+
+    python3 hedging_tail_latency.py compare off.json on.json
+
+The stub prints how many requests it served, so the extra load from hedges
+can be checked against ml.hedge.budget-ratio (the backend also exports
+ml.hedge.sent and ml.hedge.won). Stalls are independent per request, which
+is the case hedging is for; a replica that is slow for every request is
+handled by the client's concurrency limit instead.
+Only the Python standard library is needed.
+"""
+
+import argparse
+import json
+import random
+import struct
+import threading
+import time
+import urllib.request
+import uuid
+import zlib
+from http.server import BaseHTTPRequestHandler, ThreadingHTTPServer
+
+PREDICTION = {
+    "is_leaf": True,
+    "leaf_probability": 0.97,
+    "prediction_index": 0,
+    "prediction": "Tomato___Early_blight",
+    "confidence": 0.93,
+    "top5": [{"label": "Tomato___Early_blight", "prob": 0.93}],
+}
+
+
+# ---------- stub ML service ----------
+
+def run_stub(args):
+    served = {"count": 0, "stalled": 0}
+    lock = threading.Lock()
+
+    class Handler(BaseHTTPRequestHandler):
+        protocol_version = "HTTP/1.1"
+
+        def do_POST(self):
+            body = self.rfile.read(int(self.headers.get("Content-Length", 0)))
+            stalled = random.random() < args.stall_rate
+            with lock:
+                served["count"] += 1
+                served["stalled"] += stalled
+            time.sleep((args.stall_ms if stalled else args.base_ms) / 1000.0)
+
+            if self.path.startswith("/predict-batch"):
+                images = max(1, body.count(b'name="images"'))
+                payload = {"results": [PREDICTION] * images}
+            elif self.path.startswith("/predict"):
+                payload = PREDICTION
+            else:
+                self.send_error(404)
+                return
+            data = json.dumps(payload).encode()
+            self.send_response(200)
+            self.send_header("Content-Type", "application/json")
+            self.send_header("Content-Length", str(len(data)))
+            self.end_headers()
+            self.wfile.write(data)
+
+        def log_message(self, *unused):
+            pass
+
+    servers = [ThreadingHTTPServer(("0.0.0.0", port), Handler) for port in args.ports]
+    for server in servers:
+        threading.Thread(target=server.serve_forever, daemon=True).start()
+    print(f"Stub ML service on ports {args.ports}: {args.base_ms} ms, "
+          f"{args.stall_rate:.1%} of requests stall {args.stall_ms} ms. Ctrl-C to stop.")
+    try:
+        while True:
+            time.sleep(10)
+            with lock:
+                print(f"served {served['count']} requests ({served['stalled']} stalled)")
+    except KeyboardInterrupt:
+        pass
+
+
+# ---------- load generator ----------
+
+def leaf_png(size=64):
+    """A unique, mostly green PNG that passes the backend's leaf pre-filter."""
+    rows = bytearray()
+    for _ in range(size):
+        rows.append(0)
+        for _ in range(size):
+            rows += bytes((random.randint(20, 60), random.randint(120, 200), random.randint(20, 60)))
+
+    def chunk(kind, data):
+        return struct.pack(">I", len(data)) + kind + data + struct.pack(">I", zlib.crc32(kind + data) & 0xFFFFFFFF)
+
+    return (b"\x89PNG\r\n\x1a\n"
+            + chunk(b"IHDR", struct.pack(">IIBBBBB", size, size, 8, 2, 0, 0, 0))
+            + chunk(b"IDAT", zlib.compress(bytes(rows)))
+            + chunk(b"IEND", b""))
+
+
+def predict(base_url, timeout):
+    boundary = uuid.uuid4().hex
+    body = (f"--{boundary}\r\n"
+            f'Content-Disposition: form-data; name="image"; filename="leaf.png"\r\n'
+            f"Content-Type: image/png\r\n\r\n").encode() + leaf_png() + f"\r\n--{boundary}--\r\n".encode()
+    req = urllib.request.Request(base_url + "/api/ml/predict", data=body, method="POST",
+                                 headers={"Content-Type": f"multipart/form-data; boundary={boundary}"})
+    start = time.perf_counter()
+    try:
+        with urllib.request.urlopen(req, timeout=timeout) as resp:
+            payload = json.loads(resp.read())
+        prediction = payload.get("prediction") or {}
+        ok = prediction.get("error") is None
+    except Exception:
+        ok = False
+    return ok, time.perf_counter() - start
+
+
+def percentile(values, p):
+    if not values:
+        return None
+    ordered = sorted(values)
+    return ordered[min(len(ordered) - 1, int(len(ordered) * p))]
+
+
+def run_load(args):
+    latencies, errors = [], [0]
+    lock = threading.Lock()
+    warmup_end = time.perf_counter() + args.warmup
+    deadline = warmup_end + args.duration
+
+    def worker():
+        while time.perf_counter() < deadline:
+            ok, elapsed = predict(args.base_url, args.timeout)
+            if time.perf_counter() < warmup_end:
+                continue
+            with lock:
+                if ok:
+                    latencies.append(elapsed)
+                else:
+                    errors[0] += 1
+
+    threads = [threading.Thread(target=worker) for _ in range(args.clients)]
+    for t in threads:
+        t.start()
+    for t in threads:
+        t.join()
+
+    summary = {"label": args.label, "requests": len(latencies), "errors": errors[0]}
+    for name, p in (("p50", 0.50), ("p95", 0.95), ("p99", 0.99), ("max", 1.0)):
+        value = percentile(latencies, p)
+        summary[name + "_ms"] = round(value * 1000, 1) if value is not None else None
+    print_summary(summary)
+    if args.json_out:
+        with open(args.json_out, "w") as f:
+            json.dump(summary, f, indent=2)
+
+
+def print_summary(s):
+    print(f"{s['label']}: {s['requests']} ok, {s['errors']} errors, p50 {s['p50_ms']} ms, "
+          f"p95 {s['p95_ms']} ms, p99 {s['p99_ms']} ms, max {s['max_ms']} ms")
+
+
+def compare(path_a, path_b):
+    with open(path_a) as f:
+        a = json.load(f)
+    with open(path_b) as f:
+        b = json.load(f)
+    print_summary(a)
+    print_summary(b)
+    for key in ("p50_ms", "p95_ms", "p99_ms"):
+        if a.get(key) and b.get(key):
+            print(f"{key[:-3]}: {a[key]} -> {b[key]} ms ({(b[key] - a[key]) / a[key]:+.0%})")
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    sub = parser.add_subparsers(dest="command", required=True)
+
+    stub = sub.add_parser("stub", help="run the stub ML service")
+    stub.add_argument("--ports", type=int, nargs="+", default=[5000, 5001])
+    stub.add_argument("--base-ms", type=float, default=30.0, help="normal response time")
+    stub.add_argument("--stall-rate", type=float, default=0.03, help="fraction of requests that stall")
+    stub.add_argument("--stall-ms", type=float, default=2000.0, help="stall duration")
+
+    load = sub.add_parser("load", help="drive the backend /api/ml/predict")
+    load.add_argument("--base-url", default="http://localhost:8080")
+    load.add_argument("--clients", type=int, default=16, help="concurrent closed-loop clients")
+    load.add_argument("--duration", type=float, default=60.0, help="measured seconds")
+    load.add_argument("--warmup", type=float, default=10.0,
+                      help="unmeasured seconds before measuring (lets the backend learn its p95)")
+    load.add_argument("--timeout", type=float, default=60.0)
+    load.add_argument("--label", default="run")
+    load.add_argument("--json-out")
+
+    cmp = sub.add_parser("compare", help="compare two load --json-out files")
+    cmp.add_argument("files", nargs=2, metavar=("A.json", "B.json"))
+
+    args = parser.parse_args()
+    if args.command == "stub":
+        run_stub(args)
+    elif args.command == "load":
+        run_load(args)
+    else:
+        compare(*args.files)
+
+
+if __name__ == "__main__":
+    main()
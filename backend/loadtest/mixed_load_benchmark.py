@@ -0,0 +1,155 @@
+#!/usr/bin/env python3
+"""
+Mixed-load benchmark: throughput and p99 latency per endpoint, for comparing
+platform-thread and virtual-thread mode (spring.threads.virtual.enabled).
+
+The load mixes cheap JPA reads, a trivial endpoint, cached advice, and a trickle of uncached
+advice calls that block on Ollama, which is the pattern where virtual
+threads should help. Run it once per mode and compare:
+
+    # platform threads
+    ./mvnw spring-boot:run -Dspring-boot.run.arguments=--spring.threads.virtual.enabled=false
+    python3 mixed_load_benchmark.py --label platform --json-out platform.json
+
+    # virtual threads
+    ./mvnw spring-boot:run -Dspring-boot.run.arguments=--spring.threads.virtual.enabled=true
+    python3 mixed_load_benchmark.py --label virtual --json-out virtual.json
+
+    python3 mixed_load_benchmark.py --compare platform.json virtual.json
+
+Keep Ollama, the database and the client machine the same between runs.
+Only the Python standard library is needed.
+"""
+
+import argparse
+import json
+import random
+import threading
+import time
+import urllib.request
+import uuid
+
+# (name, weight, method, path, body factory); weights are relative
+RUN_ID = uuid.uuid4().hex[:8]
+MIX = [
+    ("forum_topics", 50, "GET", "/api/forum/topics", None),
+    ("advice_cached", 35, "POST", "/api/ml/advice",
+     lambda: {"crop_name": "Tomato", "disease_name": "Early_blight", "confidence": "0.9"}),
+    ("advice_uncached", 5, "POST", "/api/ml/advice",
+     lambda: {"crop_name": "Loadtest", "disease_name": f"Synthetic blight {RUN_ID}-{uuid.uuid4().hex[:6]}",
+              "confidence": "0.9"}),
+    ("test_all", 10, "GET", "/api/test/all", None),
+]
+
+
+def call(base_url, method, path, body, timeout):
+    data = json.dumps(body).encode() if body is not None else None
+    req = urllib.request.Request(base_url + path, data=data, method=method,
+                                 headers={"Content-Type": "application/json"})
+    start = time.perf_counter()
+    try:
+        with urllib.request.urlopen(req, timeout=timeout) as resp:
+            resp.read()
+            ok = 200 <= resp.status < 300
+    except Exception:
+        ok = False
+    return ok, time.perf_counter() - start
+
+
+def percentile(values, p):
+    if not values:
+        return None
+    ordered = sorted(values)
+    return ordered[min(len(ordered) - 1, int(len(ordered) * p))]
+
+
+def run(args):
+    weights = [m[1] for m in MIX]
+    results = {m[0]: {"latencies": [], "errors": 0} for m in MIX}
+    lock = threading.Lock()
+    warmup_end = time.perf_counter() + args.warmup
+    deadline = warmup_end + args.duration
+
+    def worker():
+        while True:
+            now = time.perf_counter()
+            if now >= deadline:
+                return
+            name, _, method, path, body = random.choices(MIX, weights=weights)[0]
+            timeout = 180.0 if name == "advice_uncached" else 30.0
+            ok, elapsed = call(args.base_url, method, path, body() if body else None, timeout)
+            if now < warmup_end:
+                continue
+            with lock:
+                if ok:
+                    results[name]["latencies"].append(elapsed)
+                else:
+                    results[name]["errors"] += 1
+
+    threads = [threading.Thread(target=worker, daemon=True) for _ in range(args.clients)]
+    for t in threads:
+        t.start()
+    for t in threads:
+        t.join(timeout=args.warmup + args.duration + 200)
+
+    summary = {"label": args.label, "clients": args.clients, "duration": args.duration, "endpoints": {}}
+    for name, r in results.items():
+        lat = r["latencies"]
+        summary["endpoints"][name] = {
+            "ok": len(lat),
+            "errors": r["errors"],
+            "throughput": len(lat) / args.duration,
+            "p50_ms": (percentile(lat, 0.50) or 0) * 1000,
+            "p99_ms": (percentile(lat, 0.99) or 0) * 1000,
+        }
+    total = sum(len(r["latencies"]) for r in results.values())
+    summary["total_throughput"] = total / args.duration
+    return summary
+
+
+def print_summary(s):
+    print(f"[{s['label']}] {s['clients']} clients, {s['duration']:.0f}s, "
+          f"total {s['total_throughput']:.1f} req/s")
+    print(f"{'endpoint':<18}{'req/s':>9}{'p50 ms':>10}{'p99 ms':>10}{'errors':>8}")
+    for name, e in s["endpoints"].items():
+        print(f"{name:<18}{e['throughput']:>9.1f}{e['p50_ms']:>10.0f}{e['p99_ms']:>10.0f}{e['errors']:>8}")
+
+
+def compare(path_a, path_b):
+    with open(path_a) as f:
+        a = json.load(f)
+    with open(path_b) as f:
+        b = json.load(f)
+    print(f"{'endpoint':<18}{a['label'] + ' req/s':>16}{b['label'] + ' req/s':>16}"
+          f"{a['label'] + ' p99':>14}{b['label'] + ' p99':>14}")
+    for name in a["endpoints"]:
+        ea, eb = a["endpoints"][name], b["endpoints"].get(name, {})
+        print(f"{name:<18}{ea['throughput']:>16.1f}{eb.get('throughput', 0):>16.1f}"
+              f"{ea['p99_ms']:>14.0f}{eb.get('p99_ms', 0):>14.0f}")
+    print(f"{'total':<18}{a['total_throughput']:>16.1f}{b['total_throughput']:>16.1f}")
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--base-url", default="http://localhost:8080")
+    parser.add_argument("--clients", type=int, default=200, help="concurrent closed-loop clients")
+    parser.add_argument("--duration", type=float, default=60.0, help="measured seconds")
+    parser.add_argument("--warmup", type=float, default=10.0, help="unmeasured seconds before measuring")
+    parser.add_argument("--label", default="run")
+    parser.add_argument("--json-out")
+    parser.add_argument("--compare", nargs=2, metavar=("A.json", "B.json"))
+    args = parser.parse_args()
+
+    if args.compare:
+        compare(*args.compare)
+        return
+
+    summary = run(args)
+    print_summary(summary)
+    if args.json_out:
+        with open(args.json_out, "w") as f:
+            json.dump(summary, f, indent=2)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,51 @@
+package com.example.agriverse.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for the blocking parts of AI endpoints (advice generation, cache
+ * lookups), so controllers can return a CompletableFuture and hand the Tomcat
+ * worker back while Ollama is busy. Bounded: when full, requests are rejected
+ * with 503 instead of piling up.
+ *
+ * With spring.threads.virtual.enabled the workers are virtual threads, so a
+ * request blocked on JDBC or Ollama does not occupy a carrier thread; the pool
+ * then only serves as the concurrency bound.
+ */
+@Configuration
+public class AiRequestExecutorConfig {
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService aiRequestExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${ai.request.max-concurrency:64}") int maxConcurrency,
+            @Value("${ai.request.queue-capacity:200}") int queueCapacity,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("ai-request-", 1).factory()
+                : r -> {
+                    Thread t = new Thread(r, "ai-request-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                maxConcurrency, maxConcurrency, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return ExecutorServiceMetrics.monitor(meterRegistry, executor, "ai.request");
+    }
+}
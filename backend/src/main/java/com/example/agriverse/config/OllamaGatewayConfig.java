@@ -0,0 +1,36 @@
+package com.example.agriverse.config;
+
+import com.example.agriverse.service.llm.OllamaRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class OllamaGatewayConfig {
+
+    @Bean
+    public OllamaRouter ollamaRouter(
+            WebClient genericWebClient,
+            MeterRegistry meterRegistry,
+            @Value("${ollama.endpoints:${ollama.base-url:http://localhost:11434}}") List<String> endpoints,
+            @Value("${ollama.router.max-concurrent-per-instance:2}") int maxConcurrentPerInstance,
+            @Value("${ollama.router.acquire-timeout-ms:30000}") long acquireTimeoutMs,
+            @Value("${ollama.timeout-seconds:120}") int timeoutSeconds,
+            @Value("${ollama.router.failure-threshold:3}") int failureThreshold,
+            @Value("${ollama.router.open-seconds:30}") int openSeconds) {
+
+        OllamaRouter router = new OllamaRouter(genericWebClient, endpoints, new OllamaRouter.Settings(
+                maxConcurrentPerInstance,
+                Duration.ofMillis(acquireTimeoutMs),
+                Duration.ofSeconds(timeoutSeconds),
+                failureThreshold,
+                Duration.ofSeconds(openSeconds)));
+        router.registerMetrics(meterRegistry);
+        return router;
+    }
+}
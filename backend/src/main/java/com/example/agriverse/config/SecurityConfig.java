@@ -42,6 +42,9 @@ public class SecurityConfig {
                                 "/auth/**"
                         ).permitAll()
 
+                        // Metrics name hosts, queues and endpoints; health stays public
+                        .requestMatchers("/actuator/metrics/**").hasRole("ADMIN")
+
                         // ⚠️ NOTE: You currently allow everything:
                         .requestMatchers("/**").permitAll()
 
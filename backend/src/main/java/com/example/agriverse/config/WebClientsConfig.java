@@ -1,20 +1,77 @@
 package com.example.agriverse.config;
 
+import com.example.agriverse.service.resilience.AdaptiveConcurrencyLimiter;
+import com.example.agriverse.service.resilience.ResilientClientFilter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
+
+/**
+ * Both clients get their own connection pool. The ML client also gets a
+ * {@link ResilientClientFilter} (adaptive concurrency limit and circuit
+ * breaker). The generic client, used by the Ollama router, does not: the
+ * router already caps each instance, keeps its own breakers and health
+ * probes, and a second limit under it would refuse generations it has
+ * admitted.
+ */
 @Configuration
 public class WebClientsConfig {
 
     @Bean
-    public WebClient mlWebClient(@Value("${ml.base-url}") String baseUrl) {
-        return WebClient.builder().baseUrl(baseUrl).build();
+    public WebClient mlWebClient(
+            @Value("${ml.base-url}") String baseUrl,
+            MeterRegistry meterRegistry,
+            @Value("${ml.client.max-connections:64}") int maxConnections,
+            @Value("${ml.client.limit.initial:8}") int initialLimit,
+            @Value("${ml.client.limit.min:1}") int minLimit,
+            @Value("${ml.client.limit.max:64}") int maxLimit,
+            @Value("${ml.client.limit.slow-call-ms:5000}") long slowCallMs,
+            @Value("${ml.client.breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${ml.client.breaker.open-seconds:15}") int openSeconds) {
+
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(connector("ml-client", maxConnections))
+                .filter(new ResilientClientFilter("ml", new ResilientClientFilter.Settings(
+                        limit(initialLimit, minLimit, maxLimit, slowCallMs),
+                        failureThreshold,
+                        Duration.ofSeconds(openSeconds)), meterRegistry))
+                .build();
     }
 
     @Bean
-    public WebClient genericWebClient() {
-        return WebClient.builder().build();
+    public WebClient genericWebClient(
+            @Value("${ollama.client.max-connections:32}") int maxConnections) {
+
+        return WebClient.builder()
+                .clientConnector(connector("generic-client", maxConnections))
+                .build();
+    }
+
+    private static AdaptiveConcurrencyLimiter.Settings limit(int initial, int min, int max, long slowCallMs) {
+        return new AdaptiveConcurrencyLimiter.Settings(initial, Math.max(1, min), Math.max(min, max), 0.9,
+                Duration.ofMillis(slowCallMs).toNanos());
+    }
+
+    /**
+     * Bounded pool: callers past maxConnections wait briefly for a connection
+     * instead of opening more, and idle connections are closed before the
+     * server (Flask/Ollama) drops them under us.
+     */
+    private static ReactorClientHttpConnector connector(String name, int maxConnections) {
+        ConnectionProvider provider = ConnectionProvider.builder(name)
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(Duration.ofSeconds(10))
+                .maxIdleTime(Duration.ofSeconds(30))
+                .evictInBackground(Duration.ofSeconds(60))
+                .build();
+        return new ReactorClientHttpConnector(HttpClient.create(provider));
     }
-}
\ No newline at end of file
+}
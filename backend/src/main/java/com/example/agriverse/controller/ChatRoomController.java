@@ -5,9 +5,11 @@ import com.example.agriverse.dto.CreateChatFromIssuesRequest;
 import com.example.agriverse.dto.SendChatMessageRequest;
 import com.example.agriverse.service.ChatRoomService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/chats")
@@ -75,6 +77,12 @@ public class ChatRoomController {
         return ResponseEntity.ok(chatRoomService.getMessages(id, page, size));
     }
 
+    @PreAuthorize("hasAnyRole('USER','GOVT_OFFICER','ADMIN')")
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@PathVariable Long id) {
+        return chatRoomService.subscribe(id);
+    }
+
     @PreAuthorize("hasAnyRole('USER','GOVT_OFFICER','ADMIN')")
     @PostMapping("/{id}/messages")
     public ResponseEntity<?> sendMessage(
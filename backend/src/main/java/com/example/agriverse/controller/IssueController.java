@@ -4,6 +4,7 @@ import com.example.agriverse.dto.CreateIssueRequest;
 import com.example.agriverse.dto.ForwardIssueRequest;
 import com.example.agriverse.model.IssueStatus;
 import com.example.agriverse.service.IssueService;
+import com.example.agriverse.service.PredictionAnalyticsService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -19,6 +20,7 @@ import java.util.Map;
 public class IssueController {
 
     private final IssueService issueService;
+    private final PredictionAnalyticsService predictionAnalyticsService;
 
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @PostMapping(consumes = { "multipart/form-data" })
@@ -104,6 +106,18 @@ public class IssueController {
         return ResponseEntity.ok(issueService.assignToSelf(id));
     }
 
+    /**
+     * The stored ML prediction the issue was created from (label, confidence,
+     * top 5), for re-review without running inference again.
+     */
+    @PreAuthorize("hasAnyRole('GOVT_OFFICER','ADMIN')")
+    @GetMapping("/{id:\\d+}/prediction")
+    public ResponseEntity<?> prediction(@PathVariable Long id) {
+        return predictionAnalyticsService.getPrediction(issueService.getIssue(id).getPredictionId())
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @PreAuthorize("hasAnyRole('GOVT_OFFICER','ADMIN')")
     @PostMapping("/{id:\\d+}/review-disease")
     public ResponseEntity<?> reviewDisease(
@@ -6,16 +6,28 @@ import com.example.agriverse.dto.ml.AdviceResponse;
 import com.example.agriverse.dto.ml.MlPredictionResponse;
 import com.example.agriverse.service.MlPredictionService;
 import com.example.agriverse.service.IssueService;
+import com.example.agriverse.service.PredictionAnalyticsService;
+import com.example.agriverse.service.PredictionRecorder;
+import com.example.agriverse.service.UploadTokenService;
 
+import java.time.Duration;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
+import com.example.agriverse.dto.ml.ModelAccuracyReport;
 import com.example.agriverse.dto.ml.PredictAndCreateResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 import com.example.agriverse.service.AiAdviceService;
 
 @RestController
@@ -25,15 +37,38 @@ public class MlWorkflowController {
     private final MlPredictionService mlPredictionService;
     private final AiAdviceService aiAdviceService;
     private final IssueService issueService;
+    private final UploadTokenService uploadTokenService;
+    private final PredictionRecorder predictionRecorder;
+    private final PredictionAnalyticsService predictionAnalyticsService;
+    private final ExecutorService aiRequestExecutor;
 
     /**
      * POST /api/ml/predict
      * Sends image(s) to Python ML service and returns prediction results.
+     * A confident leaf prediction also starts advice generation in the background.
+     * Asynchronous: no servlet thread is held while the ML service works.
+     * Each image is stored once here; the returned upload tokens and
+     * prediction id let /create-issue attach it without a second upload.
      */
     @PostMapping(value = "/predict", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public PredictAndCreateResponse predict(
+    public CompletableFuture<PredictAndCreateResponse> predict(
             @RequestPart("image") List<MultipartFile> images) {
-        List<MlPredictionResponse> allPredictions = mlPredictionService.predictAll(images);
+        List<UploadTokenService.StoredUpload> uploads = uploadTokenService.store(images);
+        // Finish on the AI executor: prefetchAdvice touches the DB and must not run on a Netty thread
+        return mlPredictionService.predictAllAsync(images)
+                .thenApplyAsync(predictions -> toPredictResponse(predictions, uploads), aiRequestExecutor);
+    }
+
+    private PredictAndCreateResponse toPredictResponse(List<MlPredictionResponse> allPredictions,
+                                                       List<UploadTokenService.StoredUpload> uploads) {
+        boolean[] recorded = new boolean[allPredictions.size()];
+        for (int i = 0; i < Math.min(allPredictions.size(), uploads.size()); i++) {
+            UploadTokenService.StoredUpload upload = uploads.get(i);
+            if (upload != null) {
+                recorded[i] = predictionRecorder.record(upload.predictionId(), upload.imageHash(), upload.filename(),
+                        allPredictions.get(i));
+            }
+        }
 
         MlPredictionResponse best = allPredictions.stream()
                 .filter(p -> p.error == null && p.is_leaf != null && p.is_leaf)
@@ -47,15 +82,33 @@ public class MlWorkflowController {
                     .orElse(allPredictions.isEmpty() ? null : allPredictions.get(0));
         }
 
+        // Start advice now; the farmer's /advice call joins it or hits the cache
+        if (best != null && best.error == null && Boolean.TRUE.equals(best.is_leaf) && best.prediction != null) {
+            aiAdviceService.prefetchAdvice(best.getCropName(), best.getDiseaseName(), best.confidence);
+        }
+
+        // Cached predictions are shared objects, so tokens go alongside them rather than into them
+        int bestIndex = best != null ? allPredictions.indexOf(best) : -1;
+        // Only a prediction that is being stored gets an id for create-issue to link
+        UploadTokenService.StoredUpload bestUpload = bestIndex >= 0 && bestIndex < uploads.size() && recorded[bestIndex]
+                ? uploads.get(bestIndex) : null;
+
         return PredictAndCreateResponse.builder()
                 .prediction(best)
                 .allPredictions(allPredictions)
                 .advice(null)
+                .predictionId(bestUpload != null ? bestUpload.predictionId() : null)
+                .uploadTokens(uploads.stream().map(u -> u != null ? u.token() : null).toList())
                 .build();
     }
 
+    /**
+     * POST /api/ml/advice
+     * Asynchronous: generation runs on the AI request executor so a slow
+     * Ollama call does not hold a servlet thread.
+     */
     @PostMapping("/advice")
-    public Map<String, Object> advice(@RequestBody Map<String, String> body) {
+    public CompletableFuture<Map<String, Object>> advice(@RequestBody Map<String, String> body) {
         String cropName = body.getOrDefault("crop_name", "Unknown");
         String diseaseName = body.getOrDefault("disease_name", "Unknown");
         String confidenceStr = body.get("confidence");
@@ -64,17 +117,48 @@ public class MlWorkflowController {
             try { confidence = Double.parseDouble(confidenceStr); } catch (NumberFormatException ignored) {}
         }
 
-        AdviceResponse adviceResponse = aiAdviceService.getAdvice(cropName, diseaseName, confidence);
-        return Map.of(
-                "prediction", diseaseName,
-                "confidence", confidence != null ? confidence : 0.0,
-                "advice", adviceResponse
-        );
+        Double requestConfidence = confidence;
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                AdviceResponse adviceResponse = aiAdviceService.getAdvice(cropName, diseaseName, requestConfidence);
+                return Map.<String, Object>of(
+                        "prediction", diseaseName,
+                        "confidence", requestConfidence != null ? requestConfidence : 0.0,
+                        "advice", adviceResponse
+                );
+            }, aiRequestExecutor);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many advice requests, try again shortly");
+        }
+    }
+
+    /**
+     * GET /api/ml/advice/{adviceId}/bn
+     * Advice returned by /advice is English first; poll this until
+     * translationStatus is no longer PENDING to get the Bangla fields.
+     */
+    @GetMapping("/advice/{adviceId}/bn")
+    public ResponseEntity<AdviceResponse> adviceTranslation(@PathVariable String adviceId) {
+        return aiAdviceService.getTranslation(adviceId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * GET /api/ml/analytics/accuracy?days=30
+     * Stored predictions compared with officers' reviewed diagnoses.
+     */
+    @PreAuthorize("hasAnyRole('GOVT_OFFICER','ADMIN')")
+    @GetMapping("/analytics/accuracy")
+    public ModelAccuracyReport accuracy(@RequestParam(defaultValue = "30") int days) {
+        return predictionAnalyticsService.accuracy(Duration.ofDays(Math.max(1, days)));
     }
 
     /**
      * POST /api/ml/create-issue
-     * Creates an Issue from a disease detection result.
+     * Creates an Issue from a disease detection result. Images can be sent
+     * again as "image" parts or, preferably, referenced by the "uploadToken"
+     * parts returned from /predict.
      * Replaces the old /api/ml/forward endpoint for the new Issue-first workflow.
      */
     @PostMapping(value = "/create-issue", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -88,6 +172,8 @@ public class MlWorkflowController {
             @RequestPart("longitude") String longitude,
             @RequestPart(value = "locationText", required = false) String locationText,
             @RequestPart(value = "forwardMode", required = false) String forwardMode,
+            @RequestPart(value = "predictionId", required = false) String predictionId,
+            @RequestPart(value = "uploadToken", required = false) List<String> uploadTokens,
             @RequestPart(value = "image", required = false) List<MultipartFile> images) {
 
         CreateIssueRequest req = new CreateIssueRequest();
@@ -99,6 +185,8 @@ public class MlWorkflowController {
         req.setLatitude(Double.parseDouble(latitude));
         req.setLongitude(Double.parseDouble(longitude));
         req.setLocationText(locationText);
+        req.setPredictionId(predictionId != null ? Long.parseLong(predictionId) : null);
+        req.setUploadTokens(uploadTokens);
 
         if ("nearest".equalsIgnoreCase(forwardMode)) {
             return issueService.createIssueForNearestOfficer(req, images);
@@ -0,0 +1,56 @@
+package com.example.agriverse.controller;
+
+import com.example.agriverse.dto.ml.PredictionJobResponse;
+import com.example.agriverse.service.PredictionJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+/**
+ * Background prediction for large batches: submit images, get a job id, then
+ * poll the job or follow its event stream for per-image results.
+ */
+@RestController
+@RequestMapping("/api/ml/jobs")
+@RequiredArgsConstructor
+public class PredictionJobController {
+
+    private final PredictionJobService predictionJobService;
+
+    /**
+     * POST /api/ml/jobs
+     * Accepts the images ("image" parts) and returns the queued job at once.
+     */
+    @PreAuthorize("isAuthenticated()")
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<PredictionJobResponse> submit(@RequestPart("image") List<MultipartFile> images) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(predictionJobService.submit(images));
+    }
+
+    /**
+     * GET /api/ml/jobs/{id}
+     * Job progress with every item's result so far.
+     */
+    @PreAuthorize("isAuthenticated()")
+    @GetMapping("/{id:\\d+}")
+    public PredictionJobResponse get(@PathVariable Long id) {
+        return predictionJobService.getJob(id);
+    }
+
+    /**
+     * GET /api/ml/jobs/{id}/events
+     * Server-sent events: "snapshot", then "item" per finished image, then "completed".
+     */
+    @PreAuthorize("isAuthenticated()")
+    @GetMapping(value = "/{id:\\d+}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable Long id) {
+        return predictionJobService.subscribe(id);
+    }
+}
@@ -17,5 +17,6 @@ public class ChatMessageResponse {
     private String targetType;
     private String content;
     private MessageType type;
+    private boolean draft;
     private Instant createdAt;
 }
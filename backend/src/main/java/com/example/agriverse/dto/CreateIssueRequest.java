@@ -5,6 +5,8 @@ import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.List;
+
 @Getter
 @Setter
 public class CreateIssueRequest {
@@ -23,4 +25,8 @@ public class CreateIssueRequest {
     private Double longitude;
 
     private String locationText;
+
+    // From /api/ml/predict: images already uploaded there, and the prediction the issue is based on
+    private List<String> uploadTokens;
+    private Long predictionId;
 }
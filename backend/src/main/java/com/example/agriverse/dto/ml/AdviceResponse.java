@@ -1,20 +1,28 @@
 package com.example.agriverse.dto.ml;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 
 import java.util.List;
 
 @Getter
-@Builder
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
 public class AdviceResponse {
+    // Identifies this advice when fetching its Bangla translation; null for uncached advice
+    private String adviceId;
+    private AdviceTranslationStatus translationStatus;
+
     private String summary;
     private List<String> immediateActions;
     private List<String> prevention;
     private List<String> whyThisHappens;
     private String whenToEscalate;
 
-    // Bangla translations (null if translation failed or not attempted)
+    // Bangla translations (null until translationStatus is READY)
     private String summaryBn;
     private List<String> immediateActionsBn;
     private List<String> preventionBn;
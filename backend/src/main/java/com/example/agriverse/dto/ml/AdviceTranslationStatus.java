@@ -0,0 +1,15 @@
+package com.example.agriverse.dto.ml;
+
+/**
+ * State of the Bangla half of an {@link AdviceResponse}.
+ */
+public enum AdviceTranslationStatus {
+    /** Bangla fields are filled in. */
+    READY,
+    /** Translation is running; fetch it later with the advice id. */
+    PENDING,
+    /** Translation failed recently; the English advice stands on its own. */
+    FAILED,
+    /** No translation will be produced for this advice. */
+    UNAVAILABLE
+}
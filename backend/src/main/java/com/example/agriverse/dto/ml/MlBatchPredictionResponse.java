@@ -0,0 +1,18 @@
+package com.example.agriverse.dto.ml;
+
+import java.util.List;
+
+/**
+ * Response of the ML service's /predict-batch: one entry per image, in upload order.
+ */
+public class MlBatchPredictionResponse {
+
+    public List<MlPredictionResponse> results;
+
+    // Per entry, the HTTP status /predict would have answered with (400 bad image, 500 service failure);
+    // absent from older ML services
+    public List<Integer> statuses;
+
+    // Error for the whole batch (e.g. too many images)
+    public String error;
+}
@@ -1,7 +1,11 @@
 package com.example.agriverse.dto.ml;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 import java.util.List;
 
+// Also read back from stored JSON, which includes the cropName/diseaseName helpers
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class MlPredictionResponse {
 
     // Leaf gate result
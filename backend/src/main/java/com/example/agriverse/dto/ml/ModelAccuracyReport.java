@@ -0,0 +1,43 @@
+package com.example.agriverse.dto.ml;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * How the classifier's stored predictions compare with officers' reviewed
+ * diagnoses, over predictions made since {@code since}.
+ */
+@Getter
+@Builder
+public class ModelAccuracyReport {
+    private Instant since;
+    private long leafPredictions;
+    private long nonLeafPredictions;
+    private long reviewed;
+    private long agreed;
+    private Double accuracy; // agreed / reviewed; null when nothing was reviewed
+    private List<LabelStats> labels;
+    private List<Confusion> topConfusions;
+
+    @Getter
+    @Builder
+    public static class LabelStats {
+        private String label;
+        private long predicted;
+        private Double averageConfidence;
+        private long reviewed;
+        private long agreed;
+        private Double accuracy;
+    }
+
+    @Getter
+    @Builder
+    public static class Confusion {
+        private String predictedLabel;
+        private String reviewedDisease;
+        private long count;
+    }
+}
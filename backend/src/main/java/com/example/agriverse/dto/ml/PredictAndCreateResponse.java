@@ -11,4 +11,6 @@ public class PredictAndCreateResponse {
     private MlPredictionResponse prediction; // best prediction (highest confidence, is_leaf=true)
     private List<MlPredictionResponse> allPredictions; // per-image results
     private String advice; // AI advice text
+    private Long predictionId; // id of the best prediction, for create-issue
+    private List<String> uploadTokens; // per image, same order as allPredictions; null if not stored
 }
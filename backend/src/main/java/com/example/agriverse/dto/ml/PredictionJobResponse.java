@@ -0,0 +1,35 @@
+package com.example.agriverse.dto.ml;
+
+import com.example.agriverse.model.PredictionJobItemStatus;
+import com.example.agriverse.model.PredictionJobStatus;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Builder
+public class PredictionJobResponse {
+    private Long jobId;
+    private PredictionJobStatus status;
+    private int total;
+    private int completed;
+    private int failed;
+    private Instant createdAt;
+    private Instant updatedAt;
+    private List<Item> items; // null in stream events
+
+    @Getter
+    @Builder
+    public static class Item {
+        private int position;
+        private String filename;
+        private PredictionJobItemStatus status;
+        private Long predictionId;
+        private String uploadToken; // for /api/ml/create-issue, like /predict's
+        private MlPredictionResponse result;
+        private String error;
+        private Instant completedAt;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.agriverse.dto.ml;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Builder
+public class StoredPredictionResponse {
+    private Long id;
+    private String imageHash;
+    private Boolean leaf;
+    private String reason;
+    private Double leafProbability;
+    private String label; // "Crop___Disease"
+    private Double confidence;
+    private List<MlPredictionResponse.Top5> top5;
+    private Instant createdAt;
+}
@@ -0,0 +1,34 @@
+package com.example.agriverse.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Persisted advice for one (knowledge key, confidence band). The version is a
+ * hash of the knowledge text and model the advice was generated from; entries
+ * with a stale version are ignored and overwritten.
+ */
+@Entity
+@Table(name = "advice_cache")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AdviceCacheEntry {
+
+    @Id
+    @Column(name = "cache_key", length = 200)
+    private String cacheKey;
+
+    @Column(nullable = false, length = 64)
+    private String version;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
@@ -41,6 +41,9 @@ public class ChatMessage {
     @Column(length = 20)
     private String targetType;
 
+    // True while an AI reply is still being streamed in; cleared once generation finishes
+    private Boolean draft;
+
     @Column(nullable = false)
     private Instant createdAt;
 
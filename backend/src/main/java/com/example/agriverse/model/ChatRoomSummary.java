@@ -0,0 +1,39 @@
+package com.example.agriverse.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Rolling summary of a chat room's older messages, used as AI context in
+ * place of the raw history. Covers every message with id <= lastMessageId.
+ */
+@Entity
+@Table(name = "chat_room_summaries")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatRoomSummary {
+
+    @Id
+    @Column(name = "chat_room_id")
+    private Long chatRoomId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String summary;
+
+    @Column(nullable = false)
+    private Long lastMessageId;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void onSave() {
+        updatedAt = Instant.now();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.agriverse.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * One ML prediction for one uploaded image, as returned by the ML service.
+ * The id is assigned when the image is uploaded (see PredictionIdGenerator)
+ * so it can be handed to the client and linked from an issue before the row
+ * is written; Persistable tells JPA these rows are new, so they are inserted
+ * in batches without a select first.
+ */
+@Entity
+@Table(name = "predictions", indexes = {
+        @Index(name = "idx_predictions_created_at", columnList = "createdAt"),
+        @Index(name = "idx_predictions_image_hash", columnList = "imageHash")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Prediction implements Persistable<Long> {
+
+    @Id
+    private Long id;
+
+    // SHA-256 of the uploaded bytes, hex
+    @Column(nullable = false, length = 64)
+    private String imageHash;
+
+    // Stored image (uploads/pending until claimed by an issue)
+    @Column(length = 200)
+    private String imageFile;
+
+    @Column(nullable = false)
+    private Boolean leaf;
+
+    @Column(length = 500)
+    private String reason;
+
+    private Double leafProbability;
+
+    // "Crop___Disease" as produced by the classifier; null for non-leaves
+    @Column(length = 200)
+    private String label;
+
+    private Double confidence;
+
+    // JSON array of {label, prob}
+    @Column(columnDefinition = "TEXT")
+    private String top5;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Transient
+    @Builder.Default
+    private boolean persisted = false;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.agriverse.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A batch of images submitted for prediction in the background. Progress
+ * counters are updated in the database as items finish, so a job survives a
+ * restart and picks up where it left off.
+ */
+@Entity
+@Table(name = "prediction_jobs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PredictionJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "prediction_job_seq_gen")
+    @SequenceGenerator(name = "prediction_job_seq_gen", sequenceName = "prediction_job_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String ownerUsername;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    @Builder.Default
+    private PredictionJobStatus status = PredictionJobStatus.QUEUED;
+
+    @Column(nullable = false)
+    private Integer total;
+
+    // Items finished (successfully or not)
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer completed = 0;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer failed = 0;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant updatedAt;
+
+    @PrePersist
+    void onCreate() {
+        createdAt = Instant.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        updatedAt = Instant.now();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.agriverse.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * One image of a {@link PredictionJob}. The image itself is stored as a
+ * pending upload; the ML response is kept as JSON once the item is done.
+ */
+@Entity
+@Table(name = "prediction_job_items", indexes = {
+        @Index(name = "idx_prediction_job_items_job", columnList = "job_id"),
+        @Index(name = "idx_prediction_job_items_status", columnList = "status")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PredictionJobItem {
+
+    // Ids reserved 50 at a time: a submission inserts all of its items at once
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "prediction_job_item_seq_gen")
+    @SequenceGenerator(name = "prediction_job_item_seq_gen", sequenceName = "prediction_job_item_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "job_id", nullable = false)
+    private PredictionJob job;
+
+    // Order within the submission
+    @Column(nullable = false)
+    private Integer position;
+
+    @Column(length = 255)
+    private String originalFilename;
+
+    @Column(length = 100)
+    private String contentType;
+
+    // Pending upload holding the image; null if it could not be stored
+    @Column(length = 200)
+    private String storedFile;
+
+    @Column(length = 64)
+    private String imageHash;
+
+    private Long predictionId;
+
+    @Column(length = 500)
+    private String uploadToken;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    @Builder.Default
+    private PredictionJobItemStatus status = PredictionJobItemStatus.PENDING;
+
+    // MlPredictionResponse as JSON
+    @Column(columnDefinition = "TEXT")
+    private String result;
+
+    @Column(length = 1000)
+    private String error;
+
+    // Calls that failed transiently (ML service down or overloaded); retried until ml.jobs.max-attempts
+    // Default in the DDL too, so the column can be added to a table that already has rows
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    @Builder.Default
+    private Integer attempts = 0;
+
+    // A retried item is not picked up again before this
+    private Instant nextAttemptAt;
+
+    private Instant completedAt;
+}
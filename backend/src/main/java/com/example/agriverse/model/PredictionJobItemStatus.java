@@ -0,0 +1,8 @@
+package com.example.agriverse.model;
+
+public enum PredictionJobItemStatus {
+    PENDING,
+    RUNNING,
+    DONE,
+    FAILED
+}
@@ -0,0 +1,7 @@
+package com.example.agriverse.model;
+
+public enum PredictionJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED
+}
@@ -0,0 +1,23 @@
+package com.example.agriverse.repository;
+
+import com.example.agriverse.model.AdviceCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface AdviceCacheRepository extends JpaRepository<AdviceCacheEntry, String> {
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM AdviceCacheEntry e WHERE e.createdAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") Instant cutoff);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM AdviceCacheEntry e WHERE LOCATE(:prefix, e.cacheKey) = 1")
+    int deleteByKeyPrefix(@Param("prefix") String prefix);
+}
@@ -4,6 +4,10 @@ import com.example.agriverse.model.ChatMessage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -12,4 +16,15 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
     Page<ChatMessage> findByChatRoomIdOrderByCreatedAtAsc(Long chatRoomId, Pageable pageable);
 
     List<ChatMessage> findByChatRoomIdOrderByCreatedAtDesc(Long chatRoomId, Pageable pageable);
+
+    List<ChatMessage> findByChatRoomIdAndIdGreaterThanOrderByIdDesc(Long chatRoomId, Long afterId, Pageable pageable);
+
+    List<ChatMessage> findByChatRoomIdAndIdGreaterThanOrderByIdAsc(Long chatRoomId, Long afterId, Pageable pageable);
+
+    long countByChatRoomIdAndIdGreaterThan(Long chatRoomId, Long afterId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ChatMessage m SET m.content = :content, m.draft = :draft WHERE m.id = :id")
+    int updateContent(@Param("id") Long id, @Param("content") String content, @Param("draft") boolean draft);
 }
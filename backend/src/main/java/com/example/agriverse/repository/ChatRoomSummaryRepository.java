@@ -0,0 +1,7 @@
+package com.example.agriverse.repository;
+
+import com.example.agriverse.model.ChatRoomSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ChatRoomSummaryRepository extends JpaRepository<ChatRoomSummary, Long> {
+}
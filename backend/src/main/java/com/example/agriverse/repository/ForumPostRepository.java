@@ -6,6 +6,8 @@ import com.example.agriverse.model.ForumPost;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
+import java.util.List;
+
 public interface ForumPostRepository extends JpaRepository<ForumPost, Long>, JpaSpecificationExecutor<ForumPost> {
     long countByTopicId(Long topicId);
 
@@ -14,6 +16,8 @@ public interface ForumPostRepository extends JpaRepository<ForumPost, Long>, Jpa
             Pageable pageable
     );
 
+    List<ForumPost> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
 }
 
 
@@ -0,0 +1,39 @@
+package com.example.agriverse.repository;
+
+import com.example.agriverse.model.PredictionJobItem;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface PredictionJobItemRepository extends JpaRepository<PredictionJobItem, Long> {
+
+    List<PredictionJobItem> findByJobIdOrderByPositionAsc(Long jobId);
+
+    /**
+     * Pending items whose retry backoff, if any, has passed.
+     */
+    @Query("SELECT i.id FROM PredictionJobItem i WHERE i.status = com.example.agriverse.model.PredictionJobItemStatus.PENDING " +
+            "AND (i.nextAttemptAt IS NULL OR i.nextAttemptAt <= :now) ORDER BY i.id")
+    List<Long> findPendingIdsDue(@Param("now") Instant now, Pageable pageable);
+
+    /**
+     * Items a previous run was working on when it stopped go back in the queue.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE PredictionJobItem i SET i.status = com.example.agriverse.model.PredictionJobItemStatus.PENDING " +
+            "WHERE i.status = com.example.agriverse.model.PredictionJobItemStatus.RUNNING")
+    int requeueRunning();
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PredictionJobItem i WHERE i.job.id IN (SELECT j.id FROM PredictionJob j " +
+            "WHERE j.status = com.example.agriverse.model.PredictionJobStatus.COMPLETED AND j.updatedAt < :cutoff)")
+    int deleteForCompletedJobsBefore(@Param("cutoff") Instant cutoff);
+}
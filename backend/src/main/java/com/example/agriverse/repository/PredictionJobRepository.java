@@ -0,0 +1,36 @@
+package com.example.agriverse.repository;
+
+import com.example.agriverse.model.PredictionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface PredictionJobRepository extends JpaRepository<PredictionJob, Long> {
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE PredictionJob j SET j.status = com.example.agriverse.model.PredictionJobStatus.RUNNING, " +
+            "j.updatedAt = :now WHERE j.id = :id AND j.status = com.example.agriverse.model.PredictionJobStatus.QUEUED")
+    int markRunning(@Param("id") Long id, @Param("now") Instant now);
+
+    /**
+     * Counts one finished item; the job completes with its last item.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE PredictionJob j SET j.completed = j.completed + 1, j.failed = j.failed + :failed, " +
+            "j.status = CASE WHEN j.completed + 1 >= j.total " +
+            "THEN com.example.agriverse.model.PredictionJobStatus.COMPLETED ELSE j.status END, " +
+            "j.updatedAt = :now WHERE j.id = :id")
+    int recordItemFinished(@Param("id") Long id, @Param("failed") int failed, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PredictionJob j WHERE j.status = com.example.agriverse.model.PredictionJobStatus.COMPLETED " +
+            "AND j.updatedAt < :cutoff")
+    int deleteCompletedBefore(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,30 @@
+package com.example.agriverse.repository;
+
+import com.example.agriverse.model.Prediction;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface PredictionRepository extends JpaRepository<Prediction, Long> {
+
+    /**
+     * Predictions that an officer has since reviewed: rows of
+     * [label, confidence, reviewed disease].
+     */
+    @Query("SELECT p.label, p.confidence, i.reviewedDisease FROM Issue i, Prediction p " +
+            "WHERE p.id = i.predictionId AND i.reviewedDisease IS NOT NULL AND p.createdAt >= :since")
+    List<Object[]> findReviewed(@Param("since") Instant since);
+
+    /**
+     * Prediction volume per label: rows of [label, count, average confidence].
+     */
+    @Query("SELECT p.label, COUNT(p), AVG(p.confidence) FROM Prediction p " +
+            "WHERE p.leaf = true AND p.createdAt >= :since GROUP BY p.label")
+    List<Object[]> countByLabel(@Param("since") Instant since);
+
+    @Query("SELECT COUNT(p) FROM Prediction p WHERE p.leaf = false AND p.createdAt >= :since")
+    long countNonLeaf(@Param("since") Instant since);
+}
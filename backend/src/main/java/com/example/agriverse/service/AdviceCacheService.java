@@ -0,0 +1,157 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.dto.ml.AdviceResponse;
+import com.example.agriverse.model.AdviceCacheEntry;
+import com.example.agriverse.repository.AdviceCacheRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Two-tier cache for generated disease advice: a bounded in-memory LRU in front
+ * of the advice_cache table.
+ *
+ * Entries carry a version (see {@link AiAdviceService}); a lookup only hits when
+ * the stored version matches and the entry is younger than the TTL. Memory
+ * misses fall through to the DB and promote what they find.
+ */
+@Slf4j
+@Service
+public class AdviceCacheService {
+
+    private final AdviceCacheRepository repository;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Counter memoryHits;
+    private final Counter dbHits;
+    private final Counter misses;
+
+    @Value("${advice.cache.ttl-hours:168}")
+    private long ttlHours;
+
+    // Guarded by itself; access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, CachedAdvice> memory;
+
+    public AdviceCacheService(AdviceCacheRepository repository,
+                              MeterRegistry meterRegistry,
+                              @Value("${advice.cache.max-entries:500}") int maxEntries) {
+        this.repository = repository;
+        this.memory = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedAdvice> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        memoryHits = Counter.builder("advice.cache.hits").tag("tier", "memory").register(meterRegistry);
+        dbHits = Counter.builder("advice.cache.hits").tag("tier", "db").register(meterRegistry);
+        misses = Counter.builder("advice.cache.misses").register(meterRegistry);
+        Gauge.builder("advice.cache.size", this, s -> {
+            synchronized (s.memory) {
+                return s.memory.size();
+            }
+        }).description("Advice entries held in memory").register(meterRegistry);
+    }
+
+    public Optional<AdviceResponse> get(String key, String version) {
+        CachedAdvice cached;
+        synchronized (memory) {
+            cached = memory.get(key);
+        }
+        if (cached != null && isValid(cached.version(), cached.createdAt(), version)) {
+            memoryHits.increment();
+            return Optional.of(cached.advice());
+        }
+
+        try {
+            AdviceCacheEntry entry = repository.findById(key).orElse(null);
+            if (entry != null && isValid(entry.getVersion(), entry.getCreatedAt(), version)) {
+                AdviceResponse advice = objectMapper.readValue(entry.getPayload(), AdviceResponse.class);
+                synchronized (memory) {
+                    memory.put(key, new CachedAdvice(advice, entry.getVersion(), entry.getCreatedAt()));
+                }
+                dbHits.increment();
+                return Optional.of(advice);
+            }
+        } catch (Exception e) {
+            log.warn("Advice cache lookup failed for {}: {}", key, e.getMessage());
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    public void put(String key, String version, AdviceResponse advice) {
+        Instant now = Instant.now();
+        synchronized (memory) {
+            memory.put(key, new CachedAdvice(advice, version, now));
+        }
+        try {
+            repository.save(AdviceCacheEntry.builder()
+                    .cacheKey(key)
+                    .version(version)
+                    .payload(objectMapper.writeValueAsString(advice))
+                    .createdAt(now)
+                    .build());
+        } catch (Exception e) {
+            log.warn("Failed to persist advice cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * True if the stored entry has the expected version and is younger than maxAge.
+     * Reads the DB directly and does not count towards hit/miss metrics.
+     */
+    public boolean isFresh(String key, String version, Duration maxAge) {
+        AdviceCacheEntry entry = repository.findById(key).orElse(null);
+        return entry != null
+                && version.equals(entry.getVersion())
+                && entry.getCreatedAt().isAfter(Instant.now().minus(maxAge));
+    }
+
+    /**
+     * Removes every entry whose key starts with the prefix, in memory and in the DB.
+     */
+    public void invalidate(String keyPrefix) {
+        synchronized (memory) {
+            memory.keySet().removeIf(key -> key.startsWith(keyPrefix));
+        }
+        int removed = repository.deleteByKeyPrefix(keyPrefix);
+        log.info("Invalidated cached advice for {}* ({} stored entries)", keyPrefix, removed);
+    }
+
+    @Scheduled(fixedDelayString = "${advice.cache.purge-interval-ms:3600000}",
+            initialDelayString = "${advice.cache.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        Instant cutoff = Instant.now().minus(ttl());
+        synchronized (memory) {
+            memory.values().removeIf(c -> c.createdAt().isBefore(cutoff));
+        }
+        int removed = repository.deleteOlderThan(cutoff);
+        if (removed > 0) {
+            log.info("Purged {} expired advice cache entries", removed);
+        }
+    }
+
+    private boolean isValid(String storedVersion, Instant createdAt, String expectedVersion) {
+        return expectedVersion.equals(storedVersion)
+                && createdAt.isAfter(Instant.now().minus(ttl()));
+    }
+
+    private Duration ttl() {
+        return Duration.ofHours(ttlHours);
+    }
+
+    private record CachedAdvice(AdviceResponse advice, String version, Instant createdAt) {}
+}
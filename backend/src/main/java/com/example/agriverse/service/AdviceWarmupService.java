@@ -0,0 +1,115 @@
+package com.example.agriverse.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pre-generates cached advice for every knowledge entry and both confidence
+ * bands, so farmers asking about a known disease are served from the cache.
+ *
+ * Runs once the application is up and then periodically. Each pass only
+ * regenerates entries that are missing, were produced from other knowledge
+ * text or another model, or are older than {@code advice.warmup.refresh-after-hours}.
+ * Work is done one entry at a time on a single low-priority thread, so it
+ * never holds more than one Ollama slot.
+ */
+@Slf4j
+@Service
+public class AdviceWarmupService {
+
+    private final AiAdviceService aiAdviceService;
+
+    private final AtomicBoolean queued = new AtomicBoolean(false);
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(1),
+            r -> {
+                Thread t = new Thread(r, "advice-warmup");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            },
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    @Value("${advice.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${advice.warmup.refresh-after-hours:72}")
+    private long refreshAfterHours;
+
+    public AdviceWarmupService(AiAdviceService aiAdviceService) {
+        this.aiAdviceService = aiAdviceService;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void onApplicationReady() {
+        requestWarmup();
+    }
+
+    @Scheduled(fixedDelayString = "${advice.warmup.interval-ms:21600000}",
+            initialDelayString = "${advice.warmup.interval-ms:21600000}")
+    void scheduledWarmup() {
+        requestWarmup();
+    }
+
+    @EventListener
+    void onKnowledgeChanged(KnowledgeBaseChangedEvent event) {
+        requestWarmup();
+    }
+
+    /**
+     * Queues a warm-up pass; a no-op if one is already waiting to run.
+     */
+    public void requestWarmup() {
+        if (!enabled || !queued.compareAndSet(false, true)) return;
+        executor.execute(() -> {
+            queued.set(false);
+            try {
+                runWarmup();
+            } catch (Exception e) {
+                log.warn("Advice warm-up failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void runWarmup() {
+        List<String> keys = aiAdviceService.knowledgeKeys();
+        Duration maxAge = Duration.ofHours(refreshAfterHours);
+        long start = System.nanoTime();
+        int generated = 0;
+        int failed = 0;
+
+        for (String key : keys) {
+            for (boolean lowConfidence : new boolean[]{false, true}) {
+                if (Thread.currentThread().isInterrupted()) return;
+                try {
+                    if (aiAdviceService.warmAdvice(key, lowConfidence, maxAge)) {
+                        generated++;
+                    }
+                } catch (Exception e) {
+                    failed++;
+                    log.warn("Advice warm-up failed for {} ({} confidence): {}",
+                            key, lowConfidence ? "low" : "normal", e.getMessage());
+                }
+            }
+        }
+
+        log.info("Advice warm-up finished: {} entries checked, {} generated, {} failed, {} ms",
+                keys.size() * 2, generated, failed, (System.nanoTime() - start) / 1_000_000);
+    }
+}
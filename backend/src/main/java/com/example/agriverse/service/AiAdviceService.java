@@ -1,183 +1,520 @@
 package com.example.agriverse.service;
 
 import com.example.agriverse.dto.ml.AdviceResponse;
+import com.example.agriverse.dto.ml.AdviceTranslationStatus;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
-import org.springframework.http.MediaType;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import com.example.agriverse.service.llm.LlmGateway;
+import com.example.agriverse.service.retrieval.RetrievalService;
 
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
 
 @Slf4j
 @Service
 public class AiAdviceService {
 
-    private final WebClient webClient;
+    private static final double LOW_CONFIDENCE_THRESHOLD = 0.7;
+    // Representative confidences used when pre-generating each band
+    private static final double WARMUP_NORMAL_CONFIDENCE = 0.85;
+    private static final double WARMUP_LOW_CONFIDENCE = 0.6;
+
+    // Section ranking queries: what the advice JSON asks for, plus disambiguation for low confidence
+    private static final String ADVICE_QUERY =
+            "symptoms immediate field actions management prevention control why causes spread favorable conditions escalate farmer explanation";
+    private static final String LOW_CONFIDENCE_QUERY = "look-alikes confusion interpretation caution";
+
+    // Cache key suffixes; English and Bangla are cached independently
+    private static final String ENGLISH = "|en";
+    private static final String BANGLA = "|bn";
+
+    private final LlmGateway llmGateway;
+    private final AdviceCacheService adviceCache;
+    private final KnowledgeBaseService knowledgeBase;
+    private final RetrievalService retrievalService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    @Value("${ollama.base-url:http://localhost:11434}")
-    private String ollamaBaseUrl;
+    private final ExecutorService translator;
+    private final ExecutorService prefetcher;
+    private final Map<String, CompletableFuture<Generated>> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> translationsInFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, Instant> failedTranslations = new ConcurrentHashMap<>();
 
     @Value("${ollama.model:qwen3:8b}")
     private String ollamaModel;
 
-    @Value("${ollama.timeout-seconds:120}")
-    private int ollamaTimeoutSeconds;
+    @Value("${advice.knowledge.top-k:6}")
+    private int knowledgeTopK;
+
+    @Value("${advice.knowledge.token-budget:450}")
+    private int knowledgeTokenBudget;
+
+    @Value("${advice.retrieval.top-k:3}")
+    private int retrievalTopK;
+
+    @Value("${advice.translation.retry-after-ms:60000}")
+    private long translationRetryAfterMs;
+
+    @Value("${advice.speculative.enabled:true}")
+    private boolean speculativeEnabled;
+
+    @Value("${advice.speculative.min-confidence:0.7}")
+    private double speculativeMinConfidence;
+
+    public AiAdviceService(LlmGateway llmGateway,
+                           AdviceCacheService adviceCache,
+                           KnowledgeBaseService knowledgeBase,
+                           RetrievalService retrievalService,
+                           @Value("${advice.translation.threads:1}") int translationThreads,
+                           @Value("${advice.speculative.threads:2}") int speculativeThreads,
+                           @Value("${advice.speculative.queue-capacity:16}") int speculativeQueueCapacity) {
+        this.llmGateway = llmGateway;
+        this.adviceCache = adviceCache;
+        this.knowledgeBase = knowledgeBase;
+        this.retrievalService = retrievalService;
+        this.translator = Executors.newFixedThreadPool(translationThreads, r -> {
+            Thread t = new Thread(r, "advice-translator");
+            t.setDaemon(true);
+            return t;
+        });
+        // Bounded: under a burst of predictions, excess speculation is dropped rather than queued
+        this.prefetcher = new ThreadPoolExecutor(
+                speculativeThreads, speculativeThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(speculativeQueueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "advice-prefetch");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
 
-    // Loaded once at startup
-    private final Map<String, String> knowledgeBase = new HashMap<>();
+    @PreDestroy
+    void shutdown() {
+        translator.shutdownNow();
+        prefetcher.shutdownNow();
+    }
 
-    public AiAdviceService(WebClient genericWebClient) {
-        this.webClient = genericWebClient;
+    /**
+     * Generates English advice and returns it as soon as it is ready. The
+     * Bangla translation is produced by a separate job and attached to the
+     * same advice id; fetch it with {@link #getTranslation(String)}.
+     *
+     * Advice only depends on the knowledge entry and the confidence band, so
+     * successful generations are cached under that key and reused until the
+     * knowledge text or model changes. Each language is cached on its own.
+     */
+    public AdviceResponse getAdvice(String cropName, String diseaseName, Double confidence) {
+        try {
+            AdviceRequest request = adviceRequest(cropName, diseaseName, confidence);
+
+            AdviceResponse english = adviceCache.get(request.englishKey(), request.version()).orElse(null);
+            if (english != null) {
+                log.info("Advice cache hit for {}", request.cacheKey());
+            } else {
+                Generated generated = generateOnce(request).join();
+                if (generated.advice() == null) {
+                    return unparsedAdvice(generated.rawResponse());
+                }
+                english = generated.advice();
+            }
+            return withTranslation(english, request.cacheKey(), request.version());
+        } catch (Exception e) {
+            log.error("Ollama advice generation failed: {}", e.getMessage(), e);
+            return fallbackAdvice(cropName, diseaseName, confidence);
+        }
     }
 
-    @PostConstruct
-    void loadKnowledgeBase() {
+    /**
+     * Starts generating advice for a fresh prediction in the background, so the
+     * farmer's follow-up {@link #getAdvice} joins the running generation or
+     * hits the cache instead of starting from scratch. Skips predictions below
+     * advice.speculative.min-confidence and advice that is already cached.
+     */
+    public void prefetchAdvice(String cropName, String diseaseName, Double confidence) {
+        if (!speculativeEnabled || confidence == null || confidence < speculativeMinConfidence) return;
+
         try {
-            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-            Resource[] resources = resolver.getResources("classpath:knowledge/*.txt");
+            AdviceRequest request = adviceRequest(cropName, diseaseName, confidence);
+            if (inFlight.containsKey(request.flightKey())
+                    || adviceCache.get(request.englishKey(), request.version()).isPresent()) {
+                return;
+            }
+            CompletableFuture<Generated> future = new CompletableFuture<>();
+            if (inFlight.putIfAbsent(request.flightKey(), future) != null) return;
+
+            try {
+                prefetcher.execute(() -> {
+                    runGeneration(request, future);
+                    Generated generated = future.getNow(null);
+                    if (generated != null && generated.advice() != null) {
+                        // Queue the Bangla half too; the farmer sees both sooner
+                        withTranslation(generated.advice(), request.cacheKey(), request.version());
+                    }
+                });
+                log.info("Started speculative advice generation for {}", request.cacheKey());
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(request.flightKey(), future);
+                future.completeExceptionally(e);
+            }
+        } catch (Exception e) {
+            log.warn("Speculative advice generation for {} / {} not started: {}",
+                    cropName, diseaseName, e.getMessage());
+        }
+    }
 
-            for (Resource resource : resources) {
-                String filename = resource.getFilename();
-                if (filename == null) continue;
+    /**
+     * Resolves the knowledge grounding, cache key and version for a request.
+     */
+    private AdviceRequest adviceRequest(String cropName, String diseaseName, Double confidence) {
+        KnowledgeIndex index = knowledgeBase.current();
+        KnowledgeMatch match = retrieveKnowledge(index, cropName, diseaseName);
+        String cacheKey = cacheKey(match, cropName, diseaseName, confidence);
+        KnowledgeSectionRanker.Selection knowledge = match.key() != null
+                ? selectKnowledge(index, match, isLowConfidence(confidence))
+                : retrieveRelatedNotes(cropName, diseaseName);
+        String version = adviceVersion(versionSource(match, knowledge));
+        return new AdviceRequest(cropName, diseaseName, confidence, knowledge, cacheKey, version);
+    }
 
-                String key = filename.replace(".txt", "");
-                if ("cross_cutting".equalsIgnoreCase(key)) {
-                    continue; // no longer used in prompt
-                }
+    /**
+     * Single-flight English generation: concurrent callers for the same cache
+     * key and version share one Ollama call. The caller that registers the
+     * generation runs it on its own thread.
+     */
+    private CompletableFuture<Generated> generateOnce(AdviceRequest request) {
+        CompletableFuture<Generated> created = new CompletableFuture<>();
+        CompletableFuture<Generated> existing = inFlight.putIfAbsent(request.flightKey(), created);
+        if (existing != null) {
+            log.info("Joining in-flight advice generation for {}", request.cacheKey());
+            return existing;
+        }
+        runGeneration(request, created);
+        return created;
+    }
 
-                String content = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-                knowledgeBase.put(key, content);
+    private void runGeneration(AdviceRequest request, CompletableFuture<Generated> future) {
+        try {
+            String rawResponse = generateEnglish(request.cropName(), request.diseaseName(),
+                    request.confidence(), request.knowledge());
+            AdviceResponse english = tryParseAdviceResponse(rawResponse);
+            if (english != null) {
+                adviceCache.put(request.englishKey(), request.version(), english);
             }
-
-            log.info("Loaded {} disease knowledge entries", knowledgeBase.size());
-        } catch (IOException e) {
-            log.warn("Failed to load knowledge base files: {}", e.getMessage());
+            future.complete(new Generated(english, rawResponse));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(request.flightKey(), future);
         }
     }
 
     /**
-     * Generates both English and Bangla advice in a single Ollama call.
-     * Bangla must be a direct translation of the English advice.
+     * Current state of the advice with the given id: the English advice plus
+     * the Bangla fields once translated. Starts the translation again if it
+     * is neither cached nor running. Empty if the id is malformed or the
+     * English advice is no longer cached.
      */
-    public AdviceResponse getAdvice(String cropName, String diseaseName, Double confidence) {
+    public Optional<AdviceResponse> getTranslation(String adviceId) {
+        int dot = adviceId.lastIndexOf('.');
+        if (dot <= 0) return Optional.empty();
+
+        String cacheKey;
         try {
-            String knowledge = retrieveKnowledge(cropName, diseaseName);
-            String prompt = buildPrompt(cropName, diseaseName, confidence, knowledge);
+            cacheKey = new String(Base64.getUrlDecoder().decode(adviceId.substring(0, dot)), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        String version = adviceId.substring(dot + 1);
 
-            log.info("Advice prompt length: {} chars", prompt.length());
+        return adviceCache.get(cacheKey + ENGLISH, version)
+                .map(english -> withTranslation(english, cacheKey, version));
+    }
 
-            long start = System.nanoTime();
-            String rawResponse = callOllama(prompt);
-            long end = System.nanoTime();
+    /**
+     * Attaches the advice id and, if cached, the Bangla translation of exactly
+     * this English text; otherwise queues the translation.
+     */
+    private AdviceResponse withTranslation(AdviceResponse english, String cacheKey, String version) {
+        String adviceId = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(cacheKey.getBytes(StandardCharsets.UTF_8)) + "." + version;
+        AdviceResponse.AdviceResponseBuilder response = english.toBuilder().adviceId(adviceId);
 
-            long durationMs = (end - start) / 1_000_000;
-            log.info("Ollama response took {} ms", durationMs);
+        if (translationsInFlight.contains(adviceId)) {
+            return response.translationStatus(AdviceTranslationStatus.PENDING).build();
+        }
+        AdviceResponse bangla = adviceCache.get(cacheKey + BANGLA, translationVersion(english)).orElse(null);
+        if (bangla != null) {
+            return response
+                    .translationStatus(AdviceTranslationStatus.READY)
+                    .summaryBn(bangla.getSummaryBn())
+                    .immediateActionsBn(bangla.getImmediateActionsBn())
+                    .preventionBn(bangla.getPreventionBn())
+                    .whyThisHappensBn(bangla.getWhyThisHappensBn())
+                    .whenToEscalateBn(bangla.getWhenToEscalateBn())
+                    .build();
+        }
+        return response.translationStatus(requestTranslation(adviceId, cacheKey, english)).build();
+    }
 
-            return parseAdviceResponse(rawResponse);
-        } catch (Exception e) {
-            log.error("Ollama advice generation failed: {}", e.getMessage(), e);
-            return fallbackAdvice(cropName, diseaseName, confidence);
+    private AdviceTranslationStatus requestTranslation(String adviceId, String cacheKey, AdviceResponse english) {
+        Instant retryCutoff = Instant.now().minusMillis(translationRetryAfterMs);
+        failedTranslations.values().removeIf(failedAt -> failedAt.isBefore(retryCutoff));
+        if (failedTranslations.containsKey(adviceId)) {
+            return AdviceTranslationStatus.FAILED;
+        }
+        if (!translationsInFlight.add(adviceId)) {
+            return AdviceTranslationStatus.PENDING;
+        }
+
+        try {
+            translator.execute(() -> {
+                try {
+                    translateAndCache(cacheKey, english);
+                } catch (Exception e) {
+                    failedTranslations.put(adviceId, Instant.now());
+                    log.warn("Bangla translation failed for {}: {}", cacheKey, e.getMessage());
+                } finally {
+                    translationsInFlight.remove(adviceId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            translationsInFlight.remove(adviceId);
+            return AdviceTranslationStatus.FAILED;
         }
+        return AdviceTranslationStatus.PENDING;
+    }
+
+    private void translateAndCache(String cacheKey, AdviceResponse english) {
+        long start = System.nanoTime();
+        String rawResponse = callOllama(buildTranslationPrompt(english));
+        AdviceResponse bangla = tryParseTranslation(rawResponse);
+        if (bangla == null) {
+            throw new RuntimeException("Model did not return a valid translation");
+        }
+        adviceCache.put(cacheKey + BANGLA, translationVersion(english), bangla);
+        log.info("Bangla translation for {} took {} ms", cacheKey, (System.nanoTime() - start) / 1_000_000);
     }
 
     /**
-     * Retrieves only the associated disease knowledge for the current prediction.
+     * Drops cached advice for entries a reload changed; the warm-up service
+     * regenerates it in the background.
      */
-    private String retrieveKnowledge(String cropName, String diseaseName) {
-        List<String> candidates = buildKnowledgeKeyCandidates(cropName, diseaseName);
-
-        // Exact match
-        for (String candidate : candidates) {
-            if (knowledgeBase.containsKey(candidate)) {
-                log.info("Knowledge base matched exact key: {}", candidate);
-                return knowledgeBase.get(candidate);
-            }
+    @EventListener
+    void onKnowledgeChanged(KnowledgeBaseChangedEvent event) {
+        for (String key : event.changedKeys()) {
+            adviceCache.invalidate(key + "|");
         }
+    }
 
-        // Case-insensitive exact match
-        for (Map.Entry<String, String> entry : knowledgeBase.entrySet()) {
-            for (String candidate : candidates) {
-                if (entry.getKey().equalsIgnoreCase(candidate)) {
-                    log.info("Knowledge base matched case-insensitive key: {}", entry.getKey());
-                    return entry.getValue();
-                }
+    public List<String> knowledgeKeys() {
+        return List.copyOf(knowledgeBase.current().keys());
+    }
+
+    /**
+     * Pre-generates cached advice for one knowledge entry and confidence band,
+     * unless the cache already holds a current entry younger than maxAge.
+     *
+     * @return true if advice was generated
+     */
+    public boolean warmAdvice(String knowledgeKey, boolean lowConfidence, Duration maxAge) {
+        KnowledgeIndex index = knowledgeBase.current();
+        String knowledge = index.content(knowledgeKey);
+        if (knowledge == null) return false;
+
+        double confidence = lowConfidence ? WARMUP_LOW_CONFIDENCE : WARMUP_NORMAL_CONFIDENCE;
+        KnowledgeMatch match = new KnowledgeMatch(knowledgeKey, knowledge);
+        String cacheKey = cacheKey(match, null, null, confidence);
+        KnowledgeSectionRanker.Selection selection = selectKnowledge(index, match, lowConfidence);
+        String version = adviceVersion(versionSource(match, selection));
+        AdviceRequest request = new AdviceRequest(cropOf(knowledgeKey, knowledge), diseaseOf(knowledgeKey),
+                confidence, selection, cacheKey, version);
+        boolean generated = false;
+
+        AdviceResponse english;
+        if (adviceCache.isFresh(request.englishKey(), version, maxAge)) {
+            english = adviceCache.get(request.englishKey(), version).orElse(null);
+            if (english == null) return false;
+        } else {
+            english = generateOnce(request).join().advice();
+            if (english == null) {
+                throw new RuntimeException("Model did not return valid advice JSON");
             }
+            generated = true;
         }
 
-        // Normalized fuzzy contains match
-        List<String> normalizedCandidates = candidates.stream()
-                .map(this::normalizeLoose)
-                .toList();
+        if (!adviceCache.isFresh(cacheKey + BANGLA, translationVersion(english), maxAge)) {
+            translateAndCache(cacheKey, english);
+            generated = true;
+        }
+        return generated;
+    }
 
-        for (Map.Entry<String, String> entry : knowledgeBase.entrySet()) {
-            String entryNorm = normalizeLoose(entry.getKey());
+    /**
+     * Keeps only the entry's sections that matter for advice, within the token
+     * budget. The query depends only on the entry and band, so the selection
+     * (and with it the cache version) is stable across requests.
+     */
+    private KnowledgeSectionRanker.Selection selectKnowledge(KnowledgeIndex index, KnowledgeMatch match,
+                                                             boolean lowConfidence) {
+        if (match.key() == null) {
+            return new KnowledgeSectionRanker.Selection("", 0, 0, 0);
+        }
+        String query = ADVICE_QUERY + " " + cropOf(match.key(), match.content()) + " " + diseaseOf(match.key())
+                + (lowConfidence ? " " + LOW_CONFIDENCE_QUERY : "");
+        return index.selectSections(match.key(), query, knowledgeTopK, knowledgeTokenBudget);
+    }
 
-            for (String candidateNorm : normalizedCandidates) {
-                if (entryNorm.equals(candidateNorm)
-                        || entryNorm.contains(candidateNorm)
-                        || candidateNorm.contains(entryNorm)) {
-                    log.info("Knowledge base matched fuzzy key: {}", entry.getKey());
-                    return entry.getValue();
+    /**
+     * Grounding for labels without a knowledge entry: the closest knowledge
+     * sections and forum posts, within the same token budget.
+     */
+    private KnowledgeSectionRanker.Selection retrieveRelatedNotes(String cropName, String diseaseName) {
+        List<RetrievalService.Passage> passages =
+                retrievalService.search(cropName + " " + diseaseName, retrievalTopK);
+        if (passages.isEmpty()) {
+            return new KnowledgeSectionRanker.Selection("", 0, 0, 0);
+        }
+
+        int charBudget = knowledgeTokenBudget * 4;
+        StringBuilder sb = new StringBuilder(
+                "Related notes (knowledge base and farmer forum; may not be specific to this disease):\n");
+        int used = 0;
+        for (RetrievalService.Passage passage : passages) {
+            String note = "\n[" + passage.source() + ": " + passage.title() + "]\n" + passage.text().strip() + "\n";
+            if (used > 0 && sb.length() + note.length() > charBudget) break;
+            sb.append(note);
+            used++;
+        }
+        String text = sb.length() > charBudget ? sb.substring(0, charBudget) : sb.toString();
+        log.info("No knowledge entry for crop='{}', disease='{}'; grounding on {} retrieved passages",
+                cropName, diseaseName, used);
+        return new KnowledgeSectionRanker.Selection(text, used, passages.size(), text.length());
+    }
+
+    private String generateEnglish(String cropName, String diseaseName, Double confidence,
+                                   KnowledgeSectionRanker.Selection knowledge) {
+        String prompt = buildPrompt(cropName, diseaseName, confidence, knowledge.text());
+
+        int saved = knowledge.originalChars() - knowledge.text().length();
+        log.info("Advice prompt length: {} chars (knowledge: {} of {} sections, {} -> {} chars, {}% smaller)",
+                prompt.length(), knowledge.selectedSections(), knowledge.totalSections(),
+                knowledge.originalChars(), knowledge.text().length(),
+                knowledge.originalChars() == 0 ? 0 : saved * 100 / knowledge.originalChars());
+
+        long start = System.nanoTime();
+        String rawResponse = callOllama(prompt);
+        long end = System.nanoTime();
+
+        long durationMs = (end - start) / 1_000_000;
+        log.info("Ollama response took {} ms", durationMs);
+        return rawResponse;
+    }
+
+    /**
+     * Crop name for a knowledge entry: the "## Crop" section of the file, else
+     * the label prefix of classifier-style keys ("Potato___Early_blight").
+     */
+    private static String cropOf(String knowledgeKey, String knowledge) {
+        String[] lines = knowledge.split("\\R");
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].strip().equalsIgnoreCase("## Crop")) {
+                for (int j = i + 1; j < lines.length; j++) {
+                    String line = lines[j].strip();
+                    if (line.startsWith("#")) break;
+                    if (!line.isEmpty()) return line;
                 }
             }
         }
-
-        log.warn("No knowledge base entry found for crop='{}', disease='{}'", cropName, diseaseName);
-        return "";
+        return knowledgeKey.contains("___")
+                ? knowledgeKey.split("___", 2)[0].replace("_", " ").trim()
+                : "Unknown";
     }
 
-    private List<String> buildKnowledgeKeyCandidates(String cropName, String diseaseName) {
-        List<String> candidates = new ArrayList<>();
+    private static String diseaseOf(String knowledgeKey) {
+        String disease = knowledgeKey.contains("___") ? knowledgeKey.split("___", 2)[1] : knowledgeKey;
+        return disease.replace("_", " ").trim();
+    }
 
-        String crop = cropName == null ? "" : cropName.trim();
-        String disease = diseaseName == null ? "" : diseaseName.trim();
+    /**
+     * Cache key: the matched knowledge entry (or the normalized labels when
+     * nothing matched) plus the confidence band that selects the prompt variant.
+     */
+    private String cacheKey(KnowledgeMatch match, String cropName, String diseaseName, Double confidence) {
+        String subject = match.key() != null
+                ? match.key()
+                : KnowledgeIndex.normalize(cropName) + "|" + KnowledgeIndex.normalize(diseaseName);
+        return subject + "|" + (isLowConfidence(confidence) ? "low" : "normal");
+    }
 
-        String cropUnderscore = crop.replace(" ", "_");
-        String diseaseUnderscore = disease.replace(" ", "_");
-        String diseaseNoSpace = disease.replace(" ", "");
-        String diseaseNoUnderscore = disease.replace("_", "");
-        String diseaseCompact = disease.replace(" ", "").replace("_", "");
+    /**
+     * What cached advice was generated from. For a knowledge entry this is the
+     * whole entry plus the selection settings rather than the selected text:
+     * BM25 statistics shift whenever any file changes, and that must not
+     * invalidate advice for entries that did not change.
+     */
+    private String versionSource(KnowledgeMatch match, KnowledgeSectionRanker.Selection selection) {
+        return match.key() != null
+                ? match.content() + "\u0000" + knowledgeTopK + "/" + knowledgeTokenBudget
+                : selection.text();
+    }
 
-        // Full classifier-style labels
-        candidates.add(crop + "___" + disease);
-        candidates.add(cropUnderscore + "___" + disease);
-        candidates.add(crop + "___" + diseaseUnderscore);
-        candidates.add(cropUnderscore + "___" + diseaseUnderscore);
-        candidates.add(cropUnderscore + "___" + diseaseNoSpace);
-        candidates.add(cropUnderscore + "___" + diseaseCompact);
+    /**
+     * Changes whenever the knowledge text or the model changes, so edited
+     * knowledge files invalidate previously cached advice.
+     */
+    private String adviceVersion(String knowledge) {
+        return sha256(ollamaModel, knowledge);
+    }
 
-        // Disease-only fallbacks
-        candidates.add(disease);
-        candidates.add(diseaseUnderscore);
-        candidates.add(diseaseNoSpace);
-        candidates.add(diseaseNoUnderscore);
-        candidates.add(diseaseCompact);
+    /**
+     * Version of a Bangla translation: the English text it translates, so a
+     * regenerated English answer never shows a stale translation.
+     */
+    private String translationVersion(AdviceResponse english) {
+        return sha256(ollamaModel, english.getSummary(),
+                String.join("\n", english.getImmediateActions()),
+                String.join("\n", english.getPrevention()),
+                String.join("\n", english.getWhyThisHappens()),
+                english.getWhenToEscalate());
+    }
 
-        List<String> unique = new ArrayList<>();
-        for (String c : candidates) {
-            if (c != null && !c.isBlank() && !unique.contains(c)) {
-                unique.add(c);
+    private static String sha256(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
             }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
-        return unique;
     }
 
-    private String normalizeLoose(String value) {
-        return value == null ? "" : value.toLowerCase().replace(" ", "").replace("_", "").replace("-", "");
+    private static boolean isLowConfidence(Double confidence) {
+        return confidence != null && confidence < LOW_CONFIDENCE_THRESHOLD;
+    }
+
+    /**
+     * Retrieves only the associated disease knowledge for the current prediction.
+     */
+    private KnowledgeMatch retrieveKnowledge(KnowledgeIndex index, String cropName, String diseaseName) {
+        return index.resolveKey(cropName, diseaseName)
+                .map(key -> new KnowledgeMatch(key, index.content(key)))
+                .orElseGet(() -> {
+                    log.debug("No knowledge base entry for crop='{}', disease='{}'", cropName, diseaseName);
+                    return new KnowledgeMatch(null, "");
+                });
     }
 
     private String buildPrompt(String cropName, String diseaseName, Double confidence, String knowledge) {
@@ -186,7 +523,7 @@ public class AiAdviceService {
                 : "N/A";
 
         String confidenceNote = "";
-        if (confidence != null && confidence < 0.7) {
+        if (isLowConfidence(confidence)) {
             confidenceNote = """
 
                     IMPORTANT:
@@ -217,25 +554,14 @@ public class AiAdviceService {
                 - Keep advice simple, practical, and farmer-friendly.
                 - Do not give exact chemical dosages unless explicitly stated in the knowledge.
                 - If knowledge is missing, give cautious general advice only.
-                - Bangla must be a faithful translation of English.
-                - Do not add extra information in Bangla.
 
                 Return only this JSON:
                 {
-                  "english": {
-                    "summary": "",
-                    "immediate_actions": [],
-                    "prevention": [],
-                    "why_this_happens": [],
-                    "when_to_escalate": ""
-                  },
-                  "bangla": {
-                    "summary": "",
-                    "immediate_actions": [],
-                    "prevention": [],
-                    "why_this_happens": [],
-                    "when_to_escalate": ""
-                  }
+                  "summary": "",
+                  "immediate_actions": [],
+                  "prevention": [],
+                  "why_this_happens": [],
+                  "when_to_escalate": ""
                 }
 
                 /no_think
@@ -248,6 +574,39 @@ public class AiAdviceService {
         );
     }
 
+    private String buildTranslationPrompt(AdviceResponse english) {
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("summary", english.getSummary());
+        source.put("immediate_actions", english.getImmediateActions());
+        source.put("prevention", english.getPrevention());
+        source.put("why_this_happens", english.getWhyThisHappens());
+        source.put("when_to_escalate", english.getWhenToEscalate());
+
+        String sourceJson;
+        try {
+            sourceJson = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(source);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize advice for translation: " + e.getMessage(), e);
+        }
+
+        return """
+                Translate this crop disease advice for farmers in Bangladesh from English to Bangla.
+
+                ENGLISH ADVICE:
+                %s
+
+                RULES:
+                - Bangla must be a faithful translation of English.
+                - Do not add, remove, or change any advice.
+                - Keep the same number of items in every list.
+                - Use simple Bangla that farmers understand.
+
+                Return only the same JSON structure with every value in Bangla.
+
+                /no_think
+                """.formatted(sourceJson);
+    }
+
     /**
      * Uses Ollama defaults like the Ollama app:
      * - no forced num_ctx
@@ -260,14 +619,7 @@ public class AiAdviceService {
         payload.put("stream", false);
         payload.put("keep_alive", "10m");
 
-        String response = webClient.post()
-                .uri(ollamaBaseUrl + "/api/generate")
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(payload)
-                .retrieve()
-                .bodyToMono(String.class)
-                .timeout(Duration.ofSeconds(ollamaTimeoutSeconds))
-                .block();
+        String response = llmGateway.post("/api/generate", payload).block();
 
         if (response == null) {
             throw new RuntimeException("Ollama returned null response");
@@ -301,28 +653,36 @@ public class AiAdviceService {
         }
     }
 
-    AdviceResponse parseAdviceResponse(String raw) {
-        String cleaned = raw == null ? "" : raw.strip();
-
-        if (cleaned.startsWith("```")) {
-            cleaned = cleaned.replaceFirst("```[a-zA-Z]*\\s*", "");
-            if (cleaned.endsWith("```")) {
-                cleaned = cleaned.substring(0, cleaned.lastIndexOf("```"));
-            }
-            cleaned = cleaned.strip();
-        }
+    /**
+     * Best-effort advice when the model did not return valid JSON.
+     */
+    private AdviceResponse unparsedAdvice(String raw) {
+        String cleaned = extractJson(raw);
+        return AdviceResponse.builder()
+                .summary(cleaned.length() > 500 ? cleaned.substring(0, 500) + "..." : cleaned)
+                .immediateActions(List.of("Please consult a local agricultural officer for specific guidance."))
+                .prevention(List.of("Follow general crop hygiene practices."))
+                .whyThisHappens(List.of("See the summary above for details."))
+                .whenToEscalate("If symptoms worsen or spread rapidly, contact your nearest agricultural officer.")
+                .translationStatus(AdviceTranslationStatus.UNAVAILABLE)
+                .summaryBn(null)
+                .immediateActionsBn(null)
+                .preventionBn(null)
+                .whyThisHappensBn(null)
+                .whenToEscalateBn(null)
+                .build();
+    }
 
-        int braceStart = cleaned.indexOf('{');
-        int braceEnd = cleaned.lastIndexOf('}');
-        if (braceStart >= 0 && braceEnd > braceStart) {
-            cleaned = cleaned.substring(braceStart, braceEnd + 1);
-        }
+    /**
+     * Parses the model's English JSON answer; null if it is not valid JSON.
+     */
+    private AdviceResponse tryParseAdviceResponse(String raw) {
+        String cleaned = extractJson(raw);
 
         try {
             JsonNode root = objectMapper.readTree(cleaned);
-
-            JsonNode english = root.path("english");
-            JsonNode bangla = root.path("bangla");
+            // Tolerate the model wrapping the answer as in the old bilingual format
+            JsonNode english = root.has("english") ? root.path("english") : root;
 
             return AdviceResponse.builder()
                     .summary(english.path("summary").asText("No summary available."))
@@ -333,31 +693,58 @@ public class AiAdviceService {
                             english.path("when_to_escalate")
                                     .asText("Consult a local agricultural officer if symptoms persist or worsen.")
                     )
-                    .summaryBn(blankToNull(bangla.path("summary").asText(null)))
-                    .immediateActionsBn(jsonArrayToListNullable(bangla.path("immediate_actions")))
-                    .preventionBn(jsonArrayToListNullable(bangla.path("prevention")))
-                    .whyThisHappensBn(jsonArrayToListNullable(bangla.path("why_this_happens")))
-                    .whenToEscalateBn(blankToNull(bangla.path("when_to_escalate").asText(null)))
                     .build();
 
         } catch (Exception e) {
             log.warn("Failed to parse Ollama JSON response, using fallback parsing. Error: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Parses a Bangla translation into the *Bn fields; null if it is not
+     * valid JSON or has no summary.
+     */
+    private AdviceResponse tryParseTranslation(String raw) {
+        try {
+            JsonNode root = objectMapper.readTree(extractJson(raw));
+            JsonNode bangla = root.has("bangla") ? root.path("bangla") : root;
+
+            String summary = blankToNull(bangla.path("summary").asText(null));
+            if (summary == null) return null;
 
             return AdviceResponse.builder()
-                    .summary(cleaned.length() > 500 ? cleaned.substring(0, 500) + "..." : cleaned)
-                    .immediateActions(List.of("Please consult a local agricultural officer for specific guidance."))
-                    .prevention(List.of("Follow general crop hygiene practices."))
-                    .whyThisHappens(List.of("See the summary above for details."))
-                    .whenToEscalate("If symptoms worsen or spread rapidly, contact your nearest agricultural officer.")
-                    .summaryBn(null)
-                    .immediateActionsBn(null)
-                    .preventionBn(null)
-                    .whyThisHappensBn(null)
-                    .whenToEscalateBn(null)
+                    .summaryBn(summary)
+                    .immediateActionsBn(jsonArrayToListNullable(bangla.path("immediate_actions")))
+                    .preventionBn(jsonArrayToListNullable(bangla.path("prevention")))
+                    .whyThisHappensBn(jsonArrayToListNullable(bangla.path("why_this_happens")))
+                    .whenToEscalateBn(blankToNull(bangla.path("when_to_escalate").asText(null)))
                     .build();
+        } catch (Exception e) {
+            log.warn("Failed to parse Bangla translation: {}", e.getMessage());
+            return null;
         }
     }
 
+    private String extractJson(String raw) {
+        String cleaned = raw == null ? "" : raw.strip();
+
+        if (cleaned.startsWith("```")) {
+            cleaned = cleaned.replaceFirst("```[a-zA-Z]*\\s*", "");
+            if (cleaned.endsWith("```")) {
+                cleaned = cleaned.substring(0, cleaned.lastIndexOf("```"));
+            }
+            cleaned = cleaned.strip();
+        }
+
+        int braceStart = cleaned.indexOf('{');
+        int braceEnd = cleaned.lastIndexOf('}');
+        if (braceStart >= 0 && braceEnd > braceStart) {
+            cleaned = cleaned.substring(braceStart, braceEnd + 1);
+        }
+        return cleaned;
+    }
+
     private List<String> jsonArrayToList(JsonNode node) {
         List<String> result = new ArrayList<>();
         if (node != null && node.isArray()) {
@@ -411,6 +798,7 @@ public class AiAdviceService {
                         "Detailed analysis is unavailable at the moment. The prediction system has identified potential symptoms."
                 ))
                 .whenToEscalate("Contact your nearest agricultural office for professional diagnosis and treatment advice.")
+                .translationStatus(AdviceTranslationStatus.READY)
                 .summaryBn("এআই পরামর্শ ব্যবস্থা সাময়িকভাবে অনুপলব্ধ। নিকটস্থ কৃষি কর্মকর্তার সাথে যোগাযোগ করুন।")
                 .immediateActionsBn(List.of(
                         "আক্রান্ত গাছগুলো ভালোভাবে পর্যবেক্ষণ করুন।",
@@ -427,4 +815,20 @@ public class AiAdviceService {
                 .whenToEscalateBn("পেশাদার রোগ নির্ণয় ও চিকিৎসা পরামর্শের জন্য নিকটস্থ কৃষি অফিসে যোগাযোগ করুন।")
                 .build();
     }
-}
\ No newline at end of file
+
+    private record KnowledgeMatch(String key, String content) {}
+
+    private record AdviceRequest(String cropName, String diseaseName, Double confidence,
+                                 KnowledgeSectionRanker.Selection knowledge, String cacheKey, String version) {
+        String englishKey() {
+            return cacheKey + ENGLISH;
+        }
+
+        String flightKey() {
+            return cacheKey + "@" + version;
+        }
+    }
+
+    /** A finished English generation; advice is null if the model's answer did not parse. */
+    private record Generated(AdviceResponse advice, String rawResponse) {}
+}
@@ -0,0 +1,30 @@
+package com.example.agriverse.service;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cancellation handle for a running LLM job. Streaming calls complete early
+ * once {@link #whenCancelled()} fires.
+ */
+public class AiJobHandle {
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final Sinks.One<Boolean> signal = Sinks.one();
+
+    public void cancel() {
+        if (cancelled.compareAndSet(false, true)) {
+            signal.tryEmitValue(Boolean.TRUE);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public Mono<Boolean> whenCancelled() {
+        return signal.asMono();
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.agriverse.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounded scheduler for chat AI jobs.
+ *
+ * - Questions are queued per room; at most one job runs per room at a time.
+ * - When a room is dispatched, all of its pending questions are coalesced
+ *   into a single job so they get one combined answer.
+ * - Rooms are served round-robin so one busy room cannot starve the others.
+ * - Queues are bounded (total and per room); submissions beyond that are rejected.
+ * - Closing a room drops its pending questions and cancels the running job.
+ */
+@Slf4j
+@Component
+public class ChatAiScheduler {
+
+    private final ChatAiService chatAiService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${chat.ai.scheduler.workers:2}")
+    private int workerCount;
+
+    @Value("${chat.ai.scheduler.max-pending:100}")
+    private int maxPending;
+
+    @Value("${chat.ai.scheduler.max-pending-per-room:5}")
+    private int maxPendingPerRoom;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition jobAvailable = lock.newCondition();
+
+    // Guarded by lock
+    private final Map<Long, List<PendingQuestion>> pendingByRoom = new HashMap<>();
+    private final ArrayDeque<Long> readyRooms = new ArrayDeque<>();
+    private final Map<Long, AiJobHandle> runningRooms = new HashMap<>();
+    private int pendingCount;
+    private boolean shuttingDown;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private Timer queueWaitTimer;
+    private Timer jobTimer;
+    private Counter rejectedCounter;
+    private Counter coalescedCounter;
+    private Counter cancelledCounter;
+
+    public ChatAiScheduler(ChatAiService chatAiService, MeterRegistry meterRegistry) {
+        this.chatAiService = chatAiService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void start() {
+        Gauge.builder("chat.ai.queue.depth", this, s -> s.withLock(() -> s.pendingCount))
+                .description("Chat AI questions waiting to be answered")
+                .register(meterRegistry);
+        Gauge.builder("chat.ai.queue.rooms", this, s -> s.withLock(s.pendingByRoom::size))
+                .description("Chat rooms with questions waiting")
+                .register(meterRegistry);
+        Gauge.builder("chat.ai.jobs.running", this, s -> s.withLock(s.runningRooms::size))
+                .description("Chat AI jobs currently generating")
+                .register(meterRegistry);
+
+        queueWaitTimer = Timer.builder("chat.ai.queue.wait")
+                .description("Time a question waits before generation starts")
+                .register(meterRegistry);
+        jobTimer = Timer.builder("chat.ai.job.duration")
+                .description("Time spent generating one (possibly coalesced) answer")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("chat.ai.jobs.rejected").register(meterRegistry);
+        coalescedCounter = Counter.builder("chat.ai.jobs.coalesced")
+                .description("Questions answered as part of another question's job")
+                .register(meterRegistry);
+        cancelledCounter = Counter.builder("chat.ai.jobs.cancelled").register(meterRegistry);
+
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = new Thread(this::runWorker, "chat-ai-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("Chat AI scheduler started: workers={}, maxPending={}, maxPendingPerRoom={}",
+                workers.size(), maxPending, maxPendingPerRoom);
+    }
+
+    @PreDestroy
+    void stop() {
+        lock.lock();
+        try {
+            shuttingDown = true;
+            runningRooms.values().forEach(AiJobHandle::cancel);
+            jobAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Queues a question for the room's AI participant.
+     *
+     * @return false if the queue is full and the question was not accepted
+     */
+    public boolean submit(Long chatRoomId, Long userMessageId) {
+        lock.lock();
+        try {
+            List<PendingQuestion> roomQueue = pendingByRoom.get(chatRoomId);
+            int roomPending = roomQueue == null ? 0 : roomQueue.size();
+
+            if (shuttingDown || pendingCount >= maxPending || roomPending >= maxPendingPerRoom) {
+                rejectedCounter.increment();
+                log.warn("Chat AI queue full, rejecting message {} in room {} (pending={}, room={})",
+                        userMessageId, chatRoomId, pendingCount, roomPending);
+                return false;
+            }
+
+            if (roomQueue == null) {
+                roomQueue = new ArrayList<>();
+                pendingByRoom.put(chatRoomId, roomQueue);
+                if (!runningRooms.containsKey(chatRoomId)) {
+                    readyRooms.addLast(chatRoomId);
+                }
+            }
+            roomQueue.add(new PendingQuestion(userMessageId, System.nanoTime()));
+            pendingCount++;
+            jobAvailable.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the room's pending questions and cancels its running job, if any.
+     */
+    public void cancelRoom(Long chatRoomId) {
+        lock.lock();
+        try {
+            List<PendingQuestion> dropped = pendingByRoom.remove(chatRoomId);
+            if (dropped != null) {
+                pendingCount -= dropped.size();
+                readyRooms.remove(chatRoomId);
+                cancelledCounter.increment(dropped.size());
+            }
+            AiJobHandle running = runningRooms.get(chatRoomId);
+            if (running != null) {
+                running.cancel();
+                cancelledCounter.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            Job job;
+            try {
+                job = takeJob();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job == null) return;
+
+            long start = System.nanoTime();
+            try {
+                chatAiService.generateAndSaveResponse(job.chatRoomId(), job.messageIds(), job.handle());
+            } catch (Exception e) {
+                log.error("Chat AI job failed for room {}: {}", job.chatRoomId(), e.getMessage(), e);
+            } finally {
+                jobTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                finishJob(job.chatRoomId());
+            }
+        }
+    }
+
+    private Job takeJob() throws InterruptedException {
+        lock.lock();
+        try {
+            while (readyRooms.isEmpty()) {
+                if (shuttingDown) return null;
+                jobAvailable.await();
+            }
+            if (shuttingDown) return null;
+
+            Long chatRoomId = readyRooms.pollFirst();
+            List<PendingQuestion> questions = pendingByRoom.remove(chatRoomId);
+            pendingCount -= questions.size();
+
+            long now = System.nanoTime();
+            List<Long> messageIds = new ArrayList<>(questions.size());
+            for (PendingQuestion q : questions) {
+                messageIds.add(q.messageId());
+                queueWaitTimer.record(now - q.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+            }
+            if (questions.size() > 1) {
+                coalescedCounter.increment(questions.size() - 1);
+            }
+
+            AiJobHandle handle = new AiJobHandle();
+            runningRooms.put(chatRoomId, handle);
+            return new Job(chatRoomId, messageIds, handle);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finishJob(Long chatRoomId) {
+        lock.lock();
+        try {
+            runningRooms.remove(chatRoomId);
+            // Questions that arrived while this room was generating go to the back of the line
+            if (pendingByRoom.containsKey(chatRoomId)) {
+                readyRooms.addLast(chatRoomId);
+                jobAvailable.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> T withLock(Supplier<T> read) {
+        lock.lock();
+        try {
+            return read.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record PendingQuestion(Long messageId, long enqueuedAtNanos) {}
+
+    private record Job(Long chatRoomId, List<Long> messageIds, AiJobHandle handle) {}
+}
@@ -3,41 +3,54 @@ package com.example.agriverse.service;
 import com.example.agriverse.config.AiUserConfig;
 import com.example.agriverse.model.*;
 import com.example.agriverse.repository.*;
+import com.example.agriverse.service.llm.LlmGateway;
+import com.example.agriverse.service.retrieval.RetrievalService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Chat-specific AI service for Ollama participation in chat rooms.
  *
  * This is intentionally SEPARATE from AiAdviceService —
  * it serves a different purpose (conversational chat assistant vs. disease advice generation).
- * The only shared infrastructure is the genericWebClient bean and ollama config properties.
+ * The only shared infrastructure is the LlmGateway (Ollama router) and ollama config properties.
  */
 @Slf4j
 @Service
 public class ChatAiService {
 
-    private final WebClient webClient;
+    private final LlmGateway llmGateway;
     private final ChatRoomRepository chatRoomRepo;
     private final ChatMessageRepository messageRepo;
     private final ChatMembershipRepository membershipRepo;
     private final ChatIssueLinkRepository issueLinkRepo;
     private final UserRepository userRepo;
+    private final ChatStreamHub streamHub;
+    private final ChatSummaryService summaryService;
+    private final RetrievalService retrievalService;
+    private final TransactionTemplate transactionTemplate;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    @Value("${ollama.base-url:http://localhost:11434}")
-    private String ollamaBaseUrl;
+    private final DistributionSummary promptTokensSummary;
+    private final Timer promptEvalTimer;
+    private final Timer evalTimer;
+
+    private static final int MAX_HISTORY_LINE_CHARS = 1500;
+    private static final String THINK_OPEN = "<think>";
+    private static final Pattern THINK_BLOCK = Pattern.compile("(?s)<think>.*?</think>");
 
     @Value("${ollama.model:qwen3:8b}")
     private String ollamaModel;
@@ -48,78 +61,228 @@ public class ChatAiService {
     @Value("${chat.ai.context-window:30}")
     private int contextWindow;
 
-    public ChatAiService(WebClient genericWebClient,
+    @Value("${chat.ai.stream.flush-ms:1000}")
+    private long streamFlushMs;
+
+    @Value("${chat.ai.retrieval.top-k:3}")
+    private int retrievalTopK;
+
+    public ChatAiService(LlmGateway llmGateway,
                          ChatRoomRepository chatRoomRepo,
                          ChatMessageRepository messageRepo,
                          ChatMembershipRepository membershipRepo,
                          ChatIssueLinkRepository issueLinkRepo,
-                         UserRepository userRepo) {
-        this.webClient = genericWebClient;
+                         UserRepository userRepo,
+                         ChatStreamHub streamHub,
+                         ChatSummaryService summaryService,
+                         RetrievalService retrievalService,
+                         TransactionTemplate transactionTemplate,
+                         MeterRegistry meterRegistry) {
+        this.llmGateway = llmGateway;
         this.chatRoomRepo = chatRoomRepo;
         this.messageRepo = messageRepo;
         this.membershipRepo = membershipRepo;
         this.issueLinkRepo = issueLinkRepo;
         this.userRepo = userRepo;
+        this.streamHub = streamHub;
+        this.summaryService = summaryService;
+        this.retrievalService = retrievalService;
+        this.transactionTemplate = transactionTemplate;
+        this.promptTokensSummary = DistributionSummary.builder("chat.ai.prompt.tokens")
+                .description("Prompt tokens Ollama had to evaluate (excludes KV-cache hits)")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+        this.promptEvalTimer = Timer.builder("chat.ai.prompt.eval")
+                .description("Ollama prompt evaluation time per chat turn")
+                .register(meterRegistry);
+        this.evalTimer = Timer.builder("chat.ai.generation.eval")
+                .description("Ollama token generation time per chat turn")
+                .register(meterRegistry);
     }
 
     /**
-     * Generates an AI response in the chat room context and saves it as a message.
+     * Streams an AI response into the chat room. A draft AI_RESPONSE message is
+     * committed up front so pollers see it immediately; tokens are pushed to live
+     * subscribers as they arrive and the draft is finalized when Ollama is done.
+     *
+     * Called from {@link ChatAiScheduler} workers. Several questions may be
+     * coalesced into one job; they are answered together in a single reply.
      *
      * @param chatRoomId      the chat room ID
-     * @param userMessageId   the human message ID that triggered this AI call (already saved)
+     * @param userMessageIds  the human messages that triggered this AI call (already saved)
+     * @param handle          cancelled when the room is closed mid-generation
      */
-    @Async
-    @Transactional
-    public void generateAndSaveResponse(Long chatRoomId, Long userMessageId) {
+    public void generateAndSaveResponse(Long chatRoomId, List<Long> userMessageIds, AiJobHandle handle) {
+        Long draftId = null;
         try {
-            // Re-fetch entities in this transaction to ensure they are managed
-            ChatRoom chatRoom = chatRoomRepo.findById(chatRoomId)
-                    .orElseThrow(() -> new RuntimeException("Chat room not found: " + chatRoomId));
-
-            ChatMessage userMessage = messageRepo.findById(userMessageId)
-                    .orElseThrow(() -> new RuntimeException("User message not found: " + userMessageId));
-
-            String prompt = buildPrompt(chatRoom, userMessage);
+            // Short transaction: read the room context and open the draft reply.
+            // The (long) Ollama call below runs outside any transaction.
+            PreparedTurn turn = transactionTemplate.execute(status -> prepareTurn(chatRoomId, userMessageIds));
+            if (turn == null) {
+                log.info("Skipping chat AI job for room {}: room is no longer active", chatRoomId);
+                return;
+            }
+            draftId = turn.draftId();
 
-            log.info("Chat AI prompt length: {} chars for room {} ({})",
-                    prompt.length(), chatRoom.getId(), chatRoom.getTitle());
+            log.info("Chat AI prompt length: {} chars in {} messages for room {} ({} question(s))",
+                    turn.promptChars(), turn.messages().size(), chatRoomId, userMessageIds.size());
+            streamHub.publish(chatRoomId, "ai-started", Map.of("messageId", draftId));
 
             long start = System.nanoTime();
-            String aiResponse = callOllama(prompt);
+            String aiResponse = streamOllama(chatRoomId, draftId, turn.messages(), handle);
             long durationMs = (System.nanoTime() - start) / 1_000_000;
 
+            if (handle.isCancelled()) {
+                log.info("Chat AI generation cancelled for room {} after {} ms", chatRoomId, durationMs);
+                discardDraft(chatRoomId, draftId);
+                return;
+            }
+
             log.info("Chat AI response took {} ms for room {}. Response length: {}",
-                    durationMs, chatRoom.getId(),
-                    aiResponse != null ? aiResponse.length() : "null");
+                    durationMs, chatRoomId, aiResponse.length());
 
-            if (aiResponse == null || aiResponse.isBlank()) {
+            if (aiResponse.isBlank()) {
                 log.warn("Ollama returned empty response for chat room {} (after stripping think tags)",
-                        chatRoom.getId());
+                        chatRoomId);
+                discardDraft(chatRoomId, draftId);
                 return;
             }
 
-            // Retrieve the Ollama system user
-            User ollamaUser = userRepo.findByUsername(AiUserConfig.OLLAMA_USERNAME)
-                    .orElseThrow(() -> new RuntimeException("Ollama system user not found"));
-
-            ChatMessage aiMsg = ChatMessage.builder()
-                    .chatRoom(chatRoom)
-                    .sender(ollamaUser)
-                    .content(aiResponse)
-                    .type(MessageType.AI_RESPONSE)
-                    .senderType("AI")
-                    .targetType("EVERYONE")
-                    .build();
+            messageRepo.updateContent(draftId, aiResponse, false);
+            streamHub.publish(chatRoomId, "ai-done", Map.of("messageId", draftId, "content", aiResponse));
+            log.info("Chat AI response saved as message {} in room {}", draftId, chatRoomId);
 
-            ChatMessage saved = messageRepo.save(aiMsg);
-            log.info("Chat AI response saved as message {} in room {}", saved.getId(), chatRoomId);
+            // Fold messages that have scrolled past the verbatim tail into the summary
+            summaryService.requestRefresh(chatRoomId);
 
         } catch (Exception e) {
             log.error("Chat AI generation failed for room {}: {}", chatRoomId, e.getMessage(), e);
+            if (draftId != null) {
+                discardDraft(chatRoomId, draftId);
+            }
+        }
+    }
+
+    private PreparedTurn prepareTurn(Long chatRoomId, List<Long> userMessageIds) {
+        ChatRoom chatRoom = chatRoomRepo.findById(chatRoomId)
+                .orElseThrow(() -> new RuntimeException("Chat room not found: " + chatRoomId));
+
+        if (chatRoom.getStatus() != ChatRoomStatus.ACTIVE) {
+            return null;
+        }
+
+        List<ChatMessage> questions = messageRepo.findAllById(userMessageIds).stream()
+                .sorted(Comparator.comparing(ChatMessage::getId))
+                .toList();
+        if (questions.isEmpty()) {
+            throw new RuntimeException("User messages not found: " + userMessageIds);
+        }
+
+        List<Map<String, String>> messages = buildMessages(chatRoom, questions);
+        int promptChars = messages.stream().mapToInt(m -> m.get("content").length()).sum();
+
+        // Retrieve the Ollama system user
+        User ollamaUser = userRepo.findByUsername(AiUserConfig.OLLAMA_USERNAME)
+                .orElseThrow(() -> new RuntimeException("Ollama system user not found"));
+
+        ChatMessage draft = messageRepo.save(ChatMessage.builder()
+                .chatRoom(chatRoom)
+                .sender(ollamaUser)
+                .content("")
+                .type(MessageType.AI_RESPONSE)
+                .senderType("AI")
+                .targetType("EVERYONE")
+                .draft(true)
+                .build());
+
+        return new PreparedTurn(messages, promptChars, draft.getId());
+    }
+
+    private void discardDraft(Long chatRoomId, Long draftId) {
+        try {
+            messageRepo.deleteById(draftId);
+        } catch (Exception e) {
+            log.warn("Failed to remove draft AI message {}: {}", draftId, e.getMessage());
+        }
+        streamHub.publish(chatRoomId, "ai-failed", Map.of("messageId", draftId));
+    }
+
+    private record PreparedTurn(List<Map<String, String>> messages, int promptChars, Long draftId) {}
+
+    /**
+     * Builds the /api/chat message array. It is laid out so consecutive turns in
+     * a room share the longest possible prefix — Ollama then reuses the KV cache
+     * for it instead of re-evaluating the whole context:
+     *
+     * 1. system: fixed instructions + room context + rolling summary (stable
+     *    until members/issues change or the summary is refreshed)
+     * 2. the unsummarized history, oldest first (append-only between turns)
+     * 3. a final instruction naming the question(s) to answer, plus reference
+     *    notes retrieved for them (the only part that is not carried over to
+     *    the next turn, so retrieval never invalidates the cached prefix)
+     */
+    private List<Map<String, String>> buildMessages(ChatRoom chatRoom, List<ChatMessage> questions) {
+        ChatRoomSummary summary = summaryService.currentSummary(chatRoom.getId());
+
+        List<Map<String, String>> messages = new ArrayList<>();
+        messages.add(chatMessage("system", buildSystemPrompt(chatRoom, summary)));
+
+        List<ChatMessage> recentMessages = messageRepo.findByChatRoomIdAndIdGreaterThanOrderByIdDesc(
+                chatRoom.getId(), summary.getLastMessageId(), PageRequest.of(0, contextWindow));
+        // Reverse to chronological order
+        Collections.reverse(recentMessages);
+
+        for (ChatMessage msg : recentMessages) {
+            if (Boolean.TRUE.equals(msg.getDraft())) continue;
+            boolean fromAi = "AI".equals(msg.getSenderType()) && msg.getType() == MessageType.AI_RESPONSE;
+            messages.add(fromAi
+                    ? chatMessage("assistant", msg.getContent())
+                    : chatMessage("user", historyLine(msg)));
+        }
+
+        // Current question(s) — several may have been queued while Ollama was busy
+        StringBuilder sb = new StringBuilder();
+        if (questions.size() == 1) {
+            ChatMessage userMessage = questions.get(0);
+            sb.append("--- CURRENT QUESTION ---\n");
+            sb.append("Asked by: ").append(userMessage.getSender().getUsername()).append("\n");
+            sb.append("Question: ").append(userMessage.getContent()).append("\n");
+
+            sb.append("\nPlease provide a helpful, accurate response. /no_think\n");
+        } else {
+            sb.append("--- CURRENT QUESTIONS ---\n");
+            int n = 1;
+            for (ChatMessage userMessage : questions) {
+                sb.append(n++).append(". Asked by ").append(userMessage.getSender().getUsername())
+                        .append(": ").append(userMessage.getContent()).append("\n");
+            }
+
+            sb.append("\nAnswer all of the questions above in one reply, addressing each asker by name.")
+                    .append(" Please provide a helpful, accurate response. /no_think\n");
+        }
+        appendReferenceNotes(sb, questions);
+        messages.add(chatMessage("user", sb.toString()));
+
+        return messages;
+    }
+
+    private void appendReferenceNotes(StringBuilder sb, List<ChatMessage> questions) {
+        String query = String.join("\n", questions.stream().map(ChatMessage::getContent).toList());
+        List<RetrievalService.Passage> passages = retrievalService.search(query, retrievalTopK);
+        if (passages.isEmpty()) return;
+
+        sb.append("\n--- REFERENCE NOTES (knowledge base and farmer forum; use only if relevant) ---\n");
+        for (RetrievalService.Passage passage : passages) {
+            String text = passage.text().strip();
+            if (text.length() > MAX_HISTORY_LINE_CHARS) {
+                text = text.substring(0, MAX_HISTORY_LINE_CHARS) + "...";
+            }
+            sb.append("[").append(passage.source()).append(": ").append(passage.title()).append("]\n")
+                    .append(text).append("\n");
         }
     }
 
-    private String buildPrompt(ChatRoom chatRoom, ChatMessage userMessage) {
+    private String buildSystemPrompt(ChatRoom chatRoom, ChatRoomSummary summary) {
         StringBuilder sb = new StringBuilder();
 
         // System instruction
@@ -131,6 +294,7 @@ public class ChatAiService {
                 Do not pretend to be human.
                 Do not invent facts.
                 If information is missing, say what is missing.
+                Chat messages from people are shown as "username: message".
 
                 """);
 
@@ -141,8 +305,9 @@ public class ChatAiService {
             sb.append("Disease topic: ").append(chatRoom.getDiseaseLabel()).append("\n");
         }
 
-        // Participants
-        List<ChatMembership> members = membershipRepo.findByChatRoomId(chatRoom.getId());
+        // Participants (stable order keeps the prompt prefix identical between turns)
+        List<ChatMembership> members = new ArrayList<>(membershipRepo.findByChatRoomId(chatRoom.getId()));
+        members.sort(Comparator.comparing(ChatMembership::getId));
         sb.append("\nParticipants:\n");
         for (ChatMembership m : members) {
             sb.append("- ").append(m.getUser().getUsername())
@@ -151,7 +316,8 @@ public class ChatAiService {
         sb.append("- Ollama (AI_ASSISTANT)\n");
 
         // Linked issues context
-        List<ChatIssueLink> issueLinks = issueLinkRepo.findByChatRoomId(chatRoom.getId());
+        List<ChatIssueLink> issueLinks = new ArrayList<>(issueLinkRepo.findByChatRoomId(chatRoom.getId()));
+        issueLinks.sort(Comparator.comparing(link -> link.getIssue().getId()));
         if (!issueLinks.isEmpty()) {
             sb.append("\nLinked issues:\n");
             for (ChatIssueLink link : issueLinks) {
@@ -172,71 +338,144 @@ public class ChatAiService {
             }
         }
 
-        // Recent conversation history
-        List<ChatMessage> recentMessages = messageRepo.findByChatRoomIdOrderByCreatedAtDesc(
-                chatRoom.getId(), PageRequest.of(0, contextWindow));
-        // Reverse to chronological order
-        Collections.reverse(recentMessages);
-
-        sb.append("\n--- RECENT CONVERSATION ---\n");
-        for (ChatMessage msg : recentMessages) {
-            if (msg.getType() == MessageType.SYSTEM) {
-                sb.append("[SYSTEM]: ").append(msg.getContent()).append("\n");
-            } else {
-                String senderLabel = msg.getSender().getUsername();
-                if ("AI".equals(msg.getSenderType())) {
-                    senderLabel = "Ollama (AI)";
-                }
-                sb.append(senderLabel).append(": ").append(msg.getContent()).append("\n");
-            }
+        // Older history is carried by the rolling summary; only the tail after
+        // its cursor is sent verbatim (capped at the context window).
+        if (!summary.getSummary().isBlank()) {
+            sb.append("\n--- CONVERSATION SUMMARY (earlier messages) ---\n");
+            sb.append(summary.getSummary()).append("\n");
         }
 
-        // Current question
-        sb.append("\n--- CURRENT QUESTION ---\n");
-        sb.append("Asked by: ").append(userMessage.getSender().getUsername()).append("\n");
-        sb.append("Question: ").append(userMessage.getContent()).append("\n");
+        return sb.toString();
+    }
+
+    private static Map<String, String> chatMessage(String role, String content) {
+        Map<String, String> message = new LinkedHashMap<>();
+        message.put("role", role);
+        message.put("content", content);
+        return message;
+    }
 
-        sb.append("\nPlease provide a helpful, accurate response. /no_think\n");
+    /**
+     * One line of conversation history as shown to the model (and folded into summaries).
+     */
+    static String historyLine(ChatMessage msg) {
+        String content = msg.getContent();
+        if (content.length() > MAX_HISTORY_LINE_CHARS) {
+            content = content.substring(0, MAX_HISTORY_LINE_CHARS) + "...";
+        }
 
-        return sb.toString();
+        if (msg.getType() == MessageType.SYSTEM) {
+            return "[SYSTEM]: " + content;
+        }
+        String senderLabel = "AI".equals(msg.getSenderType())
+                ? "Ollama (AI)"
+                : msg.getSender().getUsername();
+        return senderLabel + ": " + content;
     }
 
-    private String callOllama(String prompt) {
+    /**
+     * Consumes Ollama's NDJSON stream, pushing visible text deltas to room
+     * subscribers and periodically flushing the partial reply to the draft row.
+     * Returns the final visible text.
+     */
+    private String streamOllama(Long chatRoomId, Long draftId, List<Map<String, String>> messages,
+                                AiJobHandle handle) {
         Map<String, Object> payload = new LinkedHashMap<>();
         payload.put("model", ollamaModel);
-        payload.put("prompt", prompt);
-        payload.put("stream", false);
+        payload.put("messages", messages);
+        payload.put("stream", true);
         payload.put("keep_alive", "10m");
 
-        String response = webClient.post()
-                .uri(ollamaBaseUrl + "/api/generate")
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(payload)
-                .retrieve()
-                .bodyToMono(String.class)
-                .timeout(Duration.ofSeconds(ollamaTimeoutSeconds))
-                .block();
+        StreamState state = new StreamState();
 
-        if (response == null) {
-            throw new RuntimeException("Ollama returned null response");
-        }
+        llmGateway.stream("/api/chat", payload)
+                .takeUntilOther(handle.whenCancelled())
+                .filter(line -> !line.isBlank())
+                .doOnNext(line -> onStreamLine(chatRoomId, draftId, line, state))
+                .blockLast(Duration.ofSeconds(ollamaTimeoutSeconds));
+
+        return THINK_BLOCK.matcher(state.raw).replaceAll("").strip();
+    }
 
+    private void onStreamLine(Long chatRoomId, Long draftId, String line, StreamState state) {
+        JsonNode chunk;
         try {
-            JsonNode root = objectMapper.readTree(response);
+            chunk = objectMapper.readTree(line);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse Ollama stream chunk: " + e.getMessage(), e);
+        }
+
+        if (chunk.hasNonNull("error")) {
+            throw new RuntimeException("Ollama stream error: " + chunk.path("error").asText());
+        }
 
-            long totalNs = root.path("total_duration").asLong(0);
-            int evalTokens = root.path("eval_count").asInt(0);
-            log.info("Chat AI Ollama: total={} ms, eval_tokens={}",
-                    totalNs / 1_000_000, evalTokens);
+        state.raw.append(chunk.path("message").path("content").asText(""));
 
-            String text = root.path("response").asText("");
-            log.debug("Chat AI raw response length: {}", text.length());
+        String visible = visibleText(state.raw.toString());
+        if (visible.length() > state.sentLength) {
+            String delta = visible.substring(state.sentLength);
+            state.sentLength = visible.length();
+            streamHub.publish(chatRoomId, "ai-token", Map.of("messageId", draftId, "delta", delta));
+        }
 
-            // Strip any <think> blocks the model may produce
-            text = text.replaceAll("(?s)<think>.*?</think>", "").strip();
-            return text;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to parse Ollama chat response: " + e.getMessage(), e);
+        long now = System.currentTimeMillis();
+        if (now - state.lastFlushAt >= streamFlushMs && state.sentLength > state.flushedLength) {
+            messageRepo.updateContent(draftId, visible, true);
+            state.flushedLength = state.sentLength;
+            state.lastFlushAt = now;
+        }
+
+        if (chunk.path("done").asBoolean(false)) {
+            recordOllamaStats(chunk);
+        }
+    }
+
+    /**
+     * prompt_eval_count only counts tokens Ollama actually had to evaluate, so on
+     * follow-up turns it shows how much of the prefix was served from the KV cache.
+     */
+    private void recordOllamaStats(JsonNode done) {
+        long totalNs = done.path("total_duration").asLong(0);
+        long promptEvalNs = done.path("prompt_eval_duration").asLong(0);
+        long evalNs = done.path("eval_duration").asLong(0);
+        int promptTokens = done.path("prompt_eval_count").asInt(0);
+        int evalTokens = done.path("eval_count").asInt(0);
+
+        promptTokensSummary.record(promptTokens);
+        promptEvalTimer.record(promptEvalNs, TimeUnit.NANOSECONDS);
+        evalTimer.record(evalNs, TimeUnit.NANOSECONDS);
+
+        log.info("Chat AI Ollama: total={} ms, prompt_eval={} ms, eval={} ms, prompt_tokens={}, eval_tokens={}",
+                totalNs / 1_000_000, promptEvalNs / 1_000_000, evalNs / 1_000_000, promptTokens, evalTokens);
+    }
+
+    /**
+     * Text that is safe to show while streaming: completed think blocks are
+     * removed, an unterminated one is hidden, and a trailing fragment that could
+     * still turn into an opening think tag is held back.
+     */
+    static String visibleText(String raw) {
+        String text = THINK_BLOCK.matcher(raw).replaceAll("");
+
+        int open = text.indexOf(THINK_OPEN);
+        if (open >= 0) {
+            text = text.substring(0, open);
         }
+
+        for (int len = Math.min(THINK_OPEN.length() - 1, text.length()); len > 0; len--) {
+            if (THINK_OPEN.startsWith(text.substring(text.length() - len))) {
+                text = text.substring(0, text.length() - len);
+                break;
+            }
+        }
+
+        return text.stripLeading();
+    }
+
+    private static final class StreamState {
+        final StringBuilder raw = new StringBuilder();
+        int sentLength;
+        int flushedLength;
+        long lastFlushAt = System.currentTimeMillis();
     }
 }
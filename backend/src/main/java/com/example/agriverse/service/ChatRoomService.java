@@ -12,6 +12,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -27,7 +28,8 @@ public class ChatRoomService {
     private final ChatMessageRepository messageRepo;
     private final IssueRepository issueRepo;
     private final UserRepository userRepo;
-    private final ChatAiService chatAiService;
+    private final ChatAiScheduler chatAiScheduler;
+    private final ChatStreamHub chatStreamHub;
 
     private User currentUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -256,17 +258,32 @@ public class ChatRoomService {
 
         message = messageRepo.save(message);
 
-        // If targeting Ollama, trigger AI response asynchronously.
-        // The @Async method runs on Spring's managed thread pool with proper
-        // transaction context. The HTTP response returns immediately with the
-        // user's message; Ollama's reply will appear via the frontend's polling.
-        if (targetingOllama) {
-            chatAiService.generateAndSaveResponse(chatRoom.getId(), message.getId());
+        // If targeting Ollama, queue the question for the AI scheduler. The HTTP
+        // response returns immediately with the user's message; Ollama's reply is
+        // streamed to /stream subscribers and also shows up (as a draft) via polling.
+        // Questions queued while Ollama is busy in this room get one combined answer.
+        if (targetingOllama && !chatAiScheduler.submit(chatRoom.getId(), message.getId())) {
+            User ollamaUser = userRepo.findByUsername(AiUserConfig.OLLAMA_USERNAME)
+                    .orElseThrow(() -> new RuntimeException("Ollama system user not found"));
+            messageRepo.save(ChatMessage.builder()
+                    .chatRoom(chatRoom)
+                    .sender(ollamaUser)
+                    .content("Ollama is busy answering other questions right now. Please ask again in a moment.")
+                    .type(MessageType.SYSTEM)
+                    .build());
         }
 
         return toMessageResponse(message);
     }
 
+    public SseEmitter subscribe(Long chatRoomId) {
+        // Same visibility as getMessages: any authenticated user can follow a room
+        currentUser();
+        chatRoomRepo.findById(chatRoomId)
+                .orElseThrow(() -> new RuntimeException("Chat room not found"));
+        return chatStreamHub.subscribe(chatRoomId);
+    }
+
     @Transactional
     public ChatRoomResponse closeChat(Long chatRoomId) {
         User officer = currentUser();
@@ -292,6 +309,9 @@ public class ChatRoomService {
                 .type(MessageType.SYSTEM)
                 .build());
 
+        chatAiScheduler.cancelRoom(chatRoomId);
+        chatStreamHub.close(chatRoomId);
+
         return toResponse(chatRoom);
     }
 
@@ -462,6 +482,7 @@ public class ChatRoomService {
                 .targetType(m.getTargetType())
                 .content(m.getContent())
                 .type(m.getType())
+                .draft(Boolean.TRUE.equals(m.getDraft()))
                 .createdAt(m.getCreatedAt())
                 .build();
     }
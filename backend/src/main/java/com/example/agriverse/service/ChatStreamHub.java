@@ -0,0 +1,15 @@
+package com.example.agriverse.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Live chat events (streamed AI tokens) for the clients that have a room
+ * open, keyed by chat room id.
+ */
+@Component
+public class ChatStreamHub extends SseHub<Long> {
+
+    public ChatStreamHub() {
+        super("chat room");
+    }
+}
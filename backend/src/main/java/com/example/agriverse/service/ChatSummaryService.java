@@ -0,0 +1,218 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.model.*;
+import com.example.agriverse.repository.*;
+import com.example.agriverse.service.llm.LlmGateway;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Maintains a rolling per-room summary for the chat AI.
+ *
+ * Once more than {@code chat.ai.summary.trigger} messages sit past the summary
+ * cursor, the oldest of them (all but {@code chat.ai.summary.keep-recent}) are
+ * folded into the summary in the background. Chat prompts then carry the
+ * summary plus the short unsummarized tail instead of the full history.
+ */
+@Slf4j
+@Service
+public class ChatSummaryService {
+
+    private static final int MAX_BATCHES_PER_REFRESH = 5;
+
+    private final LlmGateway llmGateway;
+    private final ChatRoomRepository chatRoomRepo;
+    private final ChatMessageRepository messageRepo;
+    private final ChatRoomSummaryRepository summaryRepo;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Set<Long> queuedRooms = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(200),
+            r -> {
+                Thread t = new Thread(r, "chat-summary");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+    @Value("${ollama.model:qwen3:8b}")
+    private String ollamaModel;
+
+    @Value("${chat.ai.summary.trigger:20}")
+    private int summaryTrigger;
+
+    @Value("${chat.ai.summary.keep-recent:8}")
+    private int keepRecent;
+
+    @Value("${chat.ai.summary.batch-size:40}")
+    private int batchSize;
+
+    @Value("${chat.ai.summary.max-chars:2000}")
+    private int maxSummaryChars;
+
+    public ChatSummaryService(LlmGateway llmGateway,
+                              ChatRoomRepository chatRoomRepo,
+                              ChatMessageRepository messageRepo,
+                              ChatRoomSummaryRepository summaryRepo,
+                              TransactionTemplate transactionTemplate) {
+        this.llmGateway = llmGateway;
+        this.chatRoomRepo = chatRoomRepo;
+        this.messageRepo = messageRepo;
+        this.summaryRepo = summaryRepo;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Schedules a background summary update for the room. Cheap to call after
+     * every AI turn: it is a no-op while the unsummarized tail is short, and a
+     * room already waiting in the queue is not queued twice. When the queue is
+     * full the request is dropped, and the room's next turn asks again.
+     */
+    public void requestRefresh(Long chatRoomId) {
+        if (!queuedRooms.add(chatRoomId)) return;
+        try {
+            executor.execute(() -> {
+                queuedRooms.remove(chatRoomId);
+                try {
+                    refresh(chatRoomId);
+                } catch (Exception e) {
+                    log.warn("Chat summary refresh failed for room {}: {}", chatRoomId, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queuedRooms.remove(chatRoomId);
+            log.debug("Chat summary queue full, refresh for room {} dropped", chatRoomId);
+        }
+    }
+
+    /**
+     * Current summary and its cursor; an empty summary with cursor 0 if none yet.
+     */
+    public ChatRoomSummary currentSummary(Long chatRoomId) {
+        return summaryRepo.findById(chatRoomId)
+                .orElseGet(() -> ChatRoomSummary.builder()
+                        .chatRoomId(chatRoomId)
+                        .summary("")
+                        .lastMessageId(0L)
+                        .build());
+    }
+
+    private void refresh(Long chatRoomId) {
+        for (int i = 0; i < MAX_BATCHES_PER_REFRESH; i++) {
+            Batch batch = transactionTemplate.execute(status -> collectBatch(chatRoomId));
+            if (batch == null) return;
+
+            long start = System.nanoTime();
+            String updated = callOllama(buildSummaryPrompt(batch.previousSummary(), batch.lines()));
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+
+            if (updated.isBlank()) {
+                log.warn("Ollama returned an empty summary for room {}", chatRoomId);
+                return;
+            }
+            String summary = updated.length() > maxSummaryChars
+                    ? updated.substring(0, maxSummaryChars)
+                    : updated;
+
+            transactionTemplate.executeWithoutResult(status -> {
+                ChatRoomSummary current = currentSummary(chatRoomId);
+                current.setSummary(summary);
+                current.setLastMessageId(batch.lastMessageId());
+                summaryRepo.save(current);
+            });
+
+            log.info("Chat summary for room {} now covers up to message {} ({} new messages, {} chars, {} ms)",
+                    chatRoomId, batch.lastMessageId(), batch.lines().size(), summary.length(), durationMs);
+        }
+    }
+
+    private Batch collectBatch(Long chatRoomId) {
+        ChatRoom chatRoom = chatRoomRepo.findById(chatRoomId).orElse(null);
+        if (chatRoom == null || chatRoom.getStatus() != ChatRoomStatus.ACTIVE) return null;
+
+        ChatRoomSummary current = currentSummary(chatRoomId);
+        long pending = messageRepo.countByChatRoomIdAndIdGreaterThan(chatRoomId, current.getLastMessageId());
+        if (pending <= summaryTrigger) return null;
+
+        int toFold = (int) Math.min(pending - keepRecent, batchSize);
+        List<ChatMessage> older = messageRepo.findByChatRoomIdAndIdGreaterThanOrderByIdAsc(
+                chatRoomId, current.getLastMessageId(), PageRequest.of(0, toFold));
+
+        List<String> lines = new ArrayList<>();
+        Long lastMessageId = null;
+        for (ChatMessage msg : older) {
+            // Never fold a reply that is still streaming in
+            if (Boolean.TRUE.equals(msg.getDraft())) break;
+            lines.add(ChatAiService.historyLine(msg));
+            lastMessageId = msg.getId();
+        }
+        if (lastMessageId == null) return null;
+
+        return new Batch(current.getSummary(), lines, lastMessageId);
+    }
+
+    private String buildSummaryPrompt(String previousSummary, List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("""
+                You maintain a running summary of a support chat between farmers, government agricultural officers and an AI assistant.
+                Update the summary so it also covers the new messages below.
+                Keep: crops, diseases and symptoms discussed, advice already given, decisions, and open questions (with who asked them).
+                Drop greetings and small talk. Do not invent facts.
+                """);
+        sb.append("Keep the summary under ").append(Math.max(50, maxSummaryChars / 6)).append(" words.\n");
+        sb.append("Return only the updated summary text.\n\n");
+
+        sb.append("--- CURRENT SUMMARY ---\n");
+        sb.append(previousSummary == null || previousSummary.isBlank() ? "(none yet)" : previousSummary).append("\n");
+
+        sb.append("\n--- NEW MESSAGES ---\n");
+        for (String line : lines) {
+            sb.append(line).append("\n");
+        }
+
+        sb.append("\n/no_think\n");
+        return sb.toString();
+    }
+
+    private String callOllama(String prompt) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("model", ollamaModel);
+        payload.put("prompt", prompt);
+        payload.put("stream", false);
+        payload.put("keep_alive", "10m");
+
+        String response = llmGateway.post("/api/generate", payload).block();
+
+        if (response == null) {
+            throw new RuntimeException("Ollama returned null response");
+        }
+
+        try {
+            JsonNode root = objectMapper.readTree(response);
+            String text = root.path("response").asText("");
+            return text.replaceAll("(?s)<think>.*?</think>", "").strip();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse Ollama summary response: " + e.getMessage(), e);
+        }
+    }
+
+    private record Batch(String previousSummary, List<String> lines, Long lastMessageId) {}
+}
@@ -1,21 +1,55 @@
 package com.example.agriverse.service;
 
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sends mail synchronously from the caller's point of view, but the SMTP
+ * exchange itself runs on a small pool of platform threads (Jakarta Mail
+ * blocks inside its own monitors); the caller just waits on a Future.
+ */
 @Service
-@RequiredArgsConstructor
 public class EmailService {
 
     private final JavaMailSender mailSender;
+    private final ExecutorService mailExecutor;
+
+    public EmailService(JavaMailSender mailSender,
+                        @Value("${mail.sender.threads:2}") int senderThreads) {
+        this.mailSender = mailSender;
+        this.mailExecutor = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread t = new Thread(r, "mail-sender");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        mailExecutor.shutdown();
+    }
 
     public void send(String to, String subject, String body) {
         SimpleMailMessage msg = new SimpleMailMessage();
         msg.setTo(to);
         msg.setSubject(subject);
         msg.setText(body);
-        mailSender.send(msg);
+
+        try {
+            mailExecutor.submit(() -> mailSender.send(msg)).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new RuntimeException("Failed to send mail: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sending mail", e);
+        }
     }
 }
@@ -5,15 +5,20 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.nio.file.*;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Service
 public class FileStorageService {
 
     private final Path uploadRoot = Paths.get("uploads");
+    // Images uploaded for prediction, not yet attached to an issue (not served)
+    private final Path pendingRoot = uploadRoot.resolve("pending");
 
     public String saveImage(MultipartFile file) {
         if (file == null || file.isEmpty())
@@ -47,6 +52,83 @@ public class FileStorageService {
         }
     }
 
+    /**
+     * Stores an image uploaded for prediction under uploads/pending and
+     * returns its file name. It becomes visible only once promoted.
+     */
+    public String savePending(byte[] bytes, String originalFilename) {
+        try {
+            Files.createDirectories(pendingRoot);
+
+            String original = StringUtils.cleanPath(originalFilename == null ? "image" : originalFilename);
+            int dot = original.lastIndexOf('.');
+            String ext = dot >= 0 ? original.substring(dot) : "";
+
+            String filename = UUID.randomUUID() + ext;
+            Path target = pendingRoot.resolve(filename).normalize();
+            if (!target.startsWith(pendingRoot))
+                throw new RuntimeException("Invalid file path");
+
+            Files.write(target, bytes, StandardOpenOption.CREATE_NEW);
+            return filename;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store file", e);
+        }
+    }
+
+    /**
+     * Moves a pending image into the served upload directory and returns its
+     * URL. Promoting an already promoted image returns the same URL.
+     */
+    public String promotePending(String filename) {
+        Path source = pendingRoot.resolve(filename).normalize();
+        Path target = uploadRoot.resolve(filename).normalize();
+        if (!source.startsWith(pendingRoot) || !target.startsWith(uploadRoot))
+            throw new RuntimeException("Invalid file path");
+
+        try {
+            if (Files.exists(source)) {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            } else if (!Files.exists(target)) {
+                throw new RuntimeException("Uploaded image has expired, please upload it again");
+            }
+            return "/api/files/" + filename;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store file", e);
+        }
+    }
+
+    public byte[] readPending(String filename) throws IOException {
+        Path source = pendingRoot.resolve(filename).normalize();
+        if (!source.startsWith(pendingRoot))
+            throw new RuntimeException("Invalid file path");
+        return Files.readAllBytes(source);
+    }
+
+    /**
+     * Deletes pending images older than maxAge; returns how many were removed.
+     */
+    public int purgePending(Duration maxAge) {
+        if (!Files.isDirectory(pendingRoot))
+            return 0;
+
+        Instant cutoff = Instant.now().minus(maxAge);
+        int removed = 0;
+        try (Stream<Path> files = Files.list(pendingRoot)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                try {
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file))
+                        removed++;
+                } catch (IOException ignored) {
+                    // Promoted or deleted concurrently
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list pending uploads", e);
+        }
+        return removed;
+    }
+
     public Path getFilePath(String filename) {
         return uploadRoot.resolve(filename).normalize();
     }
@@ -3,6 +3,7 @@ package com.example.agriverse.service;
 import com.example.agriverse.dto.*;
 import com.example.agriverse.model.*;
 import com.example.agriverse.repository.*;
+import com.example.agriverse.service.retrieval.RetrievalService;
 import com.example.agriverse.spec.ForumPostSpecs;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.*;
@@ -19,6 +20,7 @@ public class ForumService {
     private final ForumPostRepository postRepo;
     private final ForumCommentRepository commentRepo;
     private final UserRepository userRepo;
+    private final RetrievalService retrievalService;
 
     private User currentUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -75,6 +77,7 @@ public class ForumService {
                 .content(req.getContent().trim())
                 .build());
 
+        retrievalService.indexPost(saved.getId(), saved.getTitle(), saved.getContent());
         return toPostResponse(saved);
     }
 
@@ -0,0 +1,228 @@
+package com.example.agriverse.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Shrinks uploaded photos before they go to the ML service. The model works
+ * at 224px, but phones upload multi-megapixel JPEGs; sending those costs
+ * upload time and a full-size decode in Python.
+ *
+ * Images are decoded, downscaled so the longer edge is at most
+ * ml.preprocess.max-edge (default 512, leaving the leaf filter enough detail
+ * to crop from), rotated upright according to their EXIF orientation and
+ * re-encoded as JPEG. Images that are already small and upright, or that
+ * ImageIO cannot decode (e.g. WebP, CMYK JPEG), are passed through unchanged.
+ * The decoded pixels are handed on for the {@link LeafPrefilter}.
+ */
+@Slf4j
+@Component
+public class ImagePreprocessor {
+
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    private final Timer timer;
+
+    @Value("${ml.preprocess.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ml.preprocess.max-edge:512}")
+    private int maxEdge;
+
+    @Value("${ml.preprocess.jpeg-quality:0.9}")
+    private float jpegQuality;
+
+    public ImagePreprocessor(MeterRegistry meterRegistry) {
+        this.timer = Timer.builder("ml.preprocess")
+                .description("Time to decode, orient and downscale an uploaded image")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The image to send and its decoded pixels (after any downscaling), or
+     * null pixels if it was not decoded. sourceWidth and sourceHeight are the
+     * uploaded image's dimensions before downscaling (0 if not decoded).
+     */
+    record Prepared(MlPredictionService.ImagePart image, BufferedImage pixels, int sourceWidth, int sourceHeight) {
+
+        static Prepared unchanged(MlPredictionService.ImagePart image, BufferedImage source) {
+            return source == null
+                    ? new Prepared(image, null, 0, 0)
+                    : new Prepared(image, source, source.getWidth(), source.getHeight());
+        }
+    }
+
+    /**
+     * Downscales the image if enabled; decodePixels asks for the pixels even
+     * when nothing else needs decoding (for the leaf pre-filter).
+     */
+    Prepared prepare(MlPredictionService.ImagePart image, boolean decodePixels) {
+        if (!enabled && !decodePixels) return Prepared.unchanged(image, null);
+
+        return timer.record(() -> {
+            try {
+                BufferedImage source = ImageIO.read(new ByteArrayInputStream(image.bytes()));
+                if (source == null || !enabled) return Prepared.unchanged(image, source);
+
+                int orientation = exifOrientation(image.bytes());
+                int longEdge = Math.max(source.getWidth(), source.getHeight());
+                if (longEdge <= maxEdge && orientation == 1) return Prepared.unchanged(image, source);
+
+                BufferedImage oriented = orient(downscale(source, maxEdge), orientation);
+                byte[] jpeg = encodeJpeg(oriented);
+                log.debug("Preprocessed {}: {}x{} -> max edge {}, {} -> {} bytes", image.filename(),
+                        source.getWidth(), source.getHeight(), Math.min(longEdge, maxEdge),
+                        image.bytes().length, jpeg.length);
+                return new Prepared(new MlPredictionService.ImagePart(jpeg, jpegName(image.filename()), "image/jpeg"),
+                        oriented, source.getWidth(), source.getHeight());
+            } catch (Exception | OutOfMemoryError e) {
+                log.warn("Image preprocessing failed for {}, sending original: {}", image.filename(), e.getMessage());
+                return Prepared.unchanged(image, null);
+            }
+        });
+    }
+
+    /**
+     * Halves the image with bilinear filtering until within 2x of the target,
+     * then scales to the target: close to area averaging, much faster.
+     */
+    private static BufferedImage downscale(BufferedImage source, int maxEdge) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = toRgb(source);
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = resize(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        if (current.getWidth() != targetWidth || current.getHeight() != targetHeight) {
+            current = resize(current, targetWidth, targetHeight);
+        }
+        return current;
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) return image;
+        return resize(image, image.getWidth(), image.getHeight());
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return out;
+    }
+
+    /**
+     * Applies an EXIF orientation (1-8) so the result is upright.
+     */
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation < 2 || orientation > 8) return image;
+
+        int w = image.getWidth();
+        int h = image.getHeight();
+        boolean swap = orientation >= 5;
+        BufferedImage out = new BufferedImage(swap ? h : w, swap ? w : h, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < out.getHeight(); y++) {
+            for (int x = 0; x < out.getWidth(); x++) {
+                int rgb = switch (orientation) {
+                    case 2 -> image.getRGB(w - 1 - x, y);          // mirrored
+                    case 3 -> image.getRGB(w - 1 - x, h - 1 - y);  // rotated 180
+                    case 4 -> image.getRGB(x, h - 1 - y);          // flipped vertically
+                    case 5 -> image.getRGB(y, x);                  // transposed
+                    case 6 -> image.getRGB(y, h - 1 - x);          // needs 90 clockwise
+                    case 7 -> image.getRGB(w - 1 - y, h - 1 - x);  // transversed
+                    default -> image.getRGB(w - 1 - y, x);         // 8: needs 90 counter-clockwise
+                };
+                out.setRGB(x, y, rgb);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Reads the orientation tag from a JPEG's EXIF block; 1 (upright) if absent
+     * or not a JPEG.
+     */
+    static int exifOrientation(byte[] bytes) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
+            if (buf.remaining() < 4 || (buf.getShort() & 0xFFFF) != 0xFFD8) return 1;
+
+            while (buf.remaining() >= 4) {
+                int marker = buf.getShort() & 0xFFFF;
+                int length = buf.getShort() & 0xFFFF;
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || length < 2) return 1;
+                int segmentStart = buf.position();
+
+                if (marker == 0xFFE1 && length >= 16
+                        && buf.getInt(segmentStart) == 0x45786966 /* "Exif" */) {
+                    return orientationFromTiff(buf, segmentStart + 6);
+                }
+                buf.position(segmentStart + length - 2);
+            }
+        } catch (RuntimeException e) {
+            // Malformed EXIF: treat as upright
+        }
+        return 1;
+    }
+
+    private static int orientationFromTiff(ByteBuffer buf, int tiffStart) {
+        ByteBuffer tiff = buf.duplicate();
+        short byteOrder = tiff.getShort(tiffStart);
+        tiff.order(byteOrder == 0x4949 /* "II" */ ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+
+        int ifd = tiffStart + tiff.getInt(tiffStart + 4);
+        int entries = tiff.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if ((tiff.getShort(entry) & 0xFFFF) == EXIF_ORIENTATION_TAG) {
+                int value = tiff.getShort(entry + 8) & 0xFFFF;
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static String jpegName(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return (dot > 0 ? filename.substring(0, dot) : filename) + ".jpg";
+    }
+}
@@ -30,6 +30,7 @@ public class IssueService {
     private final UserRepository userRepo;
     private final FileStorageService fileStorageService;
     private final ChatIssueLinkRepository chatIssueLinkRepo;
+    private final UploadTokenService uploadTokenService;
 
     private User currentUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -52,15 +53,37 @@ public class IssueService {
                 u.getRoles().stream().map(Role::getName).collect(Collectors.toSet()));
     }
 
+    private record IssueImages(List<String> urls, Long predictionId) {}
+
+    /**
+     * Claims images already uploaded to /api/ml/predict, then stores any new
+     * ones. The issue links to req.predictionId only if it is one of the
+     * claimed uploads' predictions (/predict only hands out ids of predictions
+     * it is storing).
+     */
+    private IssueImages storeImages(CreateIssueRequest req, List<MultipartFile> images) {
+        List<String> urls = new ArrayList<>();
+        Long predictionId = null;
+        for (UploadTokenService.ClaimedUpload upload : uploadTokenService.claim(req.getUploadTokens())) {
+            urls.add(upload.imageUrl());
+            if (req.getPredictionId() != null && req.getPredictionId() == upload.predictionId()) {
+                predictionId = upload.predictionId();
+            }
+        }
+        urls.addAll(fileStorageService.saveImages(images));
+        return new IssueImages(urls, predictionId);
+    }
+
     public IssueResponse createIssue(
             CreateIssueRequest req,
             List<MultipartFile> images) {
         User farmer = currentUser();
 
-        List<String> imageUrls = fileStorageService.saveImages(images);
+        IssueImages issueImages = storeImages(req, images);
 
         Issue issue = Issue.builder()
                 .farmer(farmer)
+                .predictionId(issueImages.predictionId())
                 .predictedDisease(req.getPredictedDisease())
                 .cropName(req.getCropName())
                 .confidence(req.getConfidence())
@@ -71,7 +94,7 @@ public class IssueService {
                 .latitude(req.getLatitude())
                 .longitude(req.getLongitude())
                 .locationText(req.getLocationText())
-                .imageUrls(new ArrayList<>(imageUrls))
+                .imageUrls(issueImages.urls())
                 .build();
 
         Issue saved = issueRepo.save(issue);
@@ -241,7 +264,7 @@ public class IssueService {
             CreateIssueRequest req,
             List<MultipartFile> images) {
         User farmer = currentUser();
-        List<String> imageUrls = fileStorageService.saveImages(images);
+        IssueImages issueImages = storeImages(req, images);
 
         List<User> officers = userRepo
                 .findByRoles_NameAndLatitudeIsNotNullAndLongitudeIsNotNull("ROLE_GOVT_OFFICER");
@@ -261,6 +284,7 @@ public class IssueService {
 
         Issue issue = Issue.builder()
                 .farmer(farmer)
+                .predictionId(issueImages.predictionId())
                 .predictedDisease(req.getPredictedDisease())
                 .cropName(req.getCropName())
                 .confidence(req.getConfidence())
@@ -272,7 +296,7 @@ public class IssueService {
                 .latitude(req.getLatitude())
                 .longitude(req.getLongitude())
                 .locationText(req.getLocationText())
-                .imageUrls(new ArrayList<>(imageUrls))
+                .imageUrls(issueImages.urls())
                 .build();
 
         return toResponse(issueRepo.save(issue));
@@ -0,0 +1,11 @@
+package com.example.agriverse.service;
+
+import java.util.Set;
+
+/**
+ * Published after a knowledge base reload swapped in a new snapshot.
+ *
+ * @param snapshot    the snapshot now returned by {@link KnowledgeBaseService#current()}
+ * @param changedKeys entries added, edited or removed by the reload
+ */
+public record KnowledgeBaseChangedEvent(KnowledgeIndex snapshot, Set<String> changedKeys) {}
@@ -0,0 +1,260 @@
+package com.example.agriverse.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owns the disease knowledge base and publishes it as an immutable
+ * {@link KnowledgeIndex}. Readers take {@link #current()} once per request and
+ * work against that snapshot.
+ *
+ * Entries come from classpath:knowledge/*.txt, optionally overridden and
+ * extended by files in {@code knowledge.external-dir}. That directory is
+ * watched: changes are re-read on the watcher thread, swapped in as a new
+ * snapshot, and announced with a {@link KnowledgeBaseChangedEvent} naming the
+ * entries that changed.
+ */
+@Slf4j
+@Service
+public class KnowledgeBaseService {
+
+    private static final String ALIASES_FILE = "aliases.properties";
+    private static final long DEBOUNCE_MS = 500;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${knowledge.external-dir:}")
+    private String externalDir;
+
+    private volatile KnowledgeIndex index = KnowledgeIndex.empty();
+
+    // Written once at startup
+    private Map<String, String> classpathEntries = Map.of();
+    private Map<String, String> classpathAliases = Map.of();
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private Thread watcherThread;
+
+    public KnowledgeBaseService(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    public KnowledgeIndex current() {
+        return index;
+    }
+
+    @PostConstruct
+    void loadKnowledgeBase() {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        Map<String, String> knowledgeBase = new HashMap<>();
+        try {
+            Resource[] resources = resolver.getResources("classpath:knowledge/*.txt");
+
+            for (Resource resource : resources) {
+                String filename = resource.getFilename();
+                if (filename == null) continue;
+
+                String key = filename.replace(".txt", "");
+                if ("cross_cutting".equalsIgnoreCase(key)) {
+                    continue; // no longer used in prompt
+                }
+
+                String content = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                knowledgeBase.put(key, content);
+            }
+
+            log.info("Loaded {} disease knowledge entries", knowledgeBase.size());
+        } catch (IOException e) {
+            log.warn("Failed to load knowledge base files: {}", e.getMessage());
+        }
+
+        classpathEntries = Map.copyOf(knowledgeBase);
+        Resource aliases = resolver.getResource("classpath:knowledge/" + ALIASES_FILE);
+        classpathAliases = aliases.exists() ? loadAliases(aliases::getInputStream) : Map.of();
+
+        Path dir = externalDirectory();
+        index = buildSnapshot(dir);
+        reportUnresolvedLabels(resolver);
+
+        if (dir != null) {
+            startWatcher(dir);
+        }
+    }
+
+    @PreDestroy
+    void stopWatcher() {
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+        }
+    }
+
+    /**
+     * Re-reads the external directory and swaps in a new snapshot if anything
+     * changed. Called by the watcher; safe to call directly.
+     */
+    public void reload() {
+        reloadLock.lock();
+        try {
+            doReload();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void doReload() {
+        KnowledgeIndex previous = index;
+        KnowledgeIndex next = buildSnapshot(externalDirectory());
+
+        Set<String> changed = new TreeSet<>();
+        for (String key : next.keys()) {
+            if (!Objects.equals(previous.content(key), next.content(key))) changed.add(key);
+        }
+        for (String key : previous.keys()) {
+            if (next.content(key) == null) changed.add(key);
+        }
+        boolean aliasesChanged = !previous.aliases().equals(next.aliases());
+        if (changed.isEmpty() && !aliasesChanged) return;
+
+        index = next;
+        log.info("Knowledge base reloaded: {} entries, changed: {}{}", next.size(), changed,
+                aliasesChanged ? " (aliases updated)" : "");
+        eventPublisher.publishEvent(new KnowledgeBaseChangedEvent(next, Set.copyOf(changed)));
+    }
+
+    private KnowledgeIndex buildSnapshot(Path dir) {
+        Map<String, String> entries = new HashMap<>(classpathEntries);
+        Map<String, String> aliases = new HashMap<>(classpathAliases);
+
+        if (dir != null) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.txt")) {
+                for (Path file : files) {
+                    String key = file.getFileName().toString().replace(".txt", "");
+                    entries.put(key, Files.readString(file, StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read external knowledge directory {}: {}", dir, e.getMessage());
+            }
+            Path aliasFile = dir.resolve(ALIASES_FILE);
+            if (Files.isRegularFile(aliasFile)) {
+                aliases.putAll(loadAliases(() -> Files.newInputStream(aliasFile)));
+            }
+        }
+        return KnowledgeIndex.build(entries, aliases);
+    }
+
+    private Path externalDirectory() {
+        if (externalDir == null || externalDir.isBlank()) return null;
+        Path dir = Path.of(externalDir);
+        if (!Files.isDirectory(dir)) {
+            log.warn("Knowledge directory {} does not exist, using bundled knowledge only", dir);
+            return null;
+        }
+        return dir;
+    }
+
+    private void startWatcher(Path dir) {
+        WatchService watchService;
+        try {
+            watchService = dir.getFileSystem().newWatchService();
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.warn("Cannot watch knowledge directory {}: {}", dir, e.getMessage());
+            return;
+        }
+
+        watcherThread = new Thread(() -> watch(watchService), "knowledge-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        log.info("Watching {} for knowledge base changes", dir);
+    }
+
+    private void watch(WatchService watchService) {
+        try (watchService) {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                key.pollEvents();
+                // Editors write in several steps; wait for the burst to settle
+                WatchKey more;
+                while ((more = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    more.pollEvents();
+                    more.reset();
+                }
+                boolean valid = key.reset();
+
+                try {
+                    reload();
+                } catch (Exception e) {
+                    log.warn("Knowledge base reload failed: {}", e.getMessage());
+                }
+                if (!valid) {
+                    log.warn("Knowledge directory is no longer accessible, stopped watching");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Knowledge watcher stopped: {}", e.getMessage());
+        }
+    }
+
+    private interface StreamSource {
+        InputStream open() throws IOException;
+    }
+
+    private Map<String, String> loadAliases(StreamSource source) {
+        Map<String, String> aliases = new HashMap<>();
+        try (Reader reader = new InputStreamReader(source.open(), StandardCharsets.UTF_8)) {
+            Properties props = new Properties();
+            props.load(reader);
+            props.stringPropertyNames().forEach(alias -> aliases.put(alias, props.getProperty(alias).trim()));
+        } catch (IOException e) {
+            log.warn("Failed to load knowledge aliases: {}", e.getMessage());
+        }
+        return aliases;
+    }
+
+    /**
+     * Logs classifier labels that no knowledge entry covers, once, instead of
+     * warning on every advice request for them.
+     */
+    private void reportUnresolvedLabels(PathMatchingResourcePatternResolver resolver) {
+        Resource resource = resolver.getResource("classpath:ml/classifier-labels.txt");
+        if (!resource.exists()) return;
+
+        try {
+            List<String> unresolved = new ArrayList<>();
+            String labels = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            for (String line : labels.split("\\R")) {
+                String label = line.strip();
+                if (label.isEmpty() || label.startsWith("#")) continue;
+                if (index.resolveLabel(label).isEmpty()) {
+                    unresolved.add(label);
+                }
+            }
+            if (!unresolved.isEmpty()) {
+                log.warn("{} classifier labels have no knowledge entry (advice will be generic): {}",
+                        unresolved.size(), unresolved);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read classifier labels: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.agriverse.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+
+/**
+ * Immutable snapshot of the disease knowledge base with precomputed lookups.
+ *
+ * Every label is reduced by {@link #normalize(String)} (lower case, letters and
+ * digits only), so "Potato___Early_blight", "Potato Early blight" and
+ * "potato early-blight" all hit the same slot. The index holds:
+ * - each entry's own key,
+ * - the disease part of classifier-style keys ("Early_blight"), when only
+ *   one entry has that disease,
+ * - aliases from knowledge/aliases.properties.
+ *
+ * It also carries the section ranker used to trim entries for prompts.
+ */
+@Slf4j
+public final class KnowledgeIndex {
+
+    private final Map<String, String> entries;
+    private final Map<String, String> keysByLabel;
+    private final Map<String, String> aliases;
+    private final KnowledgeSectionRanker sectionRanker;
+
+    private KnowledgeIndex(Map<String, String> entries, Map<String, String> keysByLabel, Map<String, String> aliases) {
+        this.entries = entries;
+        this.keysByLabel = keysByLabel;
+        this.aliases = aliases;
+        this.sectionRanker = KnowledgeSectionRanker.build(entries);
+    }
+
+    public static KnowledgeIndex build(Map<String, String> entries, Map<String, String> aliases) {
+        Map<String, String> keysByLabel = new HashMap<>();
+        for (String key : entries.keySet()) {
+            keysByLabel.put(normalize(key), key);
+        }
+
+        // Disease-only labels, skipped when several crops share the disease name
+        Map<String, List<String>> byDisease = new HashMap<>();
+        for (String key : entries.keySet()) {
+            if (key.contains("___")) {
+                byDisease.computeIfAbsent(normalize(key.split("___", 2)[1]), d -> new ArrayList<>()).add(key);
+            }
+        }
+        byDisease.forEach((disease, keys) -> {
+            if (keys.size() == 1) {
+                keysByLabel.putIfAbsent(disease, keys.get(0));
+            }
+        });
+
+        aliases.forEach((alias, target) -> {
+            if (entries.containsKey(target)) {
+                keysByLabel.put(normalize(alias), target);
+            } else {
+                log.warn("Knowledge alias '{}' points at missing entry '{}'", alias, target);
+            }
+        });
+
+        return new KnowledgeIndex(Map.copyOf(entries), Map.copyOf(keysByLabel), Map.copyOf(aliases));
+    }
+
+    public static KnowledgeIndex empty() {
+        return new KnowledgeIndex(Map.of(), Map.of(), Map.of());
+    }
+
+    /**
+     * Resolves a crop/disease pair: the combined label first, then the disease
+     * alone. A disease-only hit on another crop's entry is not a match.
+     */
+    public Optional<String> resolveKey(String cropName, String diseaseName) {
+        String crop = normalize(cropName);
+        String disease = normalize(diseaseName);
+        if (crop.equals("unknown")) crop = "";
+        if (disease.isEmpty()) return Optional.empty();
+
+        if (!crop.isEmpty()) {
+            String key = keysByLabel.get(crop + disease);
+            if (key != null) return Optional.of(key);
+        }
+
+        String key = keysByLabel.get(disease);
+        if (key != null && !crop.isEmpty() && key.contains("___")
+                && !normalize(key.split("___", 2)[0]).equals(crop)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(key);
+    }
+
+    /**
+     * Resolves a classifier label such as "Potato___Early_blight".
+     */
+    public Optional<String> resolveLabel(String label) {
+        if (label == null) return Optional.empty();
+        if (label.contains("___")) {
+            String[] parts = label.split("___", 2);
+            return resolveKey(parts[0], parts[1]);
+        }
+        return resolveKey(null, label);
+    }
+
+    public KnowledgeSectionRanker.Selection selectSections(String key, String query, int topK, int tokenBudget) {
+        return sectionRanker.select(key, query, topK, tokenBudget);
+    }
+
+    public List<KnowledgeSectionRanker.Section> sections(String key) {
+        return sectionRanker.sections(key);
+    }
+
+    public String content(String key) {
+        return entries.get(key);
+    }
+
+    public Set<String> keys() {
+        return entries.keySet();
+    }
+
+    public Map<String, String> aliases() {
+        return aliases;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public static String normalize(String value) {
+        if (value == null) return "";
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+}
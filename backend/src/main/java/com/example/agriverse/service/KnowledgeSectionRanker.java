@@ -0,0 +1,154 @@
+package com.example.agriverse.service;
+
+import java.util.*;
+
+/**
+ * Splits knowledge files into "## " sections and ranks them with BM25, so a
+ * prompt can carry only the sections relevant to the question instead of the
+ * whole file. Term statistics are computed over every section of every entry.
+ */
+public final class KnowledgeSectionRanker {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "can", "do", "for", "from", "if", "in",
+            "is", "it", "its", "of", "on", "or", "that", "the", "this", "to", "when", "where",
+            "which", "with");
+
+    // Bookkeeping sections that never help the model write advice
+    private static final Set<String> SKIPPED_HEADINGS = Set.of("backend tags", "source anchors");
+
+    public record Section(String heading, String text, Map<String, Integer> termFreqs, int length) {}
+
+    public record Selection(String text, int selectedSections, int totalSections, int originalChars) {}
+
+    private final Map<String, List<Section>> sectionsByKey;
+    private final Map<String, Integer> docFreqs;
+    private final int sectionCount;
+    private final double avgLength;
+
+    private KnowledgeSectionRanker(Map<String, List<Section>> sectionsByKey) {
+        this.sectionsByKey = sectionsByKey;
+
+        Map<String, Integer> df = new HashMap<>();
+        int count = 0;
+        long totalLength = 0;
+        for (List<Section> sections : sectionsByKey.values()) {
+            for (Section section : sections) {
+                count++;
+                totalLength += section.length();
+                section.termFreqs().keySet().forEach(term -> df.merge(term, 1, Integer::sum));
+            }
+        }
+        this.docFreqs = Map.copyOf(df);
+        this.sectionCount = count;
+        this.avgLength = count == 0 ? 0 : (double) totalLength / count;
+    }
+
+    public static KnowledgeSectionRanker build(Map<String, String> entries) {
+        Map<String, List<Section>> sectionsByKey = new HashMap<>();
+        entries.forEach((key, content) -> sectionsByKey.put(key, split(content)));
+        return new KnowledgeSectionRanker(Map.copyOf(sectionsByKey));
+    }
+
+    /**
+     * Picks the best-scoring sections of one entry for the query, up to topK
+     * sections and roughly tokenBudget tokens (4 chars per token), and returns
+     * them in their original order. The top section is always kept, truncated
+     * if it alone exceeds the budget.
+     */
+    public Selection select(String key, String query, int topK, int tokenBudget) {
+        List<Section> sections = sectionsByKey.getOrDefault(key, List.of());
+        int originalChars = sections.stream().mapToInt(s -> s.text().length()).sum();
+        if (sections.isEmpty()) {
+            return new Selection("", 0, 0, 0);
+        }
+
+        List<String> queryTerms = tokenize(query);
+        Integer[] order = new Integer[sections.size()];
+        double[] scores = new double[sections.size()];
+        for (int i = 0; i < sections.size(); i++) {
+            order[i] = i;
+            scores[i] = score(sections.get(i), queryTerms);
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        int charBudget = Math.max(1, tokenBudget) * 4;
+        int usedChars = 0;
+        TreeMap<Integer, String> chosen = new TreeMap<>();
+        for (Integer idx : order) {
+            if (chosen.size() >= topK || scores[idx] <= 0) break;
+            String text = sections.get(idx).text();
+            if (chosen.isEmpty() && text.length() > charBudget) {
+                chosen.put(idx, text.substring(0, charBudget));
+                break;
+            }
+            if (usedChars + text.length() > charBudget) continue;
+            chosen.put(idx, text);
+            usedChars += text.length();
+        }
+
+        return new Selection(String.join("\n\n", chosen.values()), chosen.size(), sections.size(), originalChars);
+    }
+
+    public List<Section> sections(String key) {
+        return sectionsByKey.getOrDefault(key, List.of());
+    }
+
+    private double score(Section section, List<String> queryTerms) {
+        double score = 0;
+        for (String term : queryTerms) {
+            Integer tf = section.termFreqs().get(term);
+            if (tf == null) continue;
+            int df = docFreqs.getOrDefault(term, 0);
+            double idf = Math.log(1 + (sectionCount - df + 0.5) / (df + 0.5));
+            double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * section.length() / avgLength));
+            score += idf * norm;
+        }
+        return score;
+    }
+
+    static List<Section> split(String content) {
+        List<Section> sections = new ArrayList<>();
+        String heading = null;
+        StringBuilder current = new StringBuilder();
+
+        for (String line : content.split("\\R")) {
+            if (line.startsWith("## ")) {
+                addSection(sections, heading, current);
+                heading = line.substring(3).strip();
+                current = new StringBuilder();
+            }
+            current.append(line).append('\n');
+        }
+        addSection(sections, heading, current);
+        return List.copyOf(sections);
+    }
+
+    private static void addSection(List<Section> sections, String heading, StringBuilder text) {
+        String body = text.toString().strip();
+        if (body.isEmpty()) return;
+        if (heading != null && SKIPPED_HEADINGS.contains(heading.toLowerCase(Locale.ROOT))) return;
+
+        List<String> terms = tokenize(body);
+        // Headings describe what a section is for, so they count double
+        if (heading != null) terms.addAll(tokenize(heading));
+
+        Map<String, Integer> tf = new HashMap<>();
+        terms.forEach(term -> tf.merge(term, 1, Integer::sum));
+        sections.add(new Section(heading, body, Map.copyOf(tf), terms.size()));
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) return terms;
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.dto.ml.MlPredictionResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rejects obvious non-leaves (selfies, blank or dark frames) before they cost
+ * a call to the ML service.
+ *
+ * Mirrors the first checks of leaf_filter.detect_and_crop_leaf: the minimum
+ * size, and the share of pixels inside its HSV "green" range (OpenCV scale:
+ * H 20-100, S and V at least 20). The share is estimated from a grid of about
+ * 64x64 samples, without the Python side's morphology, so the threshold
+ * (ml.prefilter.min-green-ratio) sits well below leaf_filter's 0.04: only
+ * images the ML service would certainly reject are rejected here. The
+ * default has not been measured against a labelled set yet; tune it with
+ * ml/backend/tune_prefilter.py.
+ */
+@Component
+public class LeafPrefilter {
+
+    private static final int MIN_SIZE = 40;
+    private static final int SAMPLE_GRID = 64;
+
+    private final Counter rejected;
+
+    @Value("${ml.prefilter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ml.prefilter.min-green-ratio:0.01}")
+    private double minGreenRatio;
+
+    public LeafPrefilter(MeterRegistry meterRegistry) {
+        this.rejected = Counter.builder("ml.prefilter.rejected")
+                .description("Images rejected as non-leaves without calling the ML service")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The ML service's is_leaf=false response for a clear non-leaf, or null if
+     * the image should go to the ML service. The size check uses the uploaded
+     * image's dimensions (width, height), as leaf_filter sees them; the green
+     * share is estimated from the possibly downscaled pixels.
+     */
+    public MlPredictionResponse check(BufferedImage image, int width, int height) {
+        if (!enabled || image == null) return null;
+
+        if (width < MIN_SIZE || height < MIN_SIZE) {
+            return reject("Image too small.", Map.of());
+        }
+
+        double greenRatio = greenRatio(image);
+        if (greenRatio < minGreenRatio) {
+            return reject("Not enough green/leaf pixels.", Map.of("green_ratio", greenRatio));
+        }
+        return null;
+    }
+
+    static double greenRatio(BufferedImage image) {
+        int stepX = Math.max(1, image.getWidth() / SAMPLE_GRID);
+        int stepY = Math.max(1, image.getHeight() / SAMPLE_GRID);
+        int samples = 0;
+        int green = 0;
+        for (int y = stepY / 2; y < image.getHeight(); y += stepY) {
+            for (int x = stepX / 2; x < image.getWidth(); x += stepX) {
+                if (isGreen(image.getRGB(x, y))) green++;
+                samples++;
+            }
+        }
+        return samples == 0 ? 0 : (double) green / samples;
+    }
+
+    /**
+     * cv2.inRange(HSV, [20, 20, 20], [100, 255, 255]) for one pixel, with
+     * OpenCV's 8-bit HSV (H in 0-179, S and V in 0-255).
+     */
+    static boolean isGreen(int rgb) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        int delta = max - min;
+        if (max < 20 || delta == 0) return false;
+        if (Math.round(255.0 * delta / max) < 20) return false;
+
+        double hue;
+        if (max == r) {
+            hue = 60.0 * (g - b) / delta;
+        } else if (max == g) {
+            hue = 120.0 + 60.0 * (b - r) / delta;
+        } else {
+            hue = 240.0 + 60.0 * (r - g) / delta;
+        }
+        if (hue < 0) hue += 360;
+        long h = Math.round(hue / 2);
+        return h >= 20 && h <= 100;
+    }
+
+    private MlPredictionResponse reject(String reason, Map<String, Object> debug) {
+        rejected.increment();
+        Map<String, Object> leafDebug = new LinkedHashMap<>(debug);
+        leafDebug.put("reason", reason);
+        leafDebug.put("source", "backend-prefilter");
+
+        MlPredictionResponse r = new MlPredictionResponse();
+        r.is_leaf = false;
+        r.reason = reason;
+        r.leaf_debug = leafDebug;
+        return r;
+    }
+}
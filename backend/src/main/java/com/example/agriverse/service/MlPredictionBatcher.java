@@ -0,0 +1,222 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.dto.ml.MlBatchPredictionResponse;
+import com.example.agriverse.dto.ml.MlPredictionResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Micro-batches single-image predictions, across requests and users, into
+ * calls to the ML service's /predict-batch, so feature extraction runs at a
+ * batch size above 1.
+ *
+ * Images wait at most {@code window} for companions; a batch is sent as soon
+ * as it reaches {@code maxBatchSize}. If the ML service has no /predict-batch
+ * (older deployment), the batcher switches itself off and every image goes
+ * through the single-image call instead.
+ *
+ * Batches are cut with fair backpressure, so a window that closes while all
+ * {@code maxConcurrentBatches} are still running just waits for a free slot.
+ * Should the pipeline fail anyway, the images it held are failed and a fresh
+ * pipeline takes over; submissions never wait on a dead one.
+ */
+@Slf4j
+final class MlPredictionBatcher {
+
+    /**
+     * An image waiting for its answer; owner is the pending set of the pipeline
+     * it was submitted to. Compared by identity.
+     */
+    private static final class Pending {
+        private final MlPredictionService.ImagePart image;
+        private final Sinks.One<MlPredictionResponse> result = Sinks.one();
+        private final Set<Pending> owner;
+
+        Pending(MlPredictionService.ImagePart image, Set<Pending> owner) {
+            this.image = image;
+            this.owner = owner;
+        }
+
+        MlPredictionService.ImagePart image() { return image; }
+
+        Sinks.One<MlPredictionResponse> result() { return result; }
+
+        Set<Pending> owner() { return owner; }
+    }
+
+    /**
+     * One subscription to a queue, with the images submitted to it and not yet answered.
+     */
+    private record Pipeline(Sinks.Many<Pending> queue, Set<Pending> pending, Disposable subscription) {}
+
+    private final WebClient mlWebClient;
+    private final Function<MlPredictionService.ImagePart, Mono<MlPredictionResponse>> singleCall;
+    private final int maxBatchSize;
+    private final Duration window;
+    private final int maxConcurrentBatches;
+    private final AtomicBoolean unsupported = new AtomicBoolean(false);
+    private volatile boolean shutDown;
+    private volatile Pipeline pipeline;
+
+    MlPredictionBatcher(WebClient mlWebClient,
+                        Function<MlPredictionService.ImagePart, Mono<MlPredictionResponse>> singleCall,
+                        int maxBatchSize, Duration window, int maxConcurrentBatches) {
+        this.mlWebClient = mlWebClient;
+        this.singleCall = singleCall;
+        this.maxBatchSize = maxBatchSize;
+        this.window = window;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        this.pipeline = startPipeline();
+    }
+
+    Mono<MlPredictionResponse> submit(MlPredictionService.ImagePart image) {
+        if (unsupported.get()) {
+            return singleCall.apply(image);
+        }
+        return Mono.defer(() -> {
+            Pipeline current = pipeline;
+            Pending pending = new Pending(image, current.pending());
+            current.pending().add(pending);
+
+            // Submissions come from many threads; retry while another emit is in progress
+            Sinks.EmitResult emitted;
+            while ((emitted = current.queue().tryEmitNext(pending)) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+                Thread.onSpinWait();
+            }
+            if (emitted.isFailure()) {
+                current.pending().remove(pending);
+                return Mono.error(new IllegalStateException("ML batching is not running (" + emitted + ")"));
+            }
+            return pending.result().asMono();
+        });
+    }
+
+    void shutdown() {
+        shutDown = true;
+        pipeline.subscription().dispose();
+    }
+
+    private Pipeline startPipeline() {
+        Sinks.Many<Pending> queue = Sinks.many().unicast().onBackpressureBuffer();
+        Set<Pending> pending = ConcurrentHashMap.newKeySet();
+        AtomicReference<Pipeline> self = new AtomicReference<>();
+        Disposable subscription = queue.asFlux()
+                .bufferTimeout(maxBatchSize, window, true)
+                .flatMap(batch -> send(batch).onErrorResume(e -> Mono.empty()), maxConcurrentBatches)
+                .subscribe(null, e -> restart(self.get(), e));
+        self.set(new Pipeline(queue, pending, subscription));
+        return self.get();
+    }
+
+    /**
+     * The pipeline terminated: fail what it held and replace it.
+     */
+    private synchronized void restart(Pipeline failed, Throwable error) {
+        if (failed == null || pipeline != failed) return;
+        log.error("ML batching pipeline failed, restarting it: {}", error.toString());
+        if (!shutDown) {
+            pipeline = startPipeline();
+        }
+        for (Pending pending : failed.pending()) {
+            pending.result().tryEmitError(error);
+        }
+        failed.pending().clear();
+    }
+
+    private Mono<Void> send(List<Pending> batch) {
+        if (unsupported.get()) {
+            batch.forEach(this::sendSingle);
+            return Mono.empty();
+        }
+
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        for (Pending pending : batch) {
+            MlPredictionService.ImagePart image = pending.image();
+            builder.part("images", new ByteArrayResource(image.bytes()) {
+                @Override
+                public String getFilename() {
+                    return image.filename();
+                }
+            }).contentType(MediaType.parseMediaType(image.contentType()));
+        }
+
+        return mlWebClient.post()
+                .uri("/predict-batch")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(builder.build())
+                .retrieve()
+                .bodyToMono(MlBatchPredictionResponse.class)
+                .doOnNext(response -> complete(batch, response))
+                .doOnError(e -> fail(batch, e))
+                .then();
+    }
+
+    private void complete(List<Pending> batch, MlBatchPredictionResponse response) {
+        List<MlPredictionResponse> results = response.results;
+        if (results == null || results.size() != batch.size()) {
+            fail(batch, new IllegalStateException("ML service returned "
+                    + (results == null ? "no" : results.size()) + " results for " + batch.size() + " images"));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            answered(batch.get(i));
+            batch.get(i).result().tryEmitValue(inBandError(results.get(i), response.statuses, i));
+        }
+        log.debug("Predicted a batch of {} images", batch.size());
+    }
+
+    /**
+     * A per-image error inside the batch response, shaped like the error of a
+     * single-image call with that status so callers can classify it the same
+     * way. Without statuses (older ML service) an error counts as a 500.
+     */
+    private static MlPredictionResponse inBandError(MlPredictionResponse result, List<Integer> statuses, int i) {
+        if (result == null || result.error == null) return result;
+        Integer status = statuses != null && i < statuses.size() ? statuses.get(i) : null;
+        return MlPredictionService.statusErrorResponse(status != null ? status : 500, result.error);
+    }
+
+    private void fail(List<Pending> batch, Throwable e) {
+        if (e instanceof WebClientResponseException wcre
+                && (wcre.getStatusCode() == HttpStatus.NOT_FOUND || wcre.getStatusCode() == HttpStatus.METHOD_NOT_ALLOWED)) {
+            if (unsupported.compareAndSet(false, true)) {
+                log.warn("ML service has no /predict-batch; falling back to single-image predictions");
+            }
+            batch.forEach(this::sendSingle);
+            return;
+        }
+        batch.forEach(pending -> {
+            answered(pending);
+            pending.result().tryEmitError(e);
+        });
+    }
+
+    private void sendSingle(Pending pending) {
+        answered(pending);
+        singleCall.apply(pending.image())
+                .subscribe(pending.result()::tryEmitValue, pending.result()::tryEmitError);
+    }
+
+    /**
+     * The image is leaving the batch pipeline (answered, failed or handed to the single call).
+     */
+    private void answered(Pending pending) {
+        pending.owner().remove(pending);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.dto.ml.MlPredictionResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded in-memory cache of ML predictions keyed by image content, so a photo
+ * that is re-submitted (retry after a network error, predict then
+ * create-issue) skips the ML call entirely.
+ *
+ * Lookups are by SHA-256 of the image bytes. Optionally
+ * (ml.cache.perceptual.enabled) a 64-bit difference hash also matches
+ * near-duplicates, e.g. the same photo re-encoded or resized by the client,
+ * within ml.cache.perceptual.max-distance differing bits. The difference hash
+ * is computed from pixels the caller has already decoded (see
+ * {@link #withPerceptualHash}), so the cache never decodes images itself.
+ * Only successful predictions are cached.
+ */
+@Slf4j
+@Component
+public class MlPredictionCache {
+
+    /** Content hashes of one image; perceptual is null when disabled or undecodable. */
+    public record ImageKey(String sha256, Long perceptual) {}
+
+    private record Cached(MlPredictionResponse response, Long perceptual) {}
+
+    private final Counter exactHits;
+    private final Counter perceptualHits;
+    private final Counter misses;
+
+    @Value("${ml.cache.perceptual.enabled:false}")
+    private boolean perceptualEnabled;
+
+    @Value("${ml.cache.perceptual.max-distance:4}")
+    private int perceptualMaxDistance;
+
+    // Guarded by itself; access-ordered so the eldest entry is the least recently used
+    private final LinkedHashMap<String, Cached> entries;
+
+    public MlPredictionCache(MeterRegistry meterRegistry,
+                             @Value("${ml.cache.max-entries:1000}") int maxEntries) {
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        exactHits = Counter.builder("ml.prediction.cache.hits").tag("match", "exact").register(meterRegistry);
+        perceptualHits = Counter.builder("ml.prediction.cache.hits").tag("match", "perceptual").register(meterRegistry);
+        misses = Counter.builder("ml.prediction.cache.misses").register(meterRegistry);
+        Gauge.builder("ml.prediction.cache.size", this, c -> {
+            synchronized (c.entries) {
+                return c.entries.size();
+            }
+        }).description("Image predictions held in memory").register(meterRegistry);
+    }
+
+    public boolean isPerceptualEnabled() {
+        return perceptualEnabled;
+    }
+
+    /**
+     * Key by content hash only; cheap enough for the request thread.
+     */
+    public ImageKey keyOf(byte[] image) {
+        return new ImageKey(sha256(image), null);
+    }
+
+    /**
+     * The key with the difference hash of the decoded image added, if
+     * perceptual matching is enabled and pixels are available.
+     */
+    public ImageKey withPerceptualHash(ImageKey key, BufferedImage pixels) {
+        if (!perceptualEnabled || pixels == null) return key;
+        return new ImageKey(key.sha256(), differenceHash(pixels));
+    }
+
+    /**
+     * Lookup by content hash. A miss is not counted here: {@link #getSimilar}
+     * is expected to follow.
+     */
+    public Optional<MlPredictionResponse> getExact(ImageKey key) {
+        synchronized (entries) {
+            Cached cached = entries.get(key.sha256());
+            if (cached == null) return Optional.empty();
+            exactHits.increment();
+            return Optional.of(cached.response());
+        }
+    }
+
+    /**
+     * Lookup of a near-duplicate by difference hash; counts a miss if none
+     * (or the key has no difference hash).
+     */
+    public Optional<MlPredictionResponse> getSimilar(ImageKey key) {
+        if (key.perceptual() != null) {
+            synchronized (entries) {
+                String nearestKey = null;
+                int nearestDistance = perceptualMaxDistance + 1;
+                for (Map.Entry<String, Cached> candidate : entries.entrySet()) {
+                    Long perceptual = candidate.getValue().perceptual();
+                    if (perceptual == null) continue;
+                    int distance = Long.bitCount(perceptual ^ key.perceptual());
+                    if (distance < nearestDistance) {
+                        nearestKey = candidate.getKey();
+                        nearestDistance = distance;
+                    }
+                }
+                if (nearestKey != null) {
+                    perceptualHits.increment();
+                    // get() after the scan: moves the match to most recently used
+                    return Optional.of(entries.get(nearestKey).response());
+                }
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    public void put(ImageKey key, MlPredictionResponse response) {
+        if (response == null || response.error != null) return;
+        synchronized (entries) {
+            entries.put(key.sha256(), new Cached(response, key.perceptual()));
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * dHash: shrink to 9x8 grayscale and set one bit per horizontally adjacent
+     * pair that gets brighter. Robust to re-encoding and resizing.
+     */
+    private static Long differenceHash(BufferedImage source) {
+        try {
+            // Area averaging so every source pixel contributes, not just a few samples
+            Image scaled = source.getScaledInstance(9, 8, Image.SCALE_AREA_AVERAGING);
+            BufferedImage small = new BufferedImage(9, 8, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D g = small.createGraphics();
+            g.drawImage(scaled, 0, 0, null);
+            g.dispose();
+
+            long hash = 0;
+            for (int y = 0; y < 8; y++) {
+                for (int x = 0; x < 8; x++) {
+                    int left = small.getRaster().getSample(x, y, 0);
+                    int right = small.getRaster().getSample(x + 1, y, 0);
+                    hash = (hash << 1) | (left < right ? 1 : 0);
+                }
+            }
+            return hash;
+        } catch (Exception e) {
+            log.debug("Perceptual hash failed: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.agriverse.service;
 
 import com.example.agriverse.dto.ml.MlPredictionResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
@@ -8,15 +11,86 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class MlPredictionService {
 
+    // Prefixes of the error responses, see isTransientError
+    private static final String ERROR_STATUS = "ML service error (";
+    private static final String ERROR_TIMED_OUT = "ML service timed out";
+    private static final String ERROR_UNAVAILABLE = "ML service unavailable";
+
     private final WebClient mlWebClient;
+    private final MlPredictionCache predictionCache;
+    private final ImagePreprocessor preprocessor;
+    private final LeafPrefilter leafPrefilter;
+    private final int parallelism;
+    private final Duration perImageTimeout;
+    // Null when ml.batch.enabled=false
+    private final MlPredictionBatcher batcher;
+    // Null when ml.hedge.enabled=false
+    private final MlRequestHedger hedger;
 
-    public MlPredictionService(WebClient mlWebClient) {
+    public MlPredictionService(WebClient mlWebClient,
+                               MlPredictionCache predictionCache,
+                               ImagePreprocessor preprocessor,
+                               LeafPrefilter leafPrefilter,
+                               @Value("${ml.predict.parallelism:4}") int parallelism,
+                               @Value("${ml.predict.per-image-timeout-ms:30000}") long perImageTimeoutMs,
+                               @Value("${ml.batch.enabled:true}") boolean batchEnabled,
+                               @Value("${ml.batch.max-size:8}") int batchMaxSize,
+                               @Value("${ml.batch.window-ms:15}") long batchWindowMs,
+                               @Value("${ml.batch.max-concurrent:2}") int batchMaxConcurrent,
+                               @Value("${ml.hedge.enabled:false}") boolean hedgeEnabled,
+                               @Value("${ml.hedge.urls:}") List<String> hedgeUrls,
+                               @Value("${ml.hedge.percentile:0.95}") double hedgePercentile,
+                               @Value("${ml.hedge.min-delay-ms:50}") long hedgeMinDelayMs,
+                               @Value("${ml.hedge.min-samples:50}") int hedgeMinSamples,
+                               @Value("${ml.hedge.budget-ratio:0.1}") double hedgeBudgetRatio,
+                               MeterRegistry meterRegistry) {
         this.mlWebClient = mlWebClient;
+        this.predictionCache = predictionCache;
+        this.preprocessor = preprocessor;
+        this.leafPrefilter = leafPrefilter;
+        this.parallelism = Math.max(1, parallelism);
+        this.perImageTimeout = Duration.ofMillis(perImageTimeoutMs);
+        this.batcher = batchEnabled
+                ? new MlPredictionBatcher(mlWebClient, image -> singleCall(mlWebClient, image),
+                        batchMaxSize, Duration.ofMillis(batchWindowMs), batchMaxConcurrent)
+                : null;
+        this.hedger = hedgeEnabled
+                ? new MlRequestHedger(hedgeTargets(mlWebClient, hedgeUrls), this::singleCall,
+                        hedgePercentile, Duration.ofMillis(hedgeMinDelayMs), hedgeMinSamples, hedgeBudgetRatio,
+                        meterRegistry)
+                : null;
+    }
+
+    /**
+     * Replicas to send hedges to; the ML service itself if none are configured.
+     */
+    private static List<WebClient> hedgeTargets(WebClient mlWebClient, List<String> urls) {
+        List<WebClient> targets = urls == null ? List.of() : urls.stream()
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .map(url -> mlWebClient.mutate().baseUrl(url).build())
+                .toList();
+        return targets.isEmpty() ? List.of(mlWebClient) : targets;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
     }
 
     /**
@@ -25,62 +99,173 @@ public class MlPredictionService {
      */
     public MlPredictionResponse predict(MultipartFile image) {
         try {
-            MultipartBodyBuilder builder = new MultipartBodyBuilder();
+            return predictMono(ImagePart.of(image)).block();
+        } catch (Exception e) {
+            return errorResponse(e.getMessage());
+        }
+    }
 
-            byte[] bytes = image.getBytes();
-            builder.part("image", new ByteArrayResource(bytes) {
+    /**
+     * Predicts all images, collecting all results in image order.
+     * Partial failures are captured in individual response objects (error field
+     * set).
+     */
+    public List<MlPredictionResponse> predictAll(List<MultipartFile> images) {
+        return predictAllAsync(images).join();
+    }
+
+    /**
+     * Non-blocking predictAll(): image bytes are read on the calling thread
+     * (the multipart request is still open), then up to ml.predict.parallelism
+     * images are preprocessed and predicted at once, each with its own
+     * ml.predict.per-image-timeout-ms deadline. With batching, the images in
+     * flight share batches and the deadline includes the time an image waits
+     * in the batcher. Results keep the order of the images, so total latency
+     * is roughly that of the slowest image rather than the sum.
+     */
+    public CompletableFuture<List<MlPredictionResponse>> predictAllAsync(List<MultipartFile> images) {
+        if (images == null || images.isEmpty())
+            return CompletableFuture.completedFuture(new ArrayList<>());
+
+        List<Mono<MlPredictionResponse>> calls = new ArrayList<>();
+        for (MultipartFile img : images) {
+            try {
+                calls.add(predictMono(ImagePart.of(img)));
+            } catch (Exception e) {
+                calls.add(Mono.just(errorResponse(e.getMessage())));
+            }
+        }
+        return Flux.fromIterable(calls)
+                .flatMapSequential(call -> call, parallelism)
+                .collectList()
+                .toFuture();
+    }
+
+    /**
+     * Non-blocking predict() for an image already in memory.
+     */
+    public CompletableFuture<MlPredictionResponse> predictAsync(byte[] bytes, String filename, String contentType) {
+        return predictMono(new ImagePart(bytes,
+                filename != null ? filename : "leaf.jpg",
+                contentType != null ? contentType : MediaType.IMAGE_JPEG_VALUE)).toFuture();
+    }
+
+    /**
+     * Prediction for one image: from the content-hash cache when this image
+     * (or, optionally, a near-duplicate) was predicted before, else from the
+     * ML service. The exact lookup uses the uploaded bytes; only misses are
+     * decoded and downscaled (off the request thread), the near-duplicate
+     * lookup reuses those pixels, and clear non-leaves are answered
+     * by the {@link LeafPrefilter} without calling the ML service. Slow ML
+     * calls may be hedged by the {@link MlRequestHedger}.
+     */
+    private Mono<MlPredictionResponse> predictMono(ImagePart image) {
+        MlPredictionCache.ImageKey exactKey = predictionCache.keyOf(image.bytes());
+        MlPredictionResponse cached = predictionCache.getExact(exactKey).orElse(null);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+
+        boolean decodePixels = leafPrefilter.isEnabled() || predictionCache.isPerceptualEnabled();
+        Mono<MlPredictionResponse> call = Mono.fromCallable(() -> preprocessor.prepare(image, decodePixels))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(prepared -> {
+                    MlPredictionCache.ImageKey key = predictionCache.withPerceptualHash(exactKey, prepared.pixels());
+                    MlPredictionResponse similar = predictionCache.getSimilar(key).orElse(null);
+                    if (similar != null) return Mono.just(similar);
+
+                    MlPredictionResponse rejected = leafPrefilter.check(prepared.pixels(),
+                            prepared.sourceWidth(), prepared.sourceHeight());
+                    Mono<MlPredictionResponse> result;
+                    if (rejected != null) {
+                        result = Mono.just(rejected);
+                    } else {
+                        Mono<MlPredictionResponse> ml = batcher != null
+                                ? batcher.submit(prepared.image())
+                                : singleCall(mlWebClient, prepared.image());
+                        result = hedger != null ? hedger.hedge(prepared.image(), ml) : ml;
+                    }
+                    return result.doOnNext(response -> predictionCache.put(key, response));
+                });
+        return call
+                .timeout(perImageTimeout)
+                .onErrorResume(WebClientResponseException.class, ex -> {
+                    // HTTP 400 or 500 from the ML service
+                    return Mono.just(statusErrorResponse(ex.getStatusCode().value(), ex.getResponseBodyAsString()));
+                })
+                .onErrorResume(TimeoutException.class, ex -> {
+                    return Mono.just(errorResponse(ERROR_TIMED_OUT + " after "
+                            + perImageTimeout.toMillis() + " ms"));
+                })
+                .onErrorResume(ex -> {
+                    // Connectivity / other errors, including calls refused by the client's
+                    // concurrency limit or open circuit breaker
+                    return Mono.just(errorResponse(ERROR_UNAVAILABLE + ": " + ex.getMessage()));
+                });
+    }
+
+    /**
+     * Whether an error response is worth retrying later: the ML service timed
+     * out, could not be reached or was overloaded (429, 5xx, or the call was
+     * refused by the client's limiter or breaker). A 4xx means the service
+     * rejected the image itself, which no retry will change.
+     */
+    public static boolean isTransientError(MlPredictionResponse response) {
+        if (response == null || response.error == null) return false;
+        String error = response.error;
+        if (error.startsWith(ERROR_TIMED_OUT) || error.startsWith(ERROR_UNAVAILABLE)) return true;
+        if (!error.startsWith(ERROR_STATUS)) return false;
+        try {
+            int status = Integer.parseInt(error.substring(ERROR_STATUS.length(), ERROR_STATUS.length() + 3));
+            return status >= 500 || status == 429;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * One image to the single-image /predict of the ML service behind the client.
+     */
+    private Mono<MlPredictionResponse> singleCall(WebClient client, ImagePart image) {
+        return Mono.defer(() -> {
+            MultipartBodyBuilder builder = new MultipartBodyBuilder();
+            builder.part("image", new ByteArrayResource(image.bytes()) {
                 @Override
                 public String getFilename() {
-                    return (image.getOriginalFilename() != null)
-                            ? image.getOriginalFilename()
-                            : "leaf.jpg";
+                    return image.filename();
                 }
             })
-                    .contentType(MediaType.parseMediaType(
-                            image.getContentType() != null
-                                    ? image.getContentType()
-                                    : MediaType.IMAGE_JPEG_VALUE));
+                    .contentType(MediaType.parseMediaType(image.contentType()));
 
-            return mlWebClient.post()
+            return client.post()
                     .uri("/predict")
                     .contentType(MediaType.MULTIPART_FORM_DATA)
                     .bodyValue(builder.build())
                     .retrieve()
-                    .bodyToMono(MlPredictionResponse.class)
-                    .onErrorResume(WebClientResponseException.class, ex -> {
-                        // HTTP 400 or 500 from the ML service
-                        MlPredictionResponse r = new MlPredictionResponse();
-                        r.error = "ML service error (" + ex.getStatusCode().value() + "): "
-                                + ex.getResponseBodyAsString();
-                        return Mono.just(r);
-                    })
-                    .onErrorResume(ex -> {
-                        // Connectivity / other errors
-                        MlPredictionResponse r = new MlPredictionResponse();
-                        r.error = "ML service unavailable: " + ex.getMessage();
-                        return Mono.just(r);
-                    })
-                    .block();
-        } catch (Exception e) {
-            MlPredictionResponse r = new MlPredictionResponse();
-            r.error = e.getMessage();
-            return r;
-        }
+                    .bodyToMono(MlPredictionResponse.class);
+        });
     }
 
     /**
-     * Run predict() on each image, collecting all results.
-     * Partial failures are captured in individual response objects (error field
-     * set).
+     * Error response for an image the ML service answered with an HTTP error
+     * status, whether as the status of /predict or in-band in /predict-batch.
      */
-    public java.util.List<MlPredictionResponse> predictAll(
-            java.util.List<org.springframework.web.multipart.MultipartFile> images) {
-        java.util.List<MlPredictionResponse> results = new java.util.ArrayList<>();
-        if (images == null || images.isEmpty())
-            return results;
-        for (MultipartFile img : images) {
-            results.add(predict(img));
+    static MlPredictionResponse statusErrorResponse(int status, String detail) {
+        return errorResponse(ERROR_STATUS + status + "): " + detail);
+    }
+
+    private static MlPredictionResponse errorResponse(String error) {
+        MlPredictionResponse r = new MlPredictionResponse();
+        r.error = error;
+        return r;
+    }
+
+    record ImagePart(byte[] bytes, String filename, String contentType) {
+        static ImagePart of(MultipartFile image) throws java.io.IOException {
+            return new ImagePart(
+                    image.getBytes(),
+                    image.getOriginalFilename() != null ? image.getOriginalFilename() : "leaf.jpg",
+                    image.getContentType() != null ? image.getContentType() : MediaType.IMAGE_JPEG_VALUE);
         }
-        return results;
     }
 }
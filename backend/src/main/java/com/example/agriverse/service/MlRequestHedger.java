@@ -0,0 +1,151 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.dto.ml.MlPredictionResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Hedged ML calls: if the first call has not answered within the recently
+ * observed latency percentile (ml.hedge.percentile, default p95), the same
+ * image is sent again as a single-image call, to the next of ml.hedge.urls
+ * (or the ML service itself), and whichever answers first wins; the other
+ * call is cancelled. A stall on one request (model warm-up, GC) then costs
+ * about one p95 instead of the whole stall.
+ *
+ * Hedges are capped by a budget: every call earns {@code budgetRatio} of a
+ * hedge, up to {@link #MAX_BUDGET}, so when the ML service is slow across
+ * the board hedging stops at roughly that extra load instead of doubling it.
+ * Hedging starts once {@code minSamples} latencies have been seen. A failed
+ * hedge is ignored; a failed first call fails the prediction as before.
+ *
+ * Latencies are those of the primary call as the caller sees it: with
+ * batching (ml.batch.enabled) they include the batch window and any time
+ * queued for a batch slot, so the hedge delay is a percentile of that, not
+ * of the ML service alone. A primary the hedge beat is recorded at the time
+ * it was cancelled (a lower bound); one cancelled for any other reason, such
+ * as the per-image timeout, is not recorded.
+ */
+@Slf4j
+final class MlRequestHedger {
+
+    // Hedges that can be saved up while traffic is calm
+    private static final double MAX_BUDGET = 10;
+    private static final int WINDOW = 512;
+    // The percentile is recomputed after this many new samples
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final List<WebClient> targets;
+    private final BiFunction<WebClient, MlPredictionService.ImagePart, Mono<MlPredictionResponse>> call;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final int minSamples;
+    private final double budgetRatio;
+    private final AtomicInteger nextTarget = new AtomicInteger();
+
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter budgetExhausted;
+
+    // Guarded by this
+    private final long[] latencies = new long[WINDOW];
+    private int samples;
+    private double budget = MAX_BUDGET;
+    private volatile long delayNanos = -1;
+
+    MlRequestHedger(List<WebClient> targets,
+                    BiFunction<WebClient, MlPredictionService.ImagePart, Mono<MlPredictionResponse>> call,
+                    double percentile, Duration minDelay, int minSamples, double budgetRatio,
+                    MeterRegistry meterRegistry) {
+        this.targets = List.copyOf(targets);
+        this.call = call;
+        this.percentile = Math.min(0.999, Math.max(0.5, percentile));
+        this.minDelayNanos = minDelay.toNanos();
+        this.minSamples = Math.max(1, Math.min(WINDOW, minSamples));
+        this.budgetRatio = budgetRatio;
+
+        this.hedgesSent = Counter.builder("ml.hedge.sent")
+                .description("Duplicate ML calls sent after the hedge delay")
+                .register(meterRegistry);
+        this.hedgesWon = Counter.builder("ml.hedge.won")
+                .description("Hedged ML calls that answered before the original")
+                .register(meterRegistry);
+        this.budgetExhausted = Counter.builder("ml.hedge.budget.exhausted")
+                .description("Hedges skipped because the hedge budget was used up")
+                .register(meterRegistry);
+        Gauge.builder("ml.hedge.delay", this, h -> Math.max(0, h.delayNanos) / 1_000_000.0)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The primary call, hedged with a single-image call if it is slow.
+     */
+    Mono<MlPredictionResponse> hedge(MlPredictionService.ImagePart image, Mono<MlPredictionResponse> primary) {
+        return Mono.defer(() -> {
+            earnBudget();
+            long start = System.nanoTime();
+            AtomicBoolean hedgeWon = new AtomicBoolean();
+            Mono<MlPredictionResponse> timedPrimary = primary
+                    .doOnSuccess(r -> recordLatency(System.nanoTime() - start))
+                    .doOnCancel(() -> {
+                        // A primary the hedge beat was at least this slow
+                        if (hedgeWon.get()) recordLatency(System.nanoTime() - start);
+                    });
+
+            long delay = delayNanos;
+            if (delay < 0) return timedPrimary;
+
+            Mono<MlPredictionResponse> hedged = Mono.delay(Duration.ofNanos(Math.max(delay, minDelayNanos)))
+                    .flatMap(tick -> {
+                        if (!spendBudget()) {
+                            budgetExhausted.increment();
+                            return Mono.never();
+                        }
+                        hedgesSent.increment();
+                        WebClient target = targets.get(Math.floorMod(nextTarget.getAndIncrement(), targets.size()));
+                        return call.apply(target, image)
+                                // Runs before firstWithSignal cancels the primary
+                                .doOnNext(r -> {
+                                    hedgeWon.set(true);
+                                    hedgesWon.increment();
+                                })
+                                .onErrorResume(e -> {
+                                    log.debug("Hedged ML call for {} failed: {}", image.filename(), e.getMessage());
+                                    return Mono.never();
+                                });
+                    });
+            return Mono.firstWithSignal(timedPrimary, hedged);
+        });
+    }
+
+    private synchronized void earnBudget() {
+        budget = Math.min(MAX_BUDGET, budget + budgetRatio);
+    }
+
+    private synchronized boolean spendBudget() {
+        if (budget < 1) return false;
+        budget -= 1;
+        return true;
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencies[samples % WINDOW] = nanos;
+        samples++;
+        if (samples >= minSamples && (samples % RECOMPUTE_EVERY == 0 || delayNanos < 0)) {
+            long[] window = Arrays.copyOf(latencies, Math.min(samples, WINDOW));
+            Arrays.sort(window);
+            delayNanos = window[Math.min(window.length - 1, (int) (window.length * percentile))];
+        }
+    }
+}
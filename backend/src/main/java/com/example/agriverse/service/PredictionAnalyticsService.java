@@ -0,0 +1,145 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.dto.ml.MlPredictionResponse;
+import com.example.agriverse.dto.ml.ModelAccuracyReport;
+import com.example.agriverse.dto.ml.StoredPredictionResponse;
+import com.example.agriverse.model.Prediction;
+import com.example.agriverse.repository.PredictionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Reads stored predictions: the prediction behind an issue, for officers
+ * re-reviewing it, and model accuracy against officers' reviewed diagnoses.
+ */
+@Slf4j
+@Service
+public class PredictionAnalyticsService {
+
+    private static final int TOP_CONFUSIONS = 10;
+
+    private final PredictionRepository predictionRepo;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public PredictionAnalyticsService(PredictionRepository predictionRepo) {
+        this.predictionRepo = predictionRepo;
+    }
+
+    public Optional<StoredPredictionResponse> getPrediction(Long id) {
+        if (id == null) return Optional.empty();
+        return predictionRepo.findById(id).map(this::toResponse);
+    }
+
+    public ModelAccuracyReport accuracy(Duration window) {
+        Instant since = Instant.now().minus(window);
+
+        Map<String, ModelAccuracyReport.LabelStats.LabelStatsBuilder> labels = new TreeMap<>();
+        Map<String, long[]> reviewCounts = new HashMap<>(); // label -> [reviewed, agreed]
+        long leafPredictions = 0;
+        for (Object[] row : predictionRepo.countByLabel(since)) {
+            String label = (String) row[0];
+            long count = ((Number) row[1]).longValue();
+            leafPredictions += count;
+            labels.put(label, ModelAccuracyReport.LabelStats.builder()
+                    .label(label)
+                    .predicted(count)
+                    .averageConfidence(row[2] != null ? ((Number) row[2]).doubleValue() : null));
+        }
+
+        long reviewed = 0;
+        long agreed = 0;
+        Map<List<String>, Long> confusions = new HashMap<>();
+        for (Object[] row : predictionRepo.findReviewed(since)) {
+            String label = (String) row[0];
+            String reviewedDisease = (String) row[2];
+            if (label == null) continue;
+
+            boolean match = matches(label, reviewedDisease);
+            long[] counts = reviewCounts.computeIfAbsent(label, k -> new long[2]);
+            counts[0]++;
+            reviewed++;
+            if (match) {
+                counts[1]++;
+                agreed++;
+            } else {
+                confusions.merge(List.of(label, reviewedDisease), 1L, Long::sum);
+            }
+        }
+
+        List<ModelAccuracyReport.LabelStats> labelStats = new ArrayList<>();
+        for (var entry : labels.entrySet()) {
+            long[] counts = reviewCounts.getOrDefault(entry.getKey(), new long[2]);
+            labelStats.add(entry.getValue()
+                    .reviewed(counts[0])
+                    .agreed(counts[1])
+                    .accuracy(counts[0] > 0 ? (double) counts[1] / counts[0] : null)
+                    .build());
+        }
+
+        List<ModelAccuracyReport.Confusion> topConfusions = confusions.entrySet().stream()
+                .sorted(Map.Entry.<List<String>, Long>comparingByValue().reversed())
+                .limit(TOP_CONFUSIONS)
+                .map(e -> ModelAccuracyReport.Confusion.builder()
+                        .predictedLabel(e.getKey().get(0))
+                        .reviewedDisease(e.getKey().get(1))
+                        .count(e.getValue())
+                        .build())
+                .toList();
+
+        return ModelAccuracyReport.builder()
+                .since(since)
+                .leafPredictions(leafPredictions)
+                .nonLeafPredictions(predictionRepo.countNonLeaf(since))
+                .reviewed(reviewed)
+                .agreed(agreed)
+                .accuracy(reviewed > 0 ? (double) agreed / reviewed : null)
+                .labels(labelStats)
+                .topConfusions(topConfusions)
+                .build();
+    }
+
+    /**
+     * Officers type the disease freely ("Early Blight", "tomato early blight"),
+     * so compare letters and digits only, against the label's disease part or
+     * the whole "Crop___Disease" label.
+     */
+    static boolean matches(String label, String reviewedDisease) {
+        String reviewed = normalize(reviewedDisease);
+        if (reviewed.isEmpty()) return false;
+
+        String[] parts = label.split("___", 2);
+        String disease = normalize(parts.length > 1 ? parts[1] : parts[0]);
+        return reviewed.equals(disease) || reviewed.equals(normalize(label));
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]", "");
+    }
+
+    private StoredPredictionResponse toResponse(Prediction p) {
+        List<MlPredictionResponse.Top5> top5 = null;
+        if (p.getTop5() != null) {
+            try {
+                top5 = List.of(objectMapper.readValue(p.getTop5(), MlPredictionResponse.Top5[].class));
+            } catch (Exception e) {
+                log.warn("Unreadable top5 for prediction {}: {}", p.getId(), e.getMessage());
+            }
+        }
+        return StoredPredictionResponse.builder()
+                .id(p.getId())
+                .imageHash(p.getImageHash())
+                .leaf(p.getLeaf())
+                .reason(p.getReason())
+                .leafProbability(p.getLeafProbability())
+                .label(p.getLabel())
+                .confidence(p.getConfidence())
+                .top5(top5)
+                .createdAt(p.getCreatedAt())
+                .build();
+    }
+}
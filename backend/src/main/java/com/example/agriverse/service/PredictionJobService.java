@@ -0,0 +1,425 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.dto.ml.MlPredictionResponse;
+import com.example.agriverse.dto.ml.PredictionJobResponse;
+import com.example.agriverse.model.PredictionJob;
+import com.example.agriverse.model.PredictionJobItem;
+import com.example.agriverse.model.PredictionJobItemStatus;
+import com.example.agriverse.model.PredictionJobStatus;
+import com.example.agriverse.repository.PredictionJobItemRepository;
+import com.example.agriverse.repository.PredictionJobRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Background prediction jobs for large batches of images.
+ *
+ * A submission stores its images as pending uploads and writes the job and
+ * one row per image; the database is the queue of record. A bounded
+ * in-memory queue of item ids is refilled from pending rows on submit and
+ * every ml.jobs.poll-interval-ms, and the workers take items from it and run
+ * them through {@link MlPredictionService} one at a time each, so jobs never
+ * put more images in front of the ML service than there are workers. By
+ * default there are ml.batch.max-size workers: together they fill one
+ * micro-batch at a time, leaving the batcher's other slots to interactive
+ * requests (without batching, 2 single-image calls).
+ *
+ * An item whose call failed transiently (the ML service timed out, was
+ * unreachable or overloaded, see {@link MlPredictionService#isTransientError})
+ * goes back to PENDING with exponential backoff, up to ml.jobs.max-attempts
+ * calls; only the image's own errors (rejected by the service, expired) fail
+ * it at once. Items that were running when the application stopped are
+ * queued again on startup. Progress is published to stream subscribers as
+ * items finish.
+ */
+@Slf4j
+@Service
+public class PredictionJobService {
+
+    private final PredictionJobRepository jobRepo;
+    private final PredictionJobItemRepository itemRepo;
+    private final UploadTokenService uploadTokenService;
+    private final FileStorageService fileStorageService;
+    private final MlPredictionService mlPredictionService;
+    private final PredictionRecorder predictionRecorder;
+    private final PredictionJobStreamHub streamHub;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final BlockingQueue<Long> queue;
+    // Item ids in the queue or being worked on; not offered again until done
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock refillLock = new ReentrantLock();
+    private final List<Thread> workers = new ArrayList<>();
+    private final Counter itemsDone;
+    private final Counter itemsFailed;
+    private final Counter itemsRetried;
+
+    // 0: derived from the batch settings, see start()
+    @Value("${ml.jobs.concurrency:0}")
+    private int concurrency;
+
+    @Value("${ml.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Value("${ml.batch.max-size:8}")
+    private int batchMaxSize;
+
+    @Value("${ml.jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${ml.jobs.retry.initial-backoff-ms:10000}")
+    private long initialBackoffMs;
+
+    @Value("${ml.jobs.retry.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    @Value("${ml.jobs.max-images:500}")
+    private int maxImages;
+
+    @Value("${ml.jobs.retention-days:7}")
+    private long retentionDays;
+
+    public PredictionJobService(PredictionJobRepository jobRepo,
+                                PredictionJobItemRepository itemRepo,
+                                UploadTokenService uploadTokenService,
+                                FileStorageService fileStorageService,
+                                MlPredictionService mlPredictionService,
+                                PredictionRecorder predictionRecorder,
+                                PredictionJobStreamHub streamHub,
+                                TransactionTemplate transactionTemplate,
+                                MeterRegistry meterRegistry,
+                                @Value("${ml.jobs.queue-capacity:200}") int queueCapacity) {
+        this.jobRepo = jobRepo;
+        this.itemRepo = itemRepo;
+        this.uploadTokenService = uploadTokenService;
+        this.fileStorageService = fileStorageService;
+        this.mlPredictionService = mlPredictionService;
+        this.predictionRecorder = predictionRecorder;
+        this.streamHub = streamHub;
+        this.transactionTemplate = transactionTemplate;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+
+        this.itemsDone = Counter.builder("ml.jobs.items").tag("outcome", "done").register(meterRegistry);
+        this.itemsFailed = Counter.builder("ml.jobs.items").tag("outcome", "failed").register(meterRegistry);
+        this.itemsRetried = Counter.builder("ml.jobs.items").tag("outcome", "retried").register(meterRegistry);
+        Gauge.builder("ml.jobs.queue.size", queue, BlockingQueue::size)
+                .description("Prediction job items waiting for a worker")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        int requeued = itemRepo.requeueRunning();
+        if (requeued > 0) {
+            log.info("Re-queued {} prediction job items interrupted by the last shutdown", requeued);
+        }
+        // One image in flight per worker: batchMaxSize workers fill (at most) one batch at a time
+        int workerCount = concurrency > 0 ? concurrency : batchEnabled ? batchMaxSize : 2;
+        log.info("Starting {} prediction job workers", workerCount);
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = new Thread(this::work, "prediction-job-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        refill();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.forEach(Thread::interrupt);
+    }
+
+    public PredictionJobResponse submit(List<MultipartFile> images) {
+        if (images == null || images.isEmpty())
+            throw new RuntimeException("No images uploaded");
+        if (images.size() > maxImages)
+            throw new RuntimeException("Too many images in one job (max " + maxImages + ")");
+
+        String owner = currentUsername();
+        List<UploadTokenService.StoredUpload> uploads = uploadTokenService.store(images);
+
+        PredictionJob job = transactionTemplate.execute(status -> {
+            PredictionJob saved = jobRepo.save(PredictionJob.builder()
+                    .ownerUsername(owner)
+                    .total(images.size())
+                    .build());
+
+            List<PredictionJobItem> items = new ArrayList<>();
+            int unstored = 0;
+            for (int i = 0; i < images.size(); i++) {
+                MultipartFile image = images.get(i);
+                UploadTokenService.StoredUpload upload = uploads.get(i);
+                PredictionJobItem item = PredictionJobItem.builder()
+                        .job(saved)
+                        .position(i)
+                        .originalFilename(image.getOriginalFilename())
+                        .contentType(image.getContentType())
+                        .build();
+                if (upload != null) {
+                    item.setStoredFile(upload.filename());
+                    item.setImageHash(upload.imageHash());
+                    item.setPredictionId(upload.predictionId());
+                    item.setUploadToken(upload.token());
+                } else {
+                    item.setStatus(PredictionJobItemStatus.FAILED);
+                    item.setError("Could not store the image");
+                    item.setCompletedAt(Instant.now());
+                    unstored++;
+                }
+                items.add(item);
+            }
+            itemRepo.saveAll(items);
+
+            saved.setCompleted(unstored);
+            saved.setFailed(unstored);
+            if (unstored == images.size()) saved.setStatus(PredictionJobStatus.COMPLETED);
+            return saved;
+        });
+
+        refill();
+        return toResponse(job, null);
+    }
+
+    public PredictionJobResponse getJob(Long jobId) {
+        PredictionJob job = findAccessibleJob(jobId);
+        List<PredictionJobResponse.Item> items = itemRepo.findByJobIdOrderByPositionAsc(jobId).stream()
+                .map(this::toItem)
+                .toList();
+        return toResponse(job, items);
+    }
+
+    /**
+     * Streams the job: a "snapshot" event with all items so far, then an
+     * "item" event per finished image and a final "completed" event.
+     */
+    public SseEmitter subscribe(Long jobId) {
+        findAccessibleJob(jobId);
+        // Subscribe before reading the snapshot so no finished item falls in between
+        SseEmitter emitter = streamHub.subscribe(jobId);
+        PredictionJobResponse snapshot = getJob(jobId);
+        streamHub.send(jobId, emitter, "snapshot", snapshot);
+        if (snapshot.getStatus() == PredictionJobStatus.COMPLETED) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    /**
+     * Moves pending items from the database into the work queue while it has room.
+     */
+    @Scheduled(fixedDelayString = "${ml.jobs.poll-interval-ms:5000}")
+    void refill() {
+        if (!refillLock.tryLock()) return;
+        try {
+            int room = queue.remainingCapacity();
+            if (room == 0) return;
+
+            List<Long> pending = itemRepo.findPendingIdsDue(Instant.now(),
+                    PageRequest.of(0, room + queued.size()));
+            for (Long id : pending) {
+                if (!queued.add(id)) continue;
+                if (!queue.offer(id)) {
+                    queued.remove(id);
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to load pending prediction job items: {}", e.getMessage());
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ml.jobs.cleanup-interval-ms:3600000}")
+    void deleteExpiredJobs() {
+        Instant cutoff = Instant.now().minus(Duration.ofDays(retentionDays));
+        itemRepo.deleteForCompletedJobsBefore(cutoff);
+        int removed = jobRepo.deleteCompletedBefore(cutoff);
+        if (removed > 0) {
+            log.info("Deleted {} prediction jobs completed more than {} days ago", removed, retentionDays);
+        }
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Long itemId;
+            try {
+                itemId = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                process(itemId);
+            } catch (Exception e) {
+                log.warn("Prediction job item {} failed: {}", itemId, e.getMessage());
+            } finally {
+                queued.remove(itemId);
+            }
+            if (queue.isEmpty()) {
+                refill();
+            }
+        }
+    }
+
+    private void process(Long itemId) {
+        PredictionJobItem item = itemRepo.findById(itemId).orElse(null);
+        if (item == null || item.getStatus() != PredictionJobItemStatus.PENDING) return;
+
+        Long jobId = item.getJob().getId();
+        item.setStatus(PredictionJobItemStatus.RUNNING);
+        itemRepo.save(item);
+        jobRepo.markRunning(jobId, Instant.now());
+
+        MlPredictionResponse response;
+        try {
+            byte[] bytes = fileStorageService.readPending(item.getStoredFile());
+            response = mlPredictionService.predictAsync(bytes, item.getOriginalFilename(), item.getContentType()).join();
+        } catch (NoSuchFileException e) {
+            response = errorResponse("The image expired before it was processed");
+        } catch (Exception e) {
+            response = errorResponse(e.getMessage());
+        }
+
+        int attempts = item.getAttempts() + 1;
+        item.setAttempts(attempts);
+        if (MlPredictionService.isTransientError(response) && attempts < maxAttempts) {
+            retryLater(item, response.error);
+            return;
+        }
+
+        boolean failed = response.error != null;
+        if (!predictionRecorder.record(item.getPredictionId(), item.getImageHash(), item.getStoredFile(), response)) {
+            // Not stored, so there is nothing for create-issue to link to
+            item.setPredictionId(null);
+        }
+        item.setStatus(failed ? PredictionJobItemStatus.FAILED : PredictionJobItemStatus.DONE);
+        item.setResult(toJson(response));
+        item.setError(failed && response.error.length() > 1000 ? response.error.substring(0, 1000) : response.error);
+        item.setCompletedAt(Instant.now());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            itemRepo.save(item);
+            jobRepo.recordItemFinished(jobId, failed ? 1 : 0, Instant.now());
+        });
+        (failed ? itemsFailed : itemsDone).increment();
+
+        streamHub.publish(jobId, "item", toItem(item));
+        jobRepo.findById(jobId)
+                .filter(job -> job.getStatus() == PredictionJobStatus.COMPLETED)
+                .ifPresent(job -> {
+                    streamHub.publish(jobId, "completed", toResponse(job, null));
+                    streamHub.close(jobId);
+                });
+    }
+
+    /**
+     * Puts the item back to PENDING after a transient failure; refill() picks
+     * it up once its backoff (doubling per attempt) has passed.
+     */
+    private void retryLater(PredictionJobItem item, String error) {
+        long backoffMs = Math.min(maxBackoffMs, initialBackoffMs << Math.min(item.getAttempts() - 1, 20));
+        item.setStatus(PredictionJobItemStatus.PENDING);
+        item.setNextAttemptAt(Instant.now().plusMillis(backoffMs));
+        item.setError(error.length() > 1000 ? error.substring(0, 1000) : error);
+        itemRepo.save(item);
+        itemsRetried.increment();
+        log.info("Prediction job item {} failed transiently (attempt {} of {}), retrying in {} ms: {}",
+                item.getId(), item.getAttempts(), maxAttempts, backoffMs, error);
+    }
+
+    private PredictionJob findAccessibleJob(Long jobId) {
+        PredictionJob job = jobRepo.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Prediction job not found"));
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        boolean admin = auth != null && auth.getAuthorities().stream()
+                .anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+        if (!admin && !job.getOwnerUsername().equals(currentUsername())) {
+            throw new RuntimeException("Forbidden");
+        }
+        return job;
+    }
+
+    private String currentUsername() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getName() == null)
+            throw new RuntimeException("Unauthorized");
+        return auth.getName();
+    }
+
+    private PredictionJobResponse toResponse(PredictionJob job, List<PredictionJobResponse.Item> items) {
+        return PredictionJobResponse.builder()
+                .jobId(job.getId())
+                .status(job.getStatus())
+                .total(job.getTotal())
+                .completed(job.getCompleted())
+                .failed(job.getFailed())
+                .createdAt(job.getCreatedAt())
+                .updatedAt(job.getUpdatedAt())
+                .items(items)
+                .build();
+    }
+
+    private PredictionJobResponse.Item toItem(PredictionJobItem item) {
+        MlPredictionResponse result = null;
+        if (item.getResult() != null) {
+            try {
+                result = objectMapper.readValue(item.getResult(), MlPredictionResponse.class);
+            } catch (Exception e) {
+                log.warn("Unreadable result for prediction job item {}: {}", item.getId(), e.getMessage());
+            }
+        }
+        boolean done = item.getStatus() == PredictionJobItemStatus.DONE;
+        return PredictionJobResponse.Item.builder()
+                .position(item.getPosition())
+                .filename(item.getOriginalFilename())
+                .status(item.getStatus())
+                .predictionId(done ? item.getPredictionId() : null)
+                .uploadToken(done ? item.getUploadToken() : null)
+                .result(result)
+                .error(item.getError())
+                .completedAt(item.getCompletedAt())
+                .build();
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static MlPredictionResponse errorResponse(String error) {
+        MlPredictionResponse r = new MlPredictionResponse();
+        r.error = error != null ? error : "Prediction failed";
+        return r;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.agriverse.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Prediction job progress for the clients following a job, keyed by job id.
+ */
+@Component
+public class PredictionJobStreamHub extends SseHub<Long> {
+
+    public PredictionJobStreamHub() {
+        super("prediction job");
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.dto.ml.MlPredictionResponse;
+import com.example.agriverse.model.Prediction;
+import com.example.agriverse.repository.PredictionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes predictions to the predictions table off the request path.
+ *
+ * {@link #record} only enqueues. A single writer thread drains the queue in
+ * batches of up to predictions.writer.batch-size, waiting at most
+ * predictions.writer.flush-interval-ms for a batch to fill, and inserts each
+ * batch in one transaction; if that fails, the batch's rows are retried one
+ * by one so a single bad row does not drop the rest. When the database falls
+ * behind and the queue is full, new records are dropped (and counted) rather
+ * than slowing predictions.
+ */
+@Slf4j
+@Service
+public class PredictionRecorder {
+
+    private final PredictionRepository repository;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<Prediction> queue;
+    private final Counter written;
+    private final Counter dropped;
+
+    @Value("${predictions.writer.batch-size:50}")
+    private int batchSize;
+
+    @Value("${predictions.writer.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    private Thread writer;
+
+    public PredictionRecorder(PredictionRepository repository,
+                              MeterRegistry meterRegistry,
+                              @Value("${predictions.writer.queue-capacity:10000}") int queueCapacity) {
+        this.repository = repository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.written = Counter.builder("predictions.written").register(meterRegistry);
+        this.dropped = Counter.builder("predictions.dropped")
+                .description("Predictions not stored because the write queue was full")
+                .register(meterRegistry);
+        Gauge.builder("predictions.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        writer = new Thread(this::run, "prediction-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        writer.interrupt();
+        writer.join(5000);
+    }
+
+    /**
+     * Queues one image's prediction for storage; never blocks. Returns false
+     * if it will not be stored (an error response, or the queue is full), in
+     * which case its id must not be handed out.
+     */
+    public boolean record(long id, String imageHash, String imageFile, MlPredictionResponse response) {
+        if (response == null || response.error != null) return false;
+
+        Prediction prediction = Prediction.builder()
+                .id(id)
+                .imageHash(imageHash)
+                .imageFile(imageFile)
+                .leaf(Boolean.TRUE.equals(response.is_leaf))
+                .reason(truncate(response.reason, 500))
+                .leafProbability(response.leaf_probability)
+                .label(response.prediction)
+                .confidence(response.confidence)
+                .top5(toJson(response.top5))
+                .createdAt(Instant.now())
+                .build();
+        if (!queue.offer(prediction)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void run() {
+        List<Prediction> batch = new ArrayList<>(batchSize);
+        boolean running = true;
+        while (running) {
+            try {
+                Prediction first = queue.take();
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    Prediction next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutting down: write what is left
+                queue.drainTo(batch);
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Prediction> batch) {
+        try {
+            repository.saveAll(batch);
+            written.increment(batch.size());
+        } catch (Exception e) {
+            log.warn("Failed to store {} predictions, retrying one by one: {}", batch.size(), e.getMessage());
+            for (Prediction prediction : batch) {
+                try {
+                    repository.save(prediction);
+                    written.increment();
+                } catch (Exception rowError) {
+                    dropped.increment();
+                    log.warn("Failed to store prediction {}: {}", prediction.getId(), rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private String toJson(Object value) {
+        if (value == null) return null;
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String truncate(String value, int max) {
+        return value != null && value.length() > max ? value.substring(0, max) : value;
+    }
+}
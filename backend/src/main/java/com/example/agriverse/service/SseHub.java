@@ -0,0 +1,81 @@
+package com.example.agriverse.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Fan-out of server-sent events to the clients following a key (a chat room,
+ * a prediction job). Subscribers that disconnect are dropped on the next
+ * failed send.
+ */
+@Slf4j
+public class SseHub<K> {
+
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+
+    // What the key identifies, for logs
+    private final String keyName;
+    private final Map<K, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    protected SseHub(String keyName) {
+        this.keyName = keyName;
+    }
+
+    public SseEmitter subscribe(K key) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        subscribers.computeIfAbsent(key, k -> new CopyOnWriteArraySet<>()).add(emitter);
+
+        Runnable remove = () -> unsubscribe(key, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        return emitter;
+    }
+
+    public void publish(K key, String eventName, Object data) {
+        Set<SseEmitter> keySubscribers = subscribers.get(key);
+        if (keySubscribers == null || keySubscribers.isEmpty()) return;
+
+        for (SseEmitter emitter : keySubscribers) {
+            send(key, emitter, eventName, data);
+        }
+    }
+
+    /**
+     * Sends to one subscriber only, e.g. its initial snapshot.
+     */
+    public void send(K key, SseEmitter emitter, String eventName, Object data) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(eventName)
+                    .data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping stream subscriber for {} {}: {}", keyName, key, e.getMessage());
+            unsubscribe(key, emitter);
+        }
+    }
+
+    /**
+     * Completes and forgets every subscriber of the key.
+     */
+    public void close(K key) {
+        Set<SseEmitter> keySubscribers = subscribers.remove(key);
+        if (keySubscribers == null) return;
+        keySubscribers.forEach(SseEmitter::complete);
+    }
+
+    private void unsubscribe(K key, SseEmitter emitter) {
+        subscribers.computeIfPresent(key, (k, set) -> {
+            set.remove(emitter);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
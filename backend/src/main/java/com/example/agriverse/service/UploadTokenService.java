@@ -0,0 +1,140 @@
+package com.example.agriverse.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Lets a photo uploaded for prediction be attached to an issue without
+ * uploading it again.
+ *
+ * /api/ml/predict stores each image once, pending, and returns an upload
+ * token for it. A token is the signed triple (stored file, prediction id,
+ * expiry); /api/ml/create-issue presents it to claim the file, which then
+ * moves into the served upload directory. Tokens are stateless, so they
+ * survive restarts. Pending files not claimed within upload.token.ttl-hours
+ * are deleted.
+ */
+@Slf4j
+@Service
+public class UploadTokenService {
+
+    private static final String HMAC = "HmacSHA256";
+
+    /** Token issued for one stored image, with the image's SHA-256 (hex) and stored file name. */
+    public record StoredUpload(String token, long predictionId, String imageHash, String filename) {}
+
+    /** A claimed image: its served URL and the prediction it was uploaded for. */
+    public record ClaimedUpload(String imageUrl, long predictionId) {}
+
+    private final FileStorageService fileStorageService;
+    private final PredictionIdGenerator predictionIds;
+    private final SecretKeySpec key;
+    private final Duration ttl;
+
+    public UploadTokenService(FileStorageService fileStorageService,
+                              PredictionIdGenerator predictionIds,
+                              @Value("${upload.token.secret:${jwt.secret}}") String secret,
+                              @Value("${upload.token.ttl-hours:24}") long ttlHours) {
+        this.fileStorageService = fileStorageService;
+        this.predictionIds = predictionIds;
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC);
+        this.ttl = Duration.ofHours(ttlHours);
+    }
+
+    /**
+     * Stores each image and returns a token per image, in order. An image that
+     * cannot be stored gets a null entry; its prediction still goes ahead.
+     */
+    public List<StoredUpload> store(List<MultipartFile> images) {
+        List<StoredUpload> uploads = new ArrayList<>();
+        if (images == null) return uploads;
+
+        long expiresAt = Instant.now().plus(ttl).getEpochSecond();
+        for (MultipartFile image : images) {
+            try {
+                byte[] bytes = image.getBytes();
+                String filename = fileStorageService.savePending(bytes, image.getOriginalFilename());
+                long predictionId = predictionIds.next();
+                String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+                uploads.add(new StoredUpload(sign(filename + "|" + predictionId + "|" + expiresAt),
+                        predictionId, hash, filename));
+            } catch (Exception e) {
+                log.warn("Failed to store uploaded image {}: {}", image.getOriginalFilename(), e.getMessage());
+                uploads.add(null);
+            }
+        }
+        return uploads;
+    }
+
+    /**
+     * Verifies the tokens and moves their images into the served upload
+     * directory. Fails on any invalid or expired token.
+     */
+    public List<ClaimedUpload> claim(List<String> tokens) {
+        List<ClaimedUpload> claimed = new ArrayList<>();
+        if (tokens == null) return claimed;
+
+        for (String token : tokens) {
+            if (token == null || token.isBlank()) continue;
+            String[] fields = verify(token).split("\\|");
+            if (fields.length != 3 || Instant.now().getEpochSecond() > Long.parseLong(fields[2])) {
+                throw new RuntimeException("Upload token has expired, please upload the image again");
+            }
+            claimed.add(new ClaimedUpload(fileStorageService.promotePending(fields[0]), Long.parseLong(fields[1])));
+        }
+        return claimed;
+    }
+
+    @Scheduled(fixedDelayString = "${upload.token.purge-interval-ms:3600000}")
+    void purgeExpired() {
+        int removed = fileStorageService.purgePending(ttl);
+        if (removed > 0) {
+            log.info("Removed {} unclaimed prediction uploads older than {} h", removed, ttl.toHours());
+        }
+    }
+
+    private String sign(String payload) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        return encoder.encodeToString(bytes) + "." + encoder.encodeToString(mac(bytes));
+    }
+
+    private String verify(String token) {
+        try {
+            int dot = token.indexOf('.');
+            byte[] payload = Base64.getUrlDecoder().decode(token.substring(0, dot));
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+            if (MessageDigest.isEqual(mac(payload), signature)) {
+                return new String(payload, StandardCharsets.UTF_8);
+            }
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            // Malformed token
+        }
+        throw new RuntimeException("Invalid upload token");
+    }
+
+    private byte[] mac(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to sign upload token", e);
+        }
+    }
+}
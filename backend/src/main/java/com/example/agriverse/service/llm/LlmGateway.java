@@ -0,0 +1,23 @@
+package com.example.agriverse.service.llm;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Entry point for all LLM (Ollama) HTTP calls. Implementations decide which
+ * backend instance serves a request.
+ */
+public interface LlmGateway {
+
+    /**
+     * POSTs a JSON payload to an Ollama API path (e.g. "/api/generate") and
+     * returns the raw response body.
+     */
+    Mono<String> post(String path, Object payload);
+
+    /**
+     * POSTs a JSON payload with streaming enabled and emits the NDJSON
+     * response one line at a time.
+     */
+    Flux<String> stream(String path, Object payload);
+}
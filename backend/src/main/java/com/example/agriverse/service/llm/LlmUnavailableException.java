@@ -0,0 +1,11 @@
+package com.example.agriverse.service.llm;
+
+/**
+ * No LLM instance could take the request (all unhealthy, tripped or at capacity).
+ */
+public class LlmUnavailableException extends RuntimeException {
+
+    public LlmUnavailableException(String message) {
+        super(message);
+    }
+}
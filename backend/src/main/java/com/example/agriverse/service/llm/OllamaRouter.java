@@ -0,0 +1,248 @@
+package com.example.agriverse.service.llm;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link LlmGateway} that spreads calls over several Ollama instances.
+ *
+ * - Each request goes to the least-loaded eligible instance (fewest in-flight
+ *   requests, then lowest latency EWMA), never exceeding the per-instance cap.
+ *   When every instance is at its cap, the request waits up to acquireTimeout.
+ * - Server errors, connection failures and timeouts feed a per-instance circuit
+ *   breaker; a tripped instance is skipped until its half-open trial succeeds.
+ * - {@link #probeHealth()} periodically calls GET /api/tags and ejects instances
+ *   that do not answer.
+ *
+ * Plain constructor, no Spring wiring required: point it at local stub
+ * servers to exercise routing, capacity and ejection.
+ */
+@Slf4j
+public class OllamaRouter implements LlmGateway {
+
+    private static final Duration ACQUIRE_POLL = Duration.ofMillis(200);
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(3);
+    private static final double EWMA_ALPHA = 0.2;
+
+    public record Settings(int maxConcurrentPerInstance,
+                           Duration acquireTimeout,
+                           Duration requestTimeout,
+                           int failureThreshold,
+                           Duration openDuration) {}
+
+    private final WebClient webClient;
+    private final Settings settings;
+    private final List<Instance> instances = new ArrayList<>();
+
+    public OllamaRouter(WebClient webClient, List<String> endpoints, Settings settings) {
+        this.webClient = webClient;
+        this.settings = settings;
+        for (String endpoint : endpoints) {
+            String baseUrl = endpoint.trim().replaceAll("/+$", "");
+            if (!baseUrl.isEmpty()) {
+                instances.add(new Instance(baseUrl,
+                        new CircuitBreaker(settings.failureThreshold(), settings.openDuration())));
+            }
+        }
+        if (instances.isEmpty()) {
+            throw new IllegalArgumentException("At least one Ollama endpoint is required");
+        }
+        log.info("Ollama router configured with {} instance(s): {}", instances.size(),
+                instances.stream().map(Instance::baseUrl).toList());
+    }
+
+    public void registerMetrics(MeterRegistry registry) {
+        for (Instance instance : instances) {
+            Gauge.builder("ollama.instance.inflight", instance, i -> i.inFlight().get())
+                    .tag("instance", instance.baseUrl())
+                    .register(registry);
+            Gauge.builder("ollama.instance.latency.ewma", instance, Instance::latencyEwmaMs)
+                    .tag("instance", instance.baseUrl())
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            Gauge.builder("ollama.instance.available", instance, i -> i.isEligible() ? 1 : 0)
+                    .tag("instance", instance.baseUrl())
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public Mono<String> post(String path, Object payload) {
+        return acquire().flatMap(instance -> {
+            long start = System.nanoTime();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            return webClient.post()
+                    .uri(instance.baseUrl() + path)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(payload)
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .timeout(settings.requestTimeout())
+                    .doOnError(error::set)
+                    .doFinally(signal -> release(instance, signal, error.get(), start));
+        });
+    }
+
+    @Override
+    public Flux<String> stream(String path, Object payload) {
+        return acquire().flatMapMany(instance -> {
+            long start = System.nanoTime();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            return webClient.post()
+                    .uri(instance.baseUrl() + path)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(payload)
+                    .retrieve()
+                    .bodyToFlux(String.class)
+                    // Idle timeout between chunks rather than for the whole generation
+                    .timeout(settings.requestTimeout())
+                    .doOnError(error::set)
+                    .doFinally(signal -> release(instance, signal, error.get(), start));
+        });
+    }
+
+    /**
+     * Health check: instances that do not answer GET /api/tags are ejected
+     * (breaker forced open) until a later probe succeeds.
+     */
+    @Scheduled(fixedDelayString = "${ollama.health.interval-ms:10000}",
+            initialDelayString = "${ollama.health.interval-ms:10000}")
+    public void probeHealth() {
+        for (Instance instance : instances) {
+            webClient.get()
+                    .uri(instance.baseUrl() + "/api/tags")
+                    .retrieve()
+                    .toBodilessEntity()
+                    .timeout(PROBE_TIMEOUT)
+                    .subscribe(
+                            ok -> {
+                                if (!instance.healthy) {
+                                    log.info("Ollama instance {} is healthy again", instance.baseUrl());
+                                }
+                                instance.healthy = true;
+                            },
+                            e -> {
+                                if (instance.healthy) {
+                                    log.warn("Ollama instance {} failed health check, ejecting: {}",
+                                            instance.baseUrl(), e.getMessage());
+                                }
+                                instance.healthy = false;
+                                instance.breaker().open();
+                            });
+        }
+    }
+
+    private Mono<Instance> acquire() {
+        long maxAttempts = Math.max(0, settings.acquireTimeout().toMillis() / ACQUIRE_POLL.toMillis());
+        return Mono.fromCallable(this::tryAcquire)
+                .retryWhen(Retry.fixedDelay(maxAttempts, ACQUIRE_POLL)
+                        .filter(e -> e instanceof AtCapacityException)
+                        .onRetryExhaustedThrow((spec, signal) -> new LlmUnavailableException(
+                                "All Ollama instances are at capacity")));
+    }
+
+    private Instance tryAcquire() {
+        List<Instance> candidates = instances.stream()
+                .filter(Instance::isEligible)
+                .sorted(Comparator.comparingInt((Instance i) -> i.inFlight().get())
+                        .thenComparingDouble(Instance::latencyEwmaMs))
+                .toList();
+
+        if (candidates.isEmpty()) {
+            throw new LlmUnavailableException("No healthy Ollama instance available");
+        }
+
+        for (Instance instance : candidates) {
+            if (instance.inFlight().incrementAndGet() > settings.maxConcurrentPerInstance()) {
+                instance.inFlight().decrementAndGet();
+                continue;
+            }
+            if (!instance.breaker().tryAcquirePermission()) {
+                instance.inFlight().decrementAndGet();
+                continue;
+            }
+            return instance;
+        }
+        throw AtCapacityException.INSTANCE;
+    }
+
+    private void release(Instance instance, SignalType signal, Throwable error, long startNanos) {
+        instance.inFlight().decrementAndGet();
+        switch (signal) {
+            case ON_COMPLETE -> {
+                instance.breaker().onSuccess();
+                instance.recordLatency((System.nanoTime() - startNanos) / 1_000_000.0);
+            }
+            case ON_ERROR -> {
+                if (countsAsFailure(error)) {
+                    instance.breaker().onFailure();
+                    log.warn("Ollama instance {} call failed: {}", instance.baseUrl(),
+                            error != null ? error.getMessage() : "unknown error");
+                } else {
+                    instance.breaker().onSuccess();
+                }
+            }
+            default -> instance.breaker().onIgnored();
+        }
+    }
+
+    /**
+     * Client errors (bad request, unknown model) say nothing about instance health.
+     */
+    private static boolean countsAsFailure(Throwable error) {
+        return !(error instanceof WebClientResponseException ex && ex.getStatusCode().is4xxClientError());
+    }
+
+    private static final class Instance {
+        private final String baseUrl;
+        private final CircuitBreaker breaker;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double latencyEwmaMs;
+        volatile boolean healthy = true;
+
+        Instance(String baseUrl, CircuitBreaker breaker) {
+            this.baseUrl = baseUrl;
+            this.breaker = breaker;
+        }
+
+        String baseUrl() { return baseUrl; }
+
+        CircuitBreaker breaker() { return breaker; }
+
+        AtomicInteger inFlight() { return inFlight; }
+
+        double latencyEwmaMs() { return latencyEwmaMs; }
+
+        boolean isEligible() {
+            return healthy && breaker.isCallPermitted();
+        }
+
+        synchronized void recordLatency(double ms) {
+            latencyEwmaMs = latencyEwmaMs == 0 ? ms : latencyEwmaMs * (1 - EWMA_ALPHA) + ms * EWMA_ALPHA;
+        }
+    }
+
+    private static final class AtCapacityException extends RuntimeException {
+        static final AtCapacityException INSTANCE = new AtCapacityException();
+
+        private AtCapacityException() {
+            super("All Ollama instances are at capacity", null, false, false);
+        }
+    }
+}
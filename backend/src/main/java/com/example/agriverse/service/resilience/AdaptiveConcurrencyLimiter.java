@@ -0,0 +1,75 @@
+package com.example.agriverse.service.resilience;
+
+/**
+ * AIMD concurrency limit, after Netflix concurrency-limits' AIMDLimit.
+ *
+ * A call may start while fewer than {@link #getLimit()} calls are in flight;
+ * otherwise it is rejected at once instead of queueing. Each completed call
+ * adjusts the limit: a drop (timeout, 5xx, connection failure) or a call
+ * slower than {@code slowCallNanos} multiplies it by {@code backoffRatio};
+ * a fast call made while at least half the limit was in use adds one.
+ * The limit therefore grows while the backend keeps up and shrinks as soon
+ * as it slows down.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public record Settings(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long slowCallNanos) {}
+
+    private final Settings settings;
+
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimiter(Settings settings) {
+        this.settings = settings;
+        this.limit = Math.max(settings.minLimit(), Math.min(settings.maxLimit(), settings.initialLimit()));
+    }
+
+    /**
+     * @return the number of calls in flight when this one started (for
+     *         {@link #onSample}), or -1 if the limit is reached
+     */
+    public synchronized int tryAcquire() {
+        if (inFlight >= (int) limit) return -1;
+        return ++inFlight;
+    }
+
+    /**
+     * A permitted call finished normally after rttNanos.
+     */
+    public synchronized void onSample(long rttNanos, int inFlightAtStart) {
+        inFlight--;
+        if (rttNanos > settings.slowCallNanos()) {
+            decrease();
+        } else if (inFlightAtStart * 2 >= limit) {
+            limit = Math.min(settings.maxLimit(), limit + 1);
+        }
+    }
+
+    /**
+     * A permitted call failed in a way that suggests overload.
+     */
+    public synchronized void onDropped() {
+        inFlight--;
+        decrease();
+    }
+
+    /**
+     * A permitted call ended without saying anything about load (client error, cancelled).
+     */
+    public synchronized void onIgnored() {
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void decrease() {
+        limit = Math.max(settings.minLimit(), limit * settings.backoffRatio());
+    }
+}
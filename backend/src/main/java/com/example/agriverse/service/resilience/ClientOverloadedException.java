@@ -0,0 +1,12 @@
+package com.example.agriverse.service.resilience;
+
+/**
+ * A call to a downstream service was refused locally, without being sent,
+ * because its concurrency limit was reached or its circuit breaker is open.
+ */
+public class ClientOverloadedException extends RuntimeException {
+
+    public ClientOverloadedException(String message) {
+        super(message, null, false, false);
+    }
+}
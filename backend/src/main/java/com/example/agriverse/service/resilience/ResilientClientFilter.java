@@ -0,0 +1,172 @@
+package com.example.agriverse.service.resilience;
+
+import com.example.agriverse.service.llm.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * WebClient filter giving every downstream endpoint (scheme, host and port)
+ * an {@link AdaptiveConcurrencyLimiter} and a {@link CircuitBreaker}. Meant
+ * for clients whose callers have no admission control of their own (the ML
+ * client); not for one behind a router that already caps its calls.
+ *
+ * Calls over the limit or to an endpoint whose breaker is open fail at once
+ * with {@link ClientOverloadedException}, so callers take their existing
+ * fallback instead of piling up until they time out. A call holds its permit
+ * until the response body has been read, so streamed responses count for
+ * their whole duration. 5xx responses and connection errors are failures for
+ * both; 4xx responses and cancellations are neither, except that a call
+ * cancelled after running longer than the slow-call threshold (usually the
+ * caller's timeout) lowers the limit. A failure threshold of
+ * 0 leaves out the breaker, for clients whose caller already has one. Limit,
+ * in-flight calls, breaker state and rejections are published as metrics
+ * tagged with the client name and endpoint.
+ */
+@Slf4j
+public class ResilientClientFilter implements ExchangeFilterFunction {
+
+    public record Settings(AdaptiveConcurrencyLimiter.Settings limit, int failureThreshold, Duration openDuration) {}
+
+    // breaker is null when disabled
+    private record Endpoint(String name, AdaptiveConcurrencyLimiter limiter, CircuitBreaker breaker,
+                            Counter limitRejections, Counter breakerRejections) {
+
+        boolean breakerPermits() {
+            return breaker == null || breaker.tryAcquirePermission();
+        }
+
+        boolean breakerOpen() {
+            return breaker != null && breaker.getState() == CircuitBreaker.State.OPEN;
+        }
+    }
+
+    private final String client;
+    private final Settings settings;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public ResilientClientFilter(String client, Settings settings, MeterRegistry meterRegistry) {
+        this.client = client;
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            Endpoint endpoint = endpoints.computeIfAbsent(endpointName(request.url()), this::newEndpoint);
+
+            if (!endpoint.breakerPermits()) {
+                endpoint.breakerRejections().increment();
+                return Mono.error(new ClientOverloadedException(
+                        client + " " + endpoint.name() + " is failing, circuit breaker open"));
+            }
+            int inFlightAtStart = endpoint.limiter().tryAcquire();
+            if (inFlightAtStart < 0) {
+                if (endpoint.breaker() != null) endpoint.breaker().onIgnored();
+                endpoint.limitRejections().increment();
+                return Mono.error(new ClientOverloadedException(client + " " + endpoint.name()
+                        + " is overloaded (" + endpoint.limiter().getLimit() + " calls in flight)"));
+            }
+
+            Call call = new Call(endpoint, inFlightAtStart, System.nanoTime());
+            return next.exchange(request)
+                    .map(response -> {
+                        boolean serverError = response.statusCode().is5xxServerError();
+                        return response.mutate()
+                                .body(body -> body.doFinally(signal -> call.finish(signal, serverError)))
+                                .build();
+                    })
+                    .doOnError(e -> call.failed())
+                    .doOnCancel(call::cancelled);
+        });
+    }
+
+    private Endpoint newEndpoint(String name) {
+        Endpoint endpoint = new Endpoint(name,
+                new AdaptiveConcurrencyLimiter(settings.limit()),
+                settings.failureThreshold() > 0
+                        ? new CircuitBreaker(settings.failureThreshold(), settings.openDuration()) : null,
+                Counter.builder("http.client.rejected").tag("client", client).tag("endpoint", name)
+                        .tag("reason", "limit").register(meterRegistry),
+                Counter.builder("http.client.rejected").tag("client", client).tag("endpoint", name)
+                        .tag("reason", "circuit-open").register(meterRegistry));
+
+        Gauge.builder("http.client.concurrency.limit", endpoint.limiter(), AdaptiveConcurrencyLimiter::getLimit)
+                .tag("client", client).tag("endpoint", name).register(meterRegistry);
+        Gauge.builder("http.client.concurrency.inflight", endpoint.limiter(), AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("client", client).tag("endpoint", name).register(meterRegistry);
+        if (endpoint.breaker() != null) {
+            Gauge.builder("http.client.circuit.open", endpoint, e -> e.breakerOpen() ? 1 : 0)
+                    .tag("client", client).tag("endpoint", name).register(meterRegistry);
+        }
+        return endpoint;
+    }
+
+    private static String endpointName(URI url) {
+        return url.getScheme() + "://" + url.getHost() + (url.getPort() >= 0 ? ":" + url.getPort() : "");
+    }
+
+    /**
+     * One permitted call; reports its outcome exactly once.
+     */
+    private final class Call {
+        private final Endpoint endpoint;
+        private final int inFlightAtStart;
+        private final long startNanos;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Call(Endpoint endpoint, int inFlightAtStart, long startNanos) {
+            this.endpoint = endpoint;
+            this.inFlightAtStart = inFlightAtStart;
+            this.startNanos = startNanos;
+        }
+
+        void finish(SignalType signal, boolean serverError) {
+            if (signal == SignalType.ON_ERROR || serverError) {
+                failed();
+            } else if (signal == SignalType.CANCEL) {
+                cancelled();
+            } else if (done.compareAndSet(false, true)) {
+                endpoint.limiter().onSample(System.nanoTime() - startNanos, inFlightAtStart);
+                if (endpoint.breaker() != null) endpoint.breaker().onSuccess();
+            }
+        }
+
+        void failed() {
+            if (!done.compareAndSet(false, true)) return;
+            endpoint.limiter().onDropped();
+            if (endpoint.breaker() == null) return;
+            endpoint.breaker().onFailure();
+            if (endpoint.breakerOpen()) {
+                log.warn("{} {} circuit breaker open (concurrency limit now {})",
+                        client, endpoint.name(), endpoint.limiter().getLimit());
+            }
+        }
+
+        void cancelled() {
+            if (!done.compareAndSet(false, true)) return;
+            // Callers' timeouts arrive as cancellations: a slow one is a drop
+            if (System.nanoTime() - startNanos > settings.limit().slowCallNanos()) {
+                endpoint.limiter().onDropped();
+            } else {
+                endpoint.limiter().onIgnored();
+            }
+            if (endpoint.breaker() != null) endpoint.breaker().onIgnored();
+        }
+    }
+}
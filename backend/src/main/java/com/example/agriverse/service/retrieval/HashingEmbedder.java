@@ -0,0 +1,88 @@
+package com.example.agriverse.service.retrieval;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependency-free text embedder: signed feature hashing of word unigrams and
+ * bigrams with sublinear term frequency, L2-normalized so a dot product is the
+ * cosine similarity. Deterministic and fast (microseconds per passage), which
+ * keeps query embedding off the LLM path.
+ *
+ * Changing the algorithm or dimension must bump {@link #VERSION} so persisted
+ * vectors are rebuilt.
+ */
+public final class HashingEmbedder {
+
+    public static final int VERSION = 1;
+
+    private static final double BIGRAM_WEIGHT = 0.5;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "can", "do", "does", "for", "from", "has",
+            "have", "how", "i", "if", "in", "is", "it", "its", "my", "of", "on", "or", "should", "so",
+            "that", "the", "their", "this", "to", "was", "we", "what", "when", "where", "which",
+            "who", "why", "will", "with", "you", "your");
+
+    private final int dimension;
+
+    public HashingEmbedder(int dimension) {
+        this.dimension = dimension;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public float[] embed(String text) {
+        Map<String, Integer> counts = new HashMap<>();
+        String previous = null;
+        for (String raw : (text == null ? "" : text).toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (raw.length() < 2 || STOP_WORDS.contains(raw)) continue;
+            String term = stem(raw);
+            counts.merge(term, 1, Integer::sum);
+            if (previous != null) {
+                counts.merge(previous + " " + term, 1, Integer::sum);
+            }
+            previous = term;
+        }
+
+        float[] vector = new float[dimension];
+        counts.forEach((term, tf) -> {
+            int h = mix(term.hashCode());
+            int slot = Math.floorMod(h, dimension);
+            double weight = (1 + Math.log(tf)) * (term.indexOf(' ') >= 0 ? BIGRAM_WEIGHT : 1.0);
+            vector[slot] += (float) ((h & 0x8000_0000) == 0 ? weight : -weight);
+        });
+
+        double norm = 0;
+        for (float v : vector) norm += v * v;
+        if (norm > 0) {
+            float inv = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) vector[i] *= inv;
+        }
+        return vector;
+    }
+
+    /**
+     * Crude suffix stripping so "spots"/"spot" and "wilting"/"wilt" share a feature.
+     */
+    private static String stem(String word) {
+        if (word.length() > 5 && word.endsWith("ing")) return word.substring(0, word.length() - 3);
+        if (word.length() > 4 && word.endsWith("ed")) return word.substring(0, word.length() - 2);
+        if (word.length() > 4 && word.endsWith("es")) return word.substring(0, word.length() - 2);
+        if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) return word.substring(0, word.length() - 1);
+        return word;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85eb_ca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2_ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
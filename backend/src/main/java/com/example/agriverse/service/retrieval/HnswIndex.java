@@ -0,0 +1,277 @@
+package com.example.agriverse.service.retrieval;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory HNSW (hierarchical navigable small world) graph over unit-length
+ * float vectors, scored by dot product (= cosine similarity).
+ *
+ * Nodes are numbered 0..size-1 in insertion order. Removal is by tombstone:
+ * removed nodes stay in the graph for navigation but are never returned.
+ * Once tombstones make up a large part of the graph, {@link #compacted()}
+ * builds a fresh index from the live nodes. Inserts take the write lock;
+ * searches share the read lock.
+ */
+public final class HnswIndex {
+
+    public record Hit(int node, float score) {}
+
+    /**
+     * A rebuilt index and, for each old node id, its new id (-1 if it was removed).
+     */
+    public record Compacted(HnswIndex index, int[] newIds) {}
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final List<float[]> vectors = new ArrayList<>();
+    private final List<List<int[]>> links = new ArrayList<>();   // node -> level -> neighbour ids
+    private final List<int[]> linkCounts = new ArrayList<>();    // node -> level -> used slots
+    private final BitSet removed = new BitSet();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension, int m, int efConstruction) {
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return vectors.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            int node = vectors.size();
+            int level = (int) Math.floor(-Math.log(1 - random.nextDouble()) * levelMultiplier);
+
+            vectors.add(vector);
+            List<int[]> nodeLinks = new ArrayList<>(level + 1);
+            int[] counts = new int[level + 1];
+            for (int l = 0; l <= level; l++) {
+                nodeLinks.add(new int[maxLinks(l)]);
+            }
+            links.add(nodeLinks);
+            linkCounts.add(counts);
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(vector, current, l);
+            }
+
+            List<Integer> entryPoints = List.of(current);
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Hit> candidates = searchLayer(vector, entryPoints, efConstruction, l);
+                List<Hit> selected = candidates.subList(0, Math.min(m, candidates.size()));
+                for (Hit neighbour : selected) {
+                    connect(node, neighbour.node(), l);
+                    connect(neighbour.node(), node, l);
+                }
+                entryPoints = candidates.stream().map(Hit::node).toList();
+            }
+
+            if (level > maxLevel) {
+                entryPoint = node;
+                maxLevel = level;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int removedCount() {
+        lock.readLock().lock();
+        try {
+            return removed.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Builds a new index holding only the live nodes, in their original order.
+     * This index is left unchanged and stays searchable meanwhile.
+     */
+    public Compacted compacted() {
+        lock.readLock().lock();
+        try {
+            HnswIndex fresh = new HnswIndex(dimension, m, efConstruction);
+            int[] newIds = new int[vectors.size()];
+            for (int node = 0; node < vectors.size(); node++) {
+                newIds[node] = removed.get(node) ? -1 : fresh.add(vectors.get(node));
+            }
+            return new Compacted(fresh, newIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void remove(int node) {
+        lock.writeLock().lock();
+        try {
+            removed.set(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to k live nodes closest to the query, best first.
+     */
+    public List<Hit> search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) return List.of();
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(query, current, l);
+            }
+            List<Hit> hits = searchLayer(query, List.of(current), Math.max(ef, k), 0);
+
+            List<Hit> result = new ArrayList<>(k);
+            for (Hit hit : hits) {
+                if (removed.get(hit.node())) continue;
+                result.add(hit);
+                if (result.size() == k) break;
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float best = dot(query, vectors.get(current));
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links.get(current).get(level);
+            int count = linkCounts.get(current)[level];
+            for (int i = 0; i < count; i++) {
+                float score = dot(query, vectors.get(neighbours[i]));
+                if (score > best) {
+                    best = score;
+                    current = neighbours[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one layer; returns up to ef nodes sorted best first.
+     */
+    private List<Hit> searchLayer(float[] query, List<Integer> entryPoints, int ef, int level) {
+        BitSet visited = new BitSet(vectors.size());
+        PriorityQueue<Hit> candidates = new PriorityQueue<>((a, b) -> Float.compare(b.score(), a.score()));
+        PriorityQueue<Hit> results = new PriorityQueue<>((a, b) -> Float.compare(a.score(), b.score()));
+
+        for (int ep : entryPoints) {
+            if (visited.get(ep)) continue;
+            visited.set(ep);
+            Hit hit = new Hit(ep, dot(query, vectors.get(ep)));
+            candidates.add(hit);
+            results.add(hit);
+            if (results.size() > ef) results.poll();
+        }
+
+        while (!candidates.isEmpty()) {
+            Hit candidate = candidates.poll();
+            if (results.size() >= ef && candidate.score() < results.peek().score()) break;
+
+            List<int[]> nodeLinks = links.get(candidate.node());
+            if (level >= nodeLinks.size()) continue;
+            int[] neighbours = nodeLinks.get(level);
+            int count = linkCounts.get(candidate.node())[level];
+            for (int i = 0; i < count; i++) {
+                int n = neighbours[i];
+                if (visited.get(n)) continue;
+                visited.set(n);
+                float score = dot(query, vectors.get(n));
+                if (results.size() < ef || score > results.peek().score()) {
+                    Hit hit = new Hit(n, score);
+                    candidates.add(hit);
+                    results.add(hit);
+                    if (results.size() > ef) results.poll();
+                }
+            }
+        }
+
+        List<Hit> sorted = new ArrayList<>(results);
+        sorted.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return sorted;
+    }
+
+    /**
+     * Adds to from's neighbour list; when full, the least similar link is dropped.
+     */
+    private void connect(int from, int to, int level) {
+        int[] neighbours = links.get(from).get(level);
+        int[] counts = linkCounts.get(from);
+        int count = counts[level];
+        for (int i = 0; i < count; i++) {
+            if (neighbours[i] == to) return;
+        }
+        if (count < neighbours.length) {
+            neighbours[count] = to;
+            counts[level] = count + 1;
+            return;
+        }
+
+        float[] base = vectors.get(from);
+        int worst = -1;
+        float worstScore = dot(base, vectors.get(to));
+        for (int i = 0; i < count; i++) {
+            float score = dot(base, vectors.get(neighbours[i]));
+            if (score < worstScore) {
+                worstScore = score;
+                worst = i;
+            }
+        }
+        if (worst >= 0) {
+            neighbours[worst] = to;
+        }
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.agriverse.service.retrieval;
+
+import com.example.agriverse.model.ForumPost;
+import com.example.agriverse.repository.ForumPostRepository;
+import com.example.agriverse.service.KnowledgeBaseChangedEvent;
+import com.example.agriverse.service.KnowledgeBaseService;
+import com.example.agriverse.service.KnowledgeIndex;
+import com.example.agriverse.service.KnowledgeSectionRanker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Semantic search over knowledge-base sections and forum posts, used to ground
+ * advice and chat answers.
+ *
+ * Passages are embedded with {@link HashingEmbedder} into an in-process
+ * {@link HnswIndex}. Knowledge sections are indexed at startup; forum posts are
+ * indexed as they are created and persisted to a memory-mapped vector file, so
+ * a restart only embeds posts it has not seen yet. Only the vectors are
+ * persisted: the graph itself is rebuilt from them on every startup.
+ *
+ * Re-indexed knowledge sections leave tombstones in the graph; once they pass
+ * retrieval.hnsw.compact-removed-fraction of its nodes, the graph is rebuilt
+ * from the live nodes and swapped in, so hot reloads do not grow it forever.
+ */
+@Slf4j
+@Service
+public class RetrievalService {
+
+    public static final String SOURCE_KNOWLEDGE = "knowledge";
+    public static final String SOURCE_FORUM = "forum";
+
+    private static final int MAX_STORED_CHARS = 1200;
+    private static final int CATCH_UP_BATCH = 200;
+
+    public record Passage(String source, String ref, String title, String text, double score) {}
+
+    private record Doc(String source, String ref, String title, String text) {}
+
+    // The docs map is keyed by the index's node ids; both are replaced together on compaction
+    private record Graph(HnswIndex index, Map<Integer, Doc> docs) {}
+
+    private final KnowledgeBaseService knowledgeBase;
+    private final ForumPostRepository postRepo;
+    private final HashingEmbedder embedder;
+    private final VectorIndexFile vectorFile;
+    private final Path indexFile;
+    private final Timer searchTimer;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Replaced under writeLock; searches read it once
+    private volatile Graph graph;
+    // Guarded by writeLock
+    private final Map<String, List<Integer>> knowledgeNodes = new HashMap<>();
+    private final Set<Long> indexedPostIds = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "retrieval-indexer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${retrieval.ef-search:64}")
+    private int efSearch;
+
+    @Value("${retrieval.min-score:0.2}")
+    private double minScore;
+
+    @Value("${retrieval.hnsw.compact-removed-fraction:0.25}")
+    private double compactRemovedFraction;
+
+    public RetrievalService(KnowledgeBaseService knowledgeBase,
+                            ForumPostRepository postRepo,
+                            MeterRegistry meterRegistry,
+                            @Value("${retrieval.dimension:384}") int dimension,
+                            @Value("${retrieval.hnsw.m:16}") int m,
+                            @Value("${retrieval.hnsw.ef-construction:100}") int efConstruction,
+                            @Value("${retrieval.index-file:data/forum-vectors.bin}") String indexFile) {
+        this.knowledgeBase = knowledgeBase;
+        this.postRepo = postRepo;
+        this.embedder = new HashingEmbedder(dimension);
+        this.graph = new Graph(new HnswIndex(dimension, m, efConstruction), new ConcurrentHashMap<>());
+        this.indexFile = Path.of(indexFile);
+        this.vectorFile = new VectorIndexFile(this.indexFile, HashingEmbedder.VERSION, dimension);
+        this.searchTimer = Timer.builder("retrieval.search")
+                .description("Time to embed a query and search the vector index")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        KnowledgeIndex snapshot = knowledgeBase.current();
+        indexKnowledge(snapshot, snapshot.keys());
+
+        try {
+            List<VectorIndexFile.Entry> stored = vectorFile.load();
+            writeLock.lock();
+            try {
+                for (VectorIndexFile.Entry entry : stored) {
+                    if (!indexedPostIds.add(entry.postId())) continue;
+                    String[] parts = entry.text().split("\n", 2);
+                    Graph g = graph;
+                    int node = g.index().add(entry.vector());
+                    g.docs().put(node, new Doc(SOURCE_FORUM, String.valueOf(entry.postId()),
+                            parts[0], parts.length > 1 ? parts[1] : ""));
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            log.info("Loaded {} forum post vectors from {}", stored.size(), indexFile);
+        } catch (Exception e) {
+            log.warn("Failed to load forum post vectors: {}", e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void catchUpOnStartup() {
+        indexer.execute(this::indexMissingPosts);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        indexer.shutdownNow();
+    }
+
+    @EventListener
+    void onKnowledgeChanged(KnowledgeBaseChangedEvent event) {
+        indexKnowledge(event.snapshot(), event.changedKeys());
+    }
+
+    /**
+     * Re-indexes the sections of the given entries from the snapshot; entries
+     * no longer in the snapshot are dropped.
+     */
+    public void indexKnowledge(KnowledgeIndex snapshot, Collection<String> keys) {
+        writeLock.lock();
+        try {
+            Graph g = graph;
+            int added = 0;
+            for (String key : keys) {
+                for (int node : knowledgeNodes.getOrDefault(key, List.of())) {
+                    g.index().remove(node);
+                    g.docs().remove(node);
+                }
+                knowledgeNodes.remove(key);
+
+                List<Integer> nodes = new ArrayList<>();
+                for (KnowledgeSectionRanker.Section section : snapshot.sections(key)) {
+                    String title = key + (section.heading() != null ? " / " + section.heading() : "");
+                    int node = g.index().add(embedder.embed(key.replace('_', ' ') + "\n" + section.text()));
+                    g.docs().put(node, new Doc(SOURCE_KNOWLEDGE, key, title, section.text()));
+                    nodes.add(node);
+                }
+                if (!nodes.isEmpty()) knowledgeNodes.put(key, nodes);
+                added += nodes.size();
+            }
+            log.info("Indexed {} knowledge sections for retrieval ({} entries)", added, keys.size());
+            compactIfNeeded();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the graph without its tombstones once they pass the configured
+     * fraction. Caller holds writeLock; searches keep using the old graph
+     * until the new one is swapped in.
+     */
+    private void compactIfNeeded() {
+        HnswIndex index = graph.index();
+        int removed = index.removedCount();
+        if (removed == 0 || removed < compactRemovedFraction * index.size()) return;
+
+        HnswIndex.Compacted compacted = index.compacted();
+        int[] newIds = compacted.newIds();
+        Map<Integer, Doc> docs = new ConcurrentHashMap<>();
+        graph.docs().forEach((node, doc) -> {
+            if (newIds[node] >= 0) docs.put(newIds[node], doc);
+        });
+        knowledgeNodes.replaceAll((key, nodes) -> nodes.stream().map(node -> newIds[node]).toList());
+
+        graph = new Graph(compacted.index(), docs);
+        log.info("Compacted retrieval index: dropped {} removed nodes, {} remain",
+                removed, compacted.index().size());
+    }
+
+    /**
+     * Queues a newly created forum post for indexing; returns immediately.
+     */
+    public void indexPost(Long postId, String title, String content) {
+        indexer.execute(() -> {
+            try {
+                addPost(postId, title, content);
+            } catch (Exception e) {
+                log.warn("Failed to index forum post {}: {}", postId, e.getMessage());
+            }
+        });
+    }
+
+    public List<Passage> search(String query, int k) {
+        return search(query, k, null);
+    }
+
+    /**
+     * Top-k passages for the query with similarity >= retrieval.min-score,
+     * optionally restricted to one source.
+     */
+    public List<Passage> search(String query, int k, String source) {
+        if (query == null || query.isBlank() || k <= 0) return List.of();
+
+        return searchTimer.record(() -> {
+            float[] vector = embedder.embed(query);
+            // Over-fetch when filtering by source so the filter still leaves k results
+            int fetch = source == null ? k : k * 4;
+            List<Passage> passages = new ArrayList<>(k);
+            Graph g = graph;
+            for (HnswIndex.Hit hit : g.index().search(vector, fetch, Math.max(efSearch, fetch))) {
+                if (hit.score() < minScore) break;
+                Doc doc = g.docs().get(hit.node());
+                if (doc == null || (source != null && !source.equals(doc.source()))) continue;
+                passages.add(new Passage(doc.source(), doc.ref(), doc.title(), doc.text(), hit.score()));
+                if (passages.size() == k) break;
+            }
+            return passages;
+        });
+    }
+
+    private void indexMissingPosts() {
+        long afterId = 0;
+        int added = 0;
+        try {
+            while (true) {
+                List<ForumPost> batch = postRepo.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, CATCH_UP_BATCH));
+                if (batch.isEmpty()) break;
+                for (ForumPost post : batch) {
+                    if (addPost(post.getId(), post.getTitle(), post.getContent())) added++;
+                    afterId = post.getId();
+                }
+            }
+            if (added > 0) {
+                log.info("Indexed {} forum posts missing from {}", added, indexFile);
+            }
+        } catch (Exception e) {
+            log.warn("Forum post catch-up indexing stopped after post {}: {}", afterId, e.getMessage());
+        }
+    }
+
+    private boolean addPost(Long postId, String title, String content) throws Exception {
+        if (!indexedPostIds.add(postId)) return false;
+
+        String safeTitle = title == null ? "" : title.replace('\n', ' ');
+        String body = content == null ? "" : content;
+        float[] vector = embedder.embed(safeTitle + "\n" + body);
+        String stored = body.length() > MAX_STORED_CHARS ? body.substring(0, MAX_STORED_CHARS) : body;
+
+        writeLock.lock();
+        try {
+            Graph g = graph;
+            int node = g.index().add(vector);
+            g.docs().put(node, new Doc(SOURCE_FORUM, String.valueOf(postId), safeTitle, stored));
+        } finally {
+            writeLock.unlock();
+        }
+        vectorFile.append(new VectorIndexFile.Entry(postId, safeTitle + "\n" + stored, vector));
+        return true;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.agriverse.service.retrieval;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only store of embedded forum posts, read back through a memory mapping
+ * so startup does not re-embed or re-query every post.
+ *
+ * Layout: header [int magic][int embedder version][int dimension], then one
+ * record per post: [long post id][int text bytes][UTF-8 text][float x dimension].
+ * A header mismatch (embedder changed) discards the file; a torn last record
+ * (crash mid-append) is truncated away.
+ */
+@Slf4j
+final class VectorIndexFile {
+
+    private static final int MAGIC = 0x41475658; // "AGVX"
+    private static final int HEADER_BYTES = 12;
+
+    record Entry(long postId, String text, float[] vector) {}
+
+    private final Path path;
+    private final int embedderVersion;
+    private final int dimension;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    VectorIndexFile(Path path, int embedderVersion, int dimension) {
+        this.path = path;
+        this.embedderVersion = embedderVersion;
+        this.dimension = dimension;
+    }
+
+    List<Entry> load() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.exists(path)) return entries;
+
+        long validEnd;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                reset();
+                return entries;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != embedderVersion || buffer.getInt() != dimension) {
+                log.info("Vector index file {} was written by another embedder, rebuilding", path);
+                reset();
+                return entries;
+            }
+
+            validEnd = buffer.position();
+            while (buffer.remaining() >= Long.BYTES + Integer.BYTES) {
+                long postId = buffer.getLong();
+                int textBytes = buffer.getInt();
+                if (textBytes < 0 || buffer.remaining() < textBytes + (long) dimension * Float.BYTES) break;
+
+                byte[] text = new byte[textBytes];
+                buffer.get(text);
+                float[] vector = new float[dimension];
+                buffer.asFloatBuffer().get(vector);
+                buffer.position(buffer.position() + dimension * Float.BYTES);
+
+                entries.add(new Entry(postId, new String(text, StandardCharsets.UTF_8), vector));
+                validEnd = buffer.position();
+            }
+            if (validEnd < size) {
+                log.warn("Vector index file {} has a torn tail, truncating {} bytes", path, size - validEnd);
+            }
+        }
+
+        if (validEnd < Files.size(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(validEnd);
+            }
+        }
+        return entries;
+    }
+
+    void append(Entry entry) throws IOException {
+        byte[] text = entry.text().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + text.length + dimension * Float.BYTES);
+        buffer.putLong(entry.postId());
+        buffer.putInt(text.length);
+        buffer.put(text);
+        for (float v : entry.vector()) buffer.putFloat(v);
+        buffer.flip();
+
+        lock.lock();
+        try {
+            if (!Files.exists(path)) {
+                reset();
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reset() throws IOException {
+        lock.lock();
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(embedderVersion).putInt(dimension).flip();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.agriverse;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP server standing in for Ollama or the ML service in tests.
+ * Each path answers through a {@link Handler}; unknown paths get 404.
+ * Requests are served concurrently, so delayed responses overlap.
+ */
+public final class StubHttpServer implements AutoCloseable {
+
+    public record Response(int status, String body, Duration delay) {
+
+        public static Response json(String body) {
+            return new Response(200, body, Duration.ZERO);
+        }
+
+        public static Response status(int status) {
+            return new Response(status, "{\"error\":\"stub " + status + "\"}", Duration.ZERO);
+        }
+
+        public Response after(Duration delay) {
+            return new Response(status, body, delay);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Handler {
+        Response handle(byte[] requestBody) throws Exception;
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+
+    private StubHttpServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::serve);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public static StubHttpServer start() throws IOException {
+        return new StubHttpServer();
+    }
+
+    public StubHttpServer on(String path, Handler handler) {
+        handlers.put(path, handler);
+        return this;
+    }
+
+    public StubHttpServer on(String path, Response response) {
+        return on(path, body -> response);
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int requests(String path) {
+        AtomicInteger count = requestCounts.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            byte[] requestBody = exchange.getRequestBody().readAllBytes();
+            requestCounts.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+
+            Handler handler = handlers.get(path);
+            Response response;
+            try {
+                response = handler != null ? handler.handle(requestBody) : Response.status(404);
+                if (!response.delay().isZero()) {
+                    Thread.sleep(response.delay().toMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                response = Response.status(500);
+            }
+
+            byte[] bytes = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.status(), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.agriverse.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class ChatAiSchedulerTests {
+
+    private record Call(Long chatRoomId, List<Long> messageIds, AiJobHandle handle) {}
+
+    private final LinkedBlockingQueue<Call> calls = new LinkedBlockingQueue<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ChatAiScheduler scheduler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ChatAiService chatAiService = mock(ChatAiService.class);
+        doAnswer(invocation -> {
+            calls.add(new Call(invocation.getArgument(0), List.copyOf((List<Long>) invocation.getArgument(1)),
+                    invocation.getArgument(2)));
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(chatAiService).generateAndSaveResponse(anyLong(), anyList(), any());
+
+        scheduler = new ChatAiScheduler(chatAiService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduler, "workerCount", 1);
+        ReflectionTestUtils.setField(scheduler, "maxPending", 10);
+        ReflectionTestUtils.setField(scheduler, "maxPendingPerRoom", 3);
+        scheduler.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        scheduler.stop();
+    }
+
+    @Test
+    void questionsQueuedWhileRoomIsBusyAreCoalescedIntoOneJob() throws Exception {
+        assertTrue(scheduler.submit(1L, 10L));
+        Call first = calls.poll(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertEquals(List.of(10L), first.messageIds());
+
+        assertTrue(scheduler.submit(1L, 11L));
+        assertTrue(scheduler.submit(1L, 12L));
+        release.countDown();
+
+        Call second = calls.poll(5, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertEquals(1L, second.chatRoomId());
+        assertEquals(List.of(11L, 12L), second.messageIds());
+        assertNull(calls.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void rejectsQuestionsBeyondTheRoomLimit() throws Exception {
+        assertTrue(scheduler.submit(1L, 10L));
+        assertNotNull(calls.poll(5, TimeUnit.SECONDS));
+
+        assertTrue(scheduler.submit(1L, 11L));
+        assertTrue(scheduler.submit(1L, 12L));
+        assertTrue(scheduler.submit(1L, 13L));
+        assertFalse(scheduler.submit(1L, 14L));
+        // Other rooms have their own allowance
+        assertTrue(scheduler.submit(2L, 20L));
+    }
+
+    @Test
+    void cancelRoomCancelsRunningJobAndDropsPendingQuestions() throws Exception {
+        assertTrue(scheduler.submit(1L, 10L));
+        Call running = calls.poll(5, TimeUnit.SECONDS);
+        assertNotNull(running);
+        assertTrue(scheduler.submit(1L, 11L));
+
+        scheduler.cancelRoom(1L);
+        assertTrue(running.handle().isCancelled());
+
+        release.countDown();
+        assertNull(calls.poll(200, TimeUnit.MILLISECONDS));
+    }
+}
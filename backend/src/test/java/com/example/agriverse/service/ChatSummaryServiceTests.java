@@ -0,0 +1,89 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.repository.ChatMessageRepository;
+import com.example.agriverse.repository.ChatRoomRepository;
+import com.example.agriverse.repository.ChatRoomSummaryRepository;
+import com.example.agriverse.service.llm.LlmGateway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatSummaryServiceTests {
+
+    // Capacity of the summary executor's queue
+    private static final int QUEUE_CAPACITY = 200;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger refreshes = new AtomicInteger();
+    private ChatSummaryService service;
+
+    @BeforeEach
+    void setUp() {
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        // Each refresh starts by collecting a batch; returning null ends it there
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            refreshes.incrementAndGet();
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        service = new ChatSummaryService(mock(LlmGateway.class), mock(ChatRoomRepository.class),
+                mock(ChatMessageRepository.class), mock(ChatRoomSummaryRepository.class), transactionTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    private void awaitRefreshes(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (refreshes.get() < expected) {
+            if (System.nanoTime() > deadline) fail("expected " + expected + " refreshes, got " + refreshes.get());
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void roomDroppedByAFullQueueIsRefreshedWhenAskedAgain() throws Exception {
+        service.requestRefresh(0L);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // The summary thread is busy with room 0: fill its queue, then overflow it by one room
+        for (long room = 1; room <= QUEUE_CAPACITY + 1; room++) {
+            service.requestRefresh(room);
+        }
+        release.countDown();
+        awaitRefreshes(1 + QUEUE_CAPACITY);
+
+        // The overflowing room was not left marked as queued
+        service.requestRefresh(QUEUE_CAPACITY + 1L);
+        awaitRefreshes(2 + QUEUE_CAPACITY);
+    }
+
+    @Test
+    void roomAlreadyQueuedIsNotQueuedTwice() throws Exception {
+        service.requestRefresh(0L);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        service.requestRefresh(1L);
+        service.requestRefresh(1L);
+        release.countDown();
+        awaitRefreshes(2);
+
+        Thread.sleep(100);
+        assertEquals(2, refreshes.get());
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.dto.ml.MlPredictionResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeafPrefilterTests {
+
+    private LeafPrefilter prefilter;
+
+    @BeforeEach
+    void setUp() {
+        prefilter = new LeafPrefilter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(prefilter, "enabled", true);
+        ReflectionTestUtils.setField(prefilter, "minGreenRatio", 0.01);
+    }
+
+    private static BufferedImage filled(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    void sizeIsCheckedAgainstTheUploadedImage() {
+        BufferedImage downscaled = filled(30, 20, new Color(40, 140, 40));
+
+        // A large photo downscaled below the minimum is not "too small"
+        assertNull(prefilter.check(downscaled, 3000, 2000));
+
+        MlPredictionResponse rejected = prefilter.check(downscaled, 30, 20);
+        assertNotNull(rejected);
+        assertEquals(Boolean.FALSE, rejected.is_leaf);
+        assertEquals("Image too small.", rejected.reason);
+    }
+
+    @Test
+    void rejectsImagesWithoutGreen() {
+        MlPredictionResponse rejected = prefilter.check(filled(200, 200, new Color(200, 60, 160)), 200, 200);
+
+        assertNotNull(rejected);
+        assertEquals("Not enough green/leaf pixels.", rejected.reason);
+    }
+
+    @Test
+    void passesGreenImagesAndUndecodedOnes() {
+        assertNull(prefilter.check(filled(200, 200, new Color(40, 140, 40)), 200, 200));
+        assertNull(prefilter.check(null, 0, 0));
+    }
+
+    @Test
+    void disabledPrefilterPassesEverything() {
+        ReflectionTestUtils.setField(prefilter, "enabled", false);
+
+        assertNull(prefilter.check(filled(10, 10, Color.BLACK), 10, 10));
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.StubHttpServer;
+import com.example.agriverse.StubHttpServer.Response;
+import com.example.agriverse.dto.ml.MlPredictionResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MlPredictionBatcherTests {
+
+    private static final String PREDICTION = "{\"is_leaf\":true,\"prediction\":\"Tomato___healthy\",\"confidence\":0.9}";
+
+    private StubHttpServer ml;
+    private WebClient client;
+    private MlPredictionBatcher batcher;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        ml = StubHttpServer.start();
+        client = WebClient.builder().baseUrl(ml.baseUrl()).build();
+    }
+
+    @AfterEach
+    void stop() {
+        if (batcher != null) batcher.shutdown();
+        ml.close();
+    }
+
+    private MlPredictionBatcher batcher(int maxConcurrentBatches) {
+        batcher = new MlPredictionBatcher(client,
+                image -> client.post().uri("/predict").bodyValue("image")
+                        .retrieve().bodyToMono(MlPredictionResponse.class),
+                8, Duration.ofMillis(15), maxConcurrentBatches);
+        return batcher;
+    }
+
+    private static Response batchResponse(byte[] body) {
+        String multipart = new String(body, StandardCharsets.ISO_8859_1);
+        int images = multipart.split("name=\"images\"", -1).length - 1;
+        return Response.json("{\"results\":[" + String.join(",", java.util.Collections.nCopies(images, PREDICTION)) + "]}");
+    }
+
+    private static MlPredictionService.ImagePart image(String name) {
+        return new MlPredictionService.ImagePart(name.getBytes(StandardCharsets.UTF_8), name + ".jpg", "image/jpeg");
+    }
+
+    private static void awaitRequests(StubHttpServer server, String path, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.requests(path) < expected) {
+            if (System.nanoTime() > deadline) fail("expected " + expected + " requests to " + path);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void keepsWorkingWhenWindowClosesWhileAllBatchSlotsAreBusy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ml.on("/predict-batch", body -> {
+            release.await(5, TimeUnit.SECONDS);
+            return batchResponse(body);
+        });
+        MlPredictionBatcher batcher = batcher(2);
+
+        CompletableFuture<MlPredictionResponse> a = batcher.submit(image("a")).toFuture();
+        awaitRequests(ml, "/predict-batch", 1);
+        CompletableFuture<MlPredictionResponse> b = batcher.submit(image("b")).toFuture();
+        awaitRequests(ml, "/predict-batch", 2);
+
+        // Both batch slots are held; several windows close with no demand downstream
+        CompletableFuture<MlPredictionResponse> c = batcher.submit(image("c")).toFuture();
+        CompletableFuture<MlPredictionResponse> d = batcher.submit(image("d")).toFuture();
+        Thread.sleep(100);
+        release.countDown();
+
+        for (CompletableFuture<MlPredictionResponse> result : List.of(a, b, c, d)) {
+            MlPredictionResponse response = result.get(5, TimeUnit.SECONDS);
+            assertEquals("Tomato___healthy", response.prediction);
+        }
+
+        // And the pipeline still takes new images afterwards
+        assertEquals("Tomato___healthy", batcher.submit(image("e")).block(Duration.ofSeconds(5)).prediction);
+    }
+
+    @Test
+    void imagesSubmittedTogetherShareOneBatch() throws Exception {
+        ml.on("/predict-batch", MlPredictionBatcherTests::batchResponse);
+        MlPredictionBatcher batcher = batcher(2);
+
+        List<MlPredictionResponse> results = Mono.zip(
+                        Stream.of("a", "b", "c").map(name -> batcher.submit(image(name))).toList(),
+                        values -> Stream.of(values).map(MlPredictionResponse.class::cast).toList())
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(3, results.size());
+        assertEquals(1, ml.requests("/predict-batch"));
+    }
+
+    @Test
+    void inBandErrorsLookLikeSingleImageErrors() {
+        ml.on("/predict-batch", Response.json("{\"results\":[" + PREDICTION
+                + ",{\"error\":\"Failed to read image.\"},{\"error\":\"model crashed\"}],\"statuses\":[200,400,500]}"));
+        MlPredictionBatcher batcher = batcher(2);
+
+        List<MlPredictionResponse> results = Mono.zip(
+                        Stream.of("a", "b", "c").map(name -> batcher.submit(image(name))).toList(),
+                        values -> Stream.of(values).map(MlPredictionResponse.class::cast).toList())
+                .block(Duration.ofSeconds(5));
+
+        assertNull(results.get(0).error);
+        assertEquals("ML service error (400): Failed to read image.", results.get(1).error);
+        assertFalse(MlPredictionService.isTransientError(results.get(1)));
+        assertEquals("ML service error (500): model crashed", results.get(2).error);
+        assertTrue(MlPredictionService.isTransientError(results.get(2)));
+    }
+
+    @Test
+    void inBandErrorWithoutStatusesCountsAsServiceFailure() {
+        ml.on("/predict-batch", Response.json("{\"results\":[{\"error\":\"model crashed\"}]}"));
+        MlPredictionBatcher batcher = batcher(2);
+
+        MlPredictionResponse result = batcher.submit(image("a")).block(Duration.ofSeconds(5));
+
+        assertEquals("ML service error (500): model crashed", result.error);
+        assertTrue(MlPredictionService.isTransientError(result));
+    }
+
+    @Test
+    void fallsBackToSingleImageCallsWithoutBatchEndpoint() {
+        ml.on("/predict", Response.json(PREDICTION));
+        MlPredictionBatcher batcher = batcher(2);
+
+        assertEquals("Tomato___healthy", batcher.submit(image("a")).block(Duration.ofSeconds(5)).prediction);
+        assertEquals("Tomato___healthy", batcher.submit(image("b")).block(Duration.ofSeconds(5)).prediction);
+
+        assertEquals(1, ml.requests("/predict-batch"));
+        assertEquals(2, ml.requests("/predict"));
+    }
+
+    @Test
+    void failsFastOnceShutDown() {
+        MlPredictionBatcher batcher = batcher(2);
+        batcher.shutdown();
+
+        long start = System.nanoTime();
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> batcher.submit(image("a")).toFuture().get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+}
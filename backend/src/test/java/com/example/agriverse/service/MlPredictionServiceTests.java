@@ -0,0 +1,33 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.dto.ml.MlPredictionResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MlPredictionServiceTests {
+
+    private static MlPredictionResponse error(String error) {
+        MlPredictionResponse response = new MlPredictionResponse();
+        response.error = error;
+        return response;
+    }
+
+    @Test
+    void serviceSideFailuresAreTransient() {
+        assertTrue(MlPredictionService.isTransientError(error("ML service timed out after 30000 ms")));
+        assertTrue(MlPredictionService.isTransientError(error("ML service unavailable: Connection refused")));
+        assertTrue(MlPredictionService.isTransientError(error("ML service unavailable: ml-service concurrency limit reached")));
+        assertTrue(MlPredictionService.isTransientError(error("ML service error (503): overloaded")));
+        assertTrue(MlPredictionService.isTransientError(error("ML service error (429): ")));
+    }
+
+    @Test
+    void rejectedImagesAreNotTransient() {
+        assertFalse(MlPredictionService.isTransientError(error("ML service error (400): invalid image")));
+        assertFalse(MlPredictionService.isTransientError(error("ML service error (413): too large")));
+        assertFalse(MlPredictionService.isTransientError(error("The image expired before it was processed")));
+        assertFalse(MlPredictionService.isTransientError(new MlPredictionResponse()));
+        assertFalse(MlPredictionService.isTransientError(null));
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.StubHttpServer;
+import com.example.agriverse.StubHttpServer.Response;
+import com.example.agriverse.dto.ml.MlPredictionResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MlRequestHedgerTests {
+
+    private static final MlPredictionService.ImagePart IMAGE =
+            new MlPredictionService.ImagePart("leaf".getBytes(StandardCharsets.UTF_8), "leaf.jpg", "image/jpeg");
+
+    private StubHttpServer replica;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        replica = StubHttpServer.start();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void stopStub() {
+        replica.close();
+    }
+
+    private MlRequestHedger hedger(int minSamples) {
+        return new MlRequestHedger(List.of(WebClient.builder().baseUrl(replica.baseUrl()).build()),
+                (client, image) -> client.post().uri("/predict").retrieve().bodyToMono(MlPredictionResponse.class),
+                0.95, Duration.ofMillis(50), minSamples, 0.1, meterRegistry);
+    }
+
+    private static MlPredictionResponse prediction(String label) {
+        MlPredictionResponse response = new MlPredictionResponse();
+        response.is_leaf = true;
+        response.prediction = label;
+        return response;
+    }
+
+    private static void warmUp(MlRequestHedger hedger, int calls) {
+        for (int i = 0; i < calls; i++) {
+            hedger.hedge(IMAGE, Mono.just(prediction("primary"))).block(Duration.ofSeconds(5));
+        }
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private double delayMs() {
+        return meterRegistry.get("ml.hedge.delay").gauge().value();
+    }
+
+    @Test
+    void slowPrimaryIsBeatenByTheHedge() {
+        replica.on("/predict", Response.json("{\"is_leaf\":true,\"prediction\":\"hedge\"}"));
+        MlRequestHedger hedger = hedger(5);
+        warmUp(hedger, 5);
+
+        MlPredictionResponse result = hedger.hedge(IMAGE,
+                        Mono.delay(Duration.ofSeconds(3)).map(tick -> prediction("primary")))
+                .block(Duration.ofSeconds(5));
+
+        assertEquals("hedge", result.prediction);
+        assertEquals(1.0, count("ml.hedge.sent"));
+        assertEquals(1.0, count("ml.hedge.won"));
+    }
+
+    @Test
+    void noHedgeBeforeEnoughSamples() {
+        MlRequestHedger hedger = hedger(5);
+        warmUp(hedger, 4);
+
+        MlPredictionResponse result = hedger.hedge(IMAGE,
+                        Mono.delay(Duration.ofMillis(200)).map(tick -> prediction("primary")))
+                .block(Duration.ofSeconds(5));
+
+        assertEquals("primary", result.prediction);
+        assertEquals(0.0, count("ml.hedge.sent"));
+        assertEquals(0, replica.requests("/predict"));
+    }
+
+    @Test
+    void failedHedgeLeavesThePrimaryToAnswer() {
+        replica.on("/predict", Response.status(500));
+        MlRequestHedger hedger = hedger(5);
+        warmUp(hedger, 5);
+
+        MlPredictionResponse result = hedger.hedge(IMAGE,
+                        Mono.delay(Duration.ofMillis(300)).map(tick -> prediction("primary")))
+                .block(Duration.ofSeconds(5));
+
+        assertEquals("primary", result.prediction);
+        assertEquals(1.0, count("ml.hedge.sent"));
+        assertEquals(0.0, count("ml.hedge.won"));
+    }
+
+    @Test
+    void primaryCancelledByTheCallerIsNotASample() {
+        MlRequestHedger hedger = hedger(1);
+
+        // E.g. the per-image timeout: says nothing about how slow the call would have been
+        Disposable abandoned = hedger.hedge(IMAGE, Mono.never()).subscribe();
+        abandoned.dispose();
+        assertEquals(0.0, delayMs());
+
+        hedger.hedge(IMAGE, Mono.delay(Duration.ofMillis(20)).map(tick -> prediction("primary")))
+                .block(Duration.ofSeconds(5));
+        assertTrue(delayMs() > 0);
+    }
+}
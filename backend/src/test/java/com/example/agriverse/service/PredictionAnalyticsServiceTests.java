@@ -0,0 +1,33 @@
+package com.example.agriverse.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PredictionAnalyticsServiceTests {
+
+    @Test
+    void matchesTheDiseasePartIgnoringCaseAndPunctuation() {
+        assertTrue(PredictionAnalyticsService.matches("Tomato___Early_blight", "Early Blight"));
+        assertTrue(PredictionAnalyticsService.matches("Tomato___Early_blight", "early-blight"));
+    }
+
+    @Test
+    void matchesTheWholeLabel() {
+        assertTrue(PredictionAnalyticsService.matches("Tomato___Early_blight", "tomato early blight"));
+        assertTrue(PredictionAnalyticsService.matches("Tomato___healthy", "Tomato Healthy"));
+    }
+
+    @Test
+    void labelWithoutCropPartIsComparedWhole() {
+        assertTrue(PredictionAnalyticsService.matches("Background_without_leaves", "background without leaves"));
+    }
+
+    @Test
+    void differentOrBlankReviewDoesNotMatch() {
+        assertFalse(PredictionAnalyticsService.matches("Tomato___Early_blight", "Late blight"));
+        assertFalse(PredictionAnalyticsService.matches("Tomato___Early_blight", "Tomato"));
+        assertFalse(PredictionAnalyticsService.matches("Tomato___Early_blight", " - "));
+        assertFalse(PredictionAnalyticsService.matches("Tomato___Early_blight", null));
+    }
+}
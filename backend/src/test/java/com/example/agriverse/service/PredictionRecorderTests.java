@@ -0,0 +1,90 @@
+package com.example.agriverse.service;
+
+import com.example.agriverse.dto.ml.MlPredictionResponse;
+import com.example.agriverse.model.Prediction;
+import com.example.agriverse.repository.PredictionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PredictionRecorderTests {
+
+    private PredictionRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+    private PredictionRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(PredictionRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        recorder = new PredictionRecorder(repository, meterRegistry, 2);
+        ReflectionTestUtils.setField(recorder, "batchSize", 10);
+        ReflectionTestUtils.setField(recorder, "flushIntervalMs", 20L);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (ReflectionTestUtils.getField(recorder, "writer") != null) recorder.stop();
+    }
+
+    private static MlPredictionResponse prediction() {
+        MlPredictionResponse response = new MlPredictionResponse();
+        response.is_leaf = true;
+        response.prediction = "Tomato___healthy";
+        response.confidence = 0.9;
+        return response;
+    }
+
+    @Test
+    void failedBatchIsRetriedRowByRow() {
+        when(repository.saveAll(anyList())).thenThrow(new RuntimeException("duplicate key"));
+        when(repository.save(argThat((Prediction p) -> p != null && p.getId() == 2L)))
+                .thenThrow(new RuntimeException("duplicate key"));
+        recorder.start();
+
+        assertTrue(recorder.record(1, "h1", "a.jpg", prediction()));
+        assertTrue(recorder.record(2, "h2", "b.jpg", prediction()));
+
+        verify(repository, timeout(2000).times(2)).save(any(Prediction.class));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (meterRegistry.counter("predictions.dropped").count() < 1 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(1.0, meterRegistry.counter("predictions.written").count());
+        assertEquals(1.0, meterRegistry.counter("predictions.dropped").count());
+    }
+
+    @Test
+    void errorResponsesAreNotRecorded() {
+        MlPredictionResponse error = new MlPredictionResponse();
+        error.error = "ML service timed out";
+
+        assertFalse(recorder.record(1, "h1", "a.jpg", error));
+        assertFalse(recorder.record(2, "h2", "b.jpg", null));
+    }
+
+    @Test
+    void fullQueueRefusesTheRecord() {
+        // Writer not started: the queue (capacity 2) only fills up
+        assertTrue(recorder.record(1, "h1", "a.jpg", prediction()));
+        assertTrue(recorder.record(2, "h2", "b.jpg", prediction()));
+
+        assertFalse(recorder.record(3, "h3", "c.jpg", prediction()));
+        assertEquals(1.0, meterRegistry.counter("predictions.dropped").count());
+        verify(repository, times(0)).saveAll(anyList());
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.agriverse.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UploadTokenServiceTests {
+
+    private static final String SECRET = "test-secret-test-secret-test-secret";
+
+    private FileStorageService storage;
+    private UploadTokenService tokens;
+
+    @BeforeEach
+    void setUp() {
+        storage = mock(FileStorageService.class);
+        when(storage.savePending(any(), eq("leaf.jpg"))).thenReturn("pending-1.jpg");
+        when(storage.promotePending("pending-1.jpg")).thenReturn("/api/files/pending-1.jpg");
+        tokens = new UploadTokenService(storage, new PredictionIdGenerator(), SECRET, 24);
+    }
+
+    private static MultipartFile leaf() {
+        return new MockMultipartFile("image", "leaf.jpg", "image/jpeg", "leaf-bytes".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void storedTokenClaimsTheStoredFile() {
+        UploadTokenService.StoredUpload upload = tokens.store(List.of(leaf())).get(0);
+
+        List<UploadTokenService.ClaimedUpload> claimed = tokens.claim(List.of(upload.token()));
+
+        assertEquals(1, claimed.size());
+        assertEquals("/api/files/pending-1.jpg", claimed.get(0).imageUrl());
+        assertEquals(upload.predictionId(), claimed.get(0).predictionId());
+        assertEquals("pending-1.jpg", upload.filename());
+        assertEquals(64, upload.imageHash().length());
+    }
+
+    @Test
+    void tamperedPayloadIsRejected() {
+        String token = tokens.store(List.of(leaf())).get(0).token();
+        String[] parts = token.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8);
+        String forged = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(payload.replace("pending-1.jpg", "other.jpg").getBytes(StandardCharsets.UTF_8))
+                + "." + parts[1];
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> tokens.claim(List.of(forged)));
+        assertEquals("Invalid upload token", e.getMessage());
+        verify(storage, never()).promotePending(any());
+    }
+
+    @Test
+    void tokenSignedWithAnotherSecretIsRejected() {
+        UploadTokenService other = new UploadTokenService(storage, new PredictionIdGenerator(), "another-secret", 24);
+        String token = other.store(List.of(leaf())).get(0).token();
+
+        assertThrows(RuntimeException.class, () -> tokens.claim(List.of(token)));
+    }
+
+    @Test
+    void malformedTokenIsRejected() {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> tokens.claim(List.of("not-a-token")));
+        assertEquals("Invalid upload token", e.getMessage());
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        UploadTokenService shortLived = new UploadTokenService(storage, new PredictionIdGenerator(), SECRET, -1);
+        String token = shortLived.store(List.of(leaf())).get(0).token();
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> tokens.claim(List.of(token)));
+        assertTrue(e.getMessage().contains("expired"));
+        verify(storage, never()).promotePending(any());
+    }
+
+    @Test
+    void imageThatCannotBeStoredGetsNullEntry() {
+        when(storage.savePending(any(), eq("broken.jpg"))).thenThrow(new RuntimeException("Failed to store file"));
+        MultipartFile broken = new MockMultipartFile("image", "broken.jpg", "image/jpeg", new byte[] {1});
+
+        List<UploadTokenService.StoredUpload> uploads = tokens.store(List.of(broken, leaf()));
+
+        assertNull(uploads.get(0));
+        assertNotNull(uploads.get(1));
+    }
+
+    @Test
+    void blankTokensAreSkipped() {
+        assertTrue(tokens.claim(List.of("", " ")).isEmpty());
+        assertTrue(tokens.claim(null).isEmpty());
+    }
+}
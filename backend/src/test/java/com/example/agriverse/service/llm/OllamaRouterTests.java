@@ -0,0 +1,163 @@
+package com.example.agriverse.service.llm;
+
+import com.example.agriverse.StubHttpServer;
+import com.example.agriverse.StubHttpServer.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routing, capacity, circuit breaking and health ejection against two local
+ * stub Ollama instances.
+ */
+class OllamaRouterTests {
+
+    private static final String GENERATE = "/api/generate";
+    private static final Map<String, Object> PAYLOAD = Map.of("model", "stub", "prompt", "hi");
+
+    private StubHttpServer a;
+    private StubHttpServer b;
+
+    @BeforeEach
+    void startStubs() throws IOException {
+        a = StubHttpServer.start();
+        b = StubHttpServer.start();
+    }
+
+    @AfterEach
+    void stopStubs() {
+        a.close();
+        b.close();
+    }
+
+    private OllamaRouter router(int maxConcurrent, Duration acquireTimeout, int failureThreshold) {
+        return new OllamaRouter(WebClient.builder().build(), List.of(a.baseUrl(), b.baseUrl() + "/"),
+                new OllamaRouter.Settings(maxConcurrent, acquireTimeout, Duration.ofSeconds(5),
+                        failureThreshold, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void concurrentCallsAreSpreadOverInstances() {
+        Response slow = Response.json("{\"response\":\"ok\"}").after(Duration.ofMillis(300));
+        a.on(GENERATE, slow);
+        b.on(GENERATE, slow);
+        OllamaRouter router = router(1, Duration.ZERO, 3);
+
+        List<String> results = Flux.merge(router.post(GENERATE, PAYLOAD), router.post(GENERATE, PAYLOAD))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(2, results.size());
+        assertEquals(1, a.requests(GENERATE));
+        assertEquals(1, b.requests(GENERATE));
+    }
+
+    @Test
+    void failsFastWhenEveryInstanceIsAtCapacity() {
+        Response slow = Response.json("{}").after(Duration.ofMillis(500));
+        a.on(GENERATE, slow);
+        b.on(GENERATE, slow);
+        OllamaRouter router = router(1, Duration.ZERO, 3);
+
+        Mono<String> first = router.post(GENERATE, PAYLOAD);
+        Mono<String> second = router.post(GENERATE, PAYLOAD);
+        Mono<String> third = router.post(GENERATE, PAYLOAD);
+
+        List<Object> outcomes = Flux.merge(first, second, third.cast(Object.class)
+                        .onErrorResume(e -> Mono.just(e)))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(1, outcomes.stream().filter(o -> o instanceof LlmUnavailableException).count());
+    }
+
+    @Test
+    void failingInstanceIsTrippedAndSkipped() {
+        a.on(GENERATE, Response.status(500));
+        b.on(GENERATE, Response.json("{\"response\":\"ok\"}"));
+        OllamaRouter router = router(2, Duration.ZERO, 2);
+
+        int succeeded = 0;
+        for (int i = 0; i < 6; i++) {
+            String result = router.post(GENERATE, PAYLOAD)
+                    .onErrorResume(e -> Mono.empty())
+                    .block(Duration.ofSeconds(5));
+            if (result != null) succeeded++;
+        }
+
+        assertEquals(2, a.requests(GENERATE), "breaker opens after two failures");
+        assertEquals(4, succeeded);
+        assertEquals(4, b.requests(GENERATE));
+    }
+
+    @Test
+    void clientErrorsDoNotTripTheBreaker() {
+        a.on(GENERATE, Response.status(400));
+        // The slot is released just after the caller sees the error: wait for it rather than fail fast
+        OllamaRouter router = new OllamaRouter(WebClient.builder().build(), List.of(a.baseUrl()),
+                new OllamaRouter.Settings(1, Duration.ofSeconds(2), Duration.ofSeconds(5), 1, Duration.ofMinutes(1)));
+
+        for (int i = 0; i < 3; i++) {
+            router.post(GENERATE, PAYLOAD).onErrorResume(e -> Mono.empty()).block(Duration.ofSeconds(5));
+        }
+        assertEquals(3, a.requests(GENERATE));
+    }
+
+    @Test
+    void instanceFailingHealthCheckIsEjected() throws InterruptedException {
+        // Only b answers /api/tags
+        b.on("/api/tags", Response.json("{\"models\":[]}"));
+        a.on(GENERATE, Response.json("{\"response\":\"a\"}"));
+        b.on(GENERATE, Response.json("{\"response\":\"b\"}"));
+        OllamaRouter router = router(2, Duration.ZERO, 3);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        router.registerMetrics(registry);
+
+        router.probeHealth();
+        awaitAvailable(registry, a.baseUrl(), 0);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("{\"response\":\"b\"}", router.post(GENERATE, PAYLOAD).block(Duration.ofSeconds(5)));
+        }
+        assertEquals(0, a.requests(GENERATE));
+        assertEquals(1, available(registry, b.baseUrl()));
+    }
+
+    @Test
+    void noHealthyInstanceFailsWithLlmUnavailable() throws InterruptedException {
+        OllamaRouter router = router(2, Duration.ZERO, 3);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        router.registerMetrics(registry);
+
+        router.probeHealth();
+        awaitAvailable(registry, a.baseUrl(), 0);
+        awaitAvailable(registry, b.baseUrl(), 0);
+
+        assertThrows(LlmUnavailableException.class,
+                () -> router.post(GENERATE, PAYLOAD).block(Duration.ofSeconds(5)));
+    }
+
+    private static double available(SimpleMeterRegistry registry, String instance) {
+        return registry.get("ollama.instance.available").tag("instance", instance).gauge().value();
+    }
+
+    private static void awaitAvailable(SimpleMeterRegistry registry, String instance, double expected)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (available(registry, instance) != expected) {
+            if (System.nanoTime() > deadline) fail(instance + " availability did not become " + expected);
+            Thread.sleep(20);
+        }
+    }
+}
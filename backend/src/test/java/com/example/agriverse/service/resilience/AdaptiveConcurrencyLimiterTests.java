@@ -0,0 +1,87 @@
+package com.example.agriverse.service.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTests {
+
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static AdaptiveConcurrencyLimiter limiter(int initial, int min, int max) {
+        return new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyLimiter.Settings(initial, min, max, 0.5, SLOW));
+    }
+
+    @Test
+    void rejectsCallsOverTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1, 10);
+
+        assertEquals(1, limiter.tryAcquire());
+        assertEquals(2, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.onIgnored();
+        assertEquals(2, limiter.tryAcquire());
+    }
+
+    @Test
+    void fastCallsUnderLoadRaiseTheLimitUpToMax() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1, 3);
+
+        limiter.tryAcquire();
+        int inFlightAtStart = limiter.tryAcquire();
+        limiter.onSample(FAST, inFlightAtStart);
+        assertEquals(3, limiter.getLimit());
+
+        limiter.onSample(FAST, inFlightAtStart);
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void fastCallsWhileMostlyIdleLeaveTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 1, 16);
+
+        limiter.onSample(FAST, limiter.tryAcquire());
+
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void slowCallsAndDropsBackOffDownToMin() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 2, 16);
+
+        limiter.onSample(SLOW + 1, limiter.tryAcquire());
+        assertEquals(4, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.onDropped();
+        assertEquals(2, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.onDropped();
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void ignoredCallsOnlyReleaseTheirPermit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 1, 16);
+
+        limiter.tryAcquire();
+        limiter.onIgnored();
+
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void initialLimitIsClampedToBounds() {
+        assertEquals(16, limiter(100, 1, 16).getLimit());
+        assertEquals(2, limiter(0, 2, 16).getLimit());
+    }
+}
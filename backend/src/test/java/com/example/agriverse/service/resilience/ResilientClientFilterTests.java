@@ -0,0 +1,126 @@
+package com.example.agriverse.service.resilience;
+
+import com.example.agriverse.StubHttpServer;
+import com.example.agriverse.StubHttpServer.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrency limit and circuit breaker of the filter against a local stub.
+ */
+class ResilientClientFilterTests {
+
+    private static final String PATH = "/predict";
+
+    private StubHttpServer server;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = StubHttpServer.start();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.close();
+    }
+
+    private WebClient client(int limit, int failureThreshold) {
+        ResilientClientFilter filter = new ResilientClientFilter("test", new ResilientClientFilter.Settings(
+                new AdaptiveConcurrencyLimiter.Settings(limit, limit, limit, 0.5, TimeUnit.SECONDS.toNanos(5)),
+                failureThreshold, Duration.ofMinutes(1)), meterRegistry);
+        return WebClient.builder().baseUrl(server.baseUrl()).filter(filter).build();
+    }
+
+    private static String call(WebClient client) {
+        return client.get().uri(PATH).retrieve().bodyToMono(String.class).block(Duration.ofSeconds(5));
+    }
+
+    // Permits and breaker outcomes are settled when the body completes, just after the caller sees it
+    private void awaitGauge(String name, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get(name).gauge().value() != expected) {
+            if (System.nanoTime() > deadline) fail(name + " did not reach " + expected);
+            Thread.sleep(10);
+        }
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("http.client.rejected").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void callOverTheLimitFailsFastWithoutReachingTheServer() throws Exception {
+        server.on(PATH, Response.json("{}").after(Duration.ofMillis(300)));
+        WebClient client = client(1, 0);
+
+        CompletableFuture<String> first = client.get().uri(PATH).retrieve().bodyToMono(String.class).toFuture();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.requests(PATH) < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThrows(ClientOverloadedException.class, () -> call(client));
+        assertEquals("{}", first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, server.requests(PATH));
+        assertEquals(1.0, rejected("limit"));
+
+        // The first call's permit is returned once its body was read
+        awaitGauge("http.client.concurrency.inflight", 0);
+        assertEquals("{}", call(client));
+    }
+
+    @Test
+    void serverErrorsOpenTheBreaker() throws InterruptedException {
+        server.on(PATH, Response.status(500));
+        WebClient client = client(4, 2);
+
+        assertThrows(WebClientResponseException.class, () -> call(client));
+        assertThrows(WebClientResponseException.class, () -> call(client));
+        awaitGauge("http.client.circuit.open", 1);
+        assertThrows(ClientOverloadedException.class, () -> call(client));
+
+        assertEquals(2, server.requests(PATH));
+        assertEquals(1.0, rejected("circuit-open"));
+        assertEquals(1.0, meterRegistry.get("http.client.circuit.open").gauge().value());
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheBreaker() throws InterruptedException {
+        server.on(PATH, Response.status(400));
+        WebClient client = client(4, 1);
+
+        assertThrows(WebClientResponseException.BadRequest.class, () -> call(client));
+        awaitGauge("http.client.concurrency.inflight", 0);
+        assertThrows(WebClientResponseException.BadRequest.class, () -> call(client));
+        awaitGauge("http.client.concurrency.inflight", 0);
+
+        assertEquals(2, server.requests(PATH));
+        assertEquals(0.0, meterRegistry.get("http.client.circuit.open").gauge().value());
+    }
+
+    @Test
+    void zeroFailureThresholdLeavesOutTheBreaker() {
+        server.on(PATH, Response.status(500));
+        WebClient client = client(4, 0);
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(WebClientResponseException.class, () -> call(client));
+        }
+
+        assertEquals(3, server.requests(PATH));
+        assertNull(meterRegistry.find("http.client.circuit.open").gauge());
+    }
+}
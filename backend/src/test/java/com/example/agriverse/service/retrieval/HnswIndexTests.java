@@ -0,0 +1,113 @@
+package com.example.agriverse.service.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTests {
+
+    private static final int DIMENSION = 32;
+
+    private static List<float[]> randomUnitVectors(int count, long seed) {
+        Random random = new Random(seed);
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] v = new float[DIMENSION];
+            double norm = 0;
+            for (int d = 0; d < DIMENSION; d++) {
+                v[d] = (float) random.nextGaussian();
+                norm += v[d] * v[d];
+            }
+            for (int d = 0; d < DIMENSION; d++) {
+                v[d] /= (float) Math.sqrt(norm);
+            }
+            vectors.add(v);
+        }
+        return vectors;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+
+    private static HnswIndex indexOf(List<float[]> vectors) {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 64);
+        vectors.forEach(index::add);
+        return index;
+    }
+
+    @Test
+    void findsExactVectorFirst() {
+        List<float[]> vectors = randomUnitVectors(500, 1);
+        HnswIndex index = indexOf(vectors);
+
+        for (int node : new int[] {0, 123, 499}) {
+            List<HnswIndex.Hit> hits = index.search(vectors.get(node), 1, 32);
+            assertEquals(node, hits.get(0).node());
+            assertEquals(1.0f, hits.get(0).score(), 1e-4);
+        }
+    }
+
+    @Test
+    void recallAgainstBruteForceIsHigh() {
+        List<float[]> vectors = randomUnitVectors(1000, 2);
+        HnswIndex index = indexOf(vectors);
+        List<float[]> queries = randomUnitVectors(50, 3);
+
+        int found = 0;
+        for (float[] query : queries) {
+            List<Integer> exact = IntStream.range(0, vectors.size()).boxed()
+                    .sorted(Comparator.comparingDouble(n -> -dot(query, vectors.get(n))))
+                    .limit(10)
+                    .toList();
+            for (HnswIndex.Hit hit : index.search(query, 10, 64)) {
+                if (exact.contains(hit.node())) found++;
+            }
+        }
+        assertTrue(found >= 0.9 * queries.size() * 10, "recall@10 was " + found / (queries.size() * 10.0));
+    }
+
+    @Test
+    void removedNodesAreNotReturned() {
+        List<float[]> vectors = randomUnitVectors(200, 4);
+        HnswIndex index = indexOf(vectors);
+
+        index.remove(42);
+        List<HnswIndex.Hit> hits = index.search(vectors.get(42), 5, 32);
+
+        assertEquals(5, hits.size());
+        assertTrue(hits.stream().noneMatch(h -> h.node() == 42));
+        assertEquals(1, index.removedCount());
+    }
+
+    @Test
+    void compactedIndexHoldsOnlyLiveNodes() {
+        List<float[]> vectors = randomUnitVectors(300, 5);
+        HnswIndex index = indexOf(vectors);
+        for (int node = 0; node < 300; node += 3) {
+            index.remove(node);
+        }
+
+        HnswIndex.Compacted compacted = index.compacted();
+
+        assertEquals(200, compacted.index().size());
+        assertEquals(0, compacted.index().removedCount());
+        assertEquals(-1, compacted.newIds()[0]);
+        assertEquals(0, compacted.newIds()[1]);
+        assertEquals(1, compacted.newIds()[2]);
+        for (int node : new int[] {1, 151, 299}) {
+            int newId = compacted.newIds()[node];
+            assertEquals(newId, compacted.index().search(vectors.get(node), 1, 32).get(0).node());
+        }
+        // The original is left as it was
+        assertEquals(300, index.size());
+    }
+}
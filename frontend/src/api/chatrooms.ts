@@ -1,5 +1,5 @@
 // src/api/chatrooms.ts
-import apiClient from "@/api/client";
+import apiClient, { API_URL } from "@/api/client";
 
 export type ChatRoomStatus = "ACTIVE" | "CLOSED";
 export type ChatRole = "OFFICER" | "FARMER" | "ADMIN" | "AI_ASSISTANT";
@@ -42,9 +42,72 @@ export type ChatMessage = {
   targetType?: string | null;
   content: string;
   type: MessageType;
+  /** True while an AI reply is still streaming in. */
+  draft?: boolean;
   createdAt: string;
 };
 
+export type ChatStreamEvent =
+  | { event: "ai-started"; messageId: number }
+  | { event: "ai-token"; messageId: number; delta: string }
+  | { event: "ai-done"; messageId: number; content: string }
+  | { event: "ai-failed"; messageId: number };
+
+/**
+ * Subscribe to live room events (streamed AI tokens) over SSE.
+ * Uses fetch instead of EventSource so the JWT can be sent as a header.
+ * Returns a function that closes the stream.
+ */
+export function subscribeChatStream(
+  chatId: number,
+  onEvent: (e: ChatStreamEvent) => void
+): () => void {
+  const controller = new AbortController();
+  const token = localStorage.getItem("agriverse_token");
+
+  (async () => {
+    const res = await fetch(`${API_URL}/api/chats/${chatId}/stream`, {
+      headers: {
+        Accept: "text/event-stream",
+        ...(token ? { Authorization: `Bearer ${token}` } : {}),
+      },
+      signal: controller.signal,
+    });
+    if (!res.ok || !res.body) return;
+
+    const reader = res.body.pipeThrough(new TextDecoderStream()).getReader();
+    let buffer = "";
+    for (;;) {
+      const { value, done } = await reader.read();
+      if (done) break;
+      buffer += value;
+
+      let sep: number;
+      while ((sep = buffer.indexOf("\n\n")) >= 0) {
+        const frame = buffer.slice(0, sep);
+        buffer = buffer.slice(sep + 2);
+
+        let name = "message";
+        const data: string[] = [];
+        for (const line of frame.split("\n")) {
+          if (line.startsWith("event:")) name = line.slice(6).trim();
+          else if (line.startsWith("data:")) data.push(line.slice(5));
+        }
+        if (data.length === 0) continue;
+        try {
+          onEvent({ event: name, ...JSON.parse(data.join("\n")) } as ChatStreamEvent);
+        } catch {
+          // ignore malformed frames
+        }
+      }
+    }
+  })().catch(() => {
+    // stream closed or aborted; polling keeps the room up to date
+  });
+
+  return () => controller.abort();
+}
+
 export const chatRoomsApi = {
   createFromIssues: async (data: {
     title: string;
@@ -90,6 +90,9 @@ export const issuesApi = {
     locationText?: string;
     forwardMode?: "pool" | "nearest";
     images?: File[] | Blob[];
+    /** From mlPredict: images already on the server, sent instead of `images` */
+    uploadTokens?: string[];
+    predictionId?: number;
   }): Promise<Issue> => {
     const fd = new FormData();
     fd.append("predictedDisease", data.predictedDisease);
@@ -101,6 +104,10 @@ export const issuesApi = {
     fd.append("longitude", String(data.longitude));
     if (data.locationText) fd.append("locationText", data.locationText);
     if (data.forwardMode) fd.append("forwardMode", data.forwardMode);
+    if (data.predictionId != null) fd.append("predictionId", String(data.predictionId));
+    if (data.uploadTokens) {
+      data.uploadTokens.forEach((token) => fd.append("uploadToken", token));
+    }
     if (data.images) {
       data.images.forEach((img) => fd.append("image", img, "leaf.jpg"));
     }
@@ -30,6 +30,12 @@ export type MlPredictionResponse = {
 
   /** Per-image breakdown (simplified structure to avoid deep recursion issues if needed, but here we reuse the type) */
   allPredictions?: MlPredictionResponse[];
+
+  /** Id of the best prediction; pass to create-issue together with uploadTokens. */
+  predictionId?: number | null;
+
+  /** Per image (same order as uploaded): lets create-issue reuse the image instead of re-uploading it. */
+  uploadTokens?: (string | null)[];
 };
 
 /** POST /api/ml/predict — multiple images supported */
@@ -43,13 +49,18 @@ export async function mlPredict(images: Blob[]) {
   return res.data;
 }
 
+export type AdviceTranslationStatus = "READY" | "PENDING" | "FAILED" | "UNAVAILABLE";
+
 export type AdviceData = {
+  /** Used to fetch the Bangla translation; absent for uncached fallback advice. */
+  adviceId?: string | null;
+  translationStatus?: AdviceTranslationStatus | null;
   summary: string;
   immediateActions: string[];
   prevention: string[];
   whyThisHappens: string[];
   whenToEscalate: string;
-  // Bangla translations (null if translation failed)
+  // Bangla translations (null until translationStatus is READY)
   summaryBn?: string | null;
   immediateActionsBn?: string[] | null;
   preventionBn?: string[] | null;
@@ -63,7 +74,7 @@ export type MlAdviceResponse = {
   advice: AdviceData;
 };
 
-/** POST /api/ml/advice — returns structured advice from local Ollama */
+/** POST /api/ml/advice — returns English advice from local Ollama; Bangla follows via mlAdviceTranslation */
 export async function mlAdvice(
   cropName: string,
   diseaseName: string,
@@ -76,3 +87,9 @@ export async function mlAdvice(
   });
   return res.data;
 }
+
+/** GET /api/ml/advice/{adviceId}/bn — the same advice with Bangla fields once translated */
+export async function mlAdviceTranslation(adviceId: string) {
+  const res = await apiClient.get<AdviceData>(`/api/ml/advice/${encodeURIComponent(adviceId)}/bn`);
+  return res.data;
+}
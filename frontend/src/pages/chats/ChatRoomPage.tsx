@@ -1,7 +1,7 @@
 import { useCallback, useEffect, useRef, useState } from "react";
 import { useParams, Link, useNavigate } from "react-router-dom";
 import BackButton from "@/components/BackButton";
-import { chatRoomsApi, ChatRoom, ChatMessage, ChatMember } from "@/api/chatrooms";
+import { chatRoomsApi, subscribeChatStream, ChatRoom, ChatMessage, ChatMember } from "@/api/chatrooms";
 import { issuesApi } from "@/api/issues";
 import { useAuth } from "@/context/AuthContext";
 import IssueDetailModal from "@/components/IssueDetailModal";
@@ -535,6 +535,8 @@ export default function ChatRoomPage() {
   const canSend = isMember && !isClosed;
 
   /* ---- Data loading ---- */
+  const liveContentRef = useRef<Record<number, string>>({});
+
   const load = useCallback(async () => {
     if (!roomId || isNaN(roomId)) return;
 
@@ -544,7 +546,13 @@ export default function ChatRoomPage() {
         chatRoomsApi.messages(roomId, 0, 200),
       ]);
       setRoom(roomRes);
-      setMessages(msgRes.content ?? []);
+      // Drafts may be behind the tokens already streamed in; keep the longer text
+      const live = liveContentRef.current;
+      setMessages(
+        (msgRes.content ?? []).map((m: ChatMessage) =>
+          m.draft && (live[m.id]?.length ?? 0) > m.content.length ? { ...m, content: live[m.id] } : m
+        )
+      );
     } catch (err) {
       console.error("Failed to load chat room:", err);
     }
@@ -575,6 +583,32 @@ export default function ChatRoomPage() {
     // eslint-disable-next-line react-hooks/exhaustive-deps
   }, [roomId]);
 
+  // Live AI token stream (polling above still reconciles everything)
+  useEffect(() => {
+    if (!roomId || isNaN(roomId)) return;
+
+    return subscribeChatStream(roomId, (e) => {
+      const live = liveContentRef.current;
+      if (e.event === "ai-started" || e.event === "ai-failed") {
+        delete live[e.messageId];
+        load().catch(() => {});
+        return;
+      }
+      if (e.event === "ai-token") {
+        live[e.messageId] = (live[e.messageId] ?? "") + e.delta;
+      } else {
+        delete live[e.messageId];
+      }
+      const content = e.event === "ai-token" ? live[e.messageId] : e.content;
+      setMessages((prev) =>
+        prev.map((m) =>
+          m.id === e.messageId ? { ...m, content, draft: e.event === "ai-token" } : m
+        )
+      );
+    });
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, [roomId]);
+
   // Auto-scroll on new messages
   useEffect(() => {
     bottomRef.current?.scrollIntoView({ behavior: "smooth" });
@@ -834,7 +868,7 @@ export default function ChatRoomPage() {
 
                           <div className="rounded-2xl px-4 py-2 text-sm border border-violet-500/30 bg-violet-50/50 dark:bg-violet-950/20">
                             <div className="whitespace-pre-wrap break-words">
-                              {m.content}
+                              {m.content || (m.draft ? "\u2026" : "")}
                             </div>
                           </div>
 
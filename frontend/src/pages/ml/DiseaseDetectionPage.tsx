@@ -12,6 +12,7 @@ import {
 
 import {
   mlAdvice,
+  mlAdviceTranslation,
   mlPredict,
   MlPredictionResponse,
   AdviceData,
@@ -79,6 +80,10 @@ const STEPS = [
 
 type Step = (typeof STEPS)[number]["key"];
 
+// Bangla advice is translated after the English is shown
+const TRANSLATION_POLL_MS = 2000;
+const TRANSLATION_MAX_POLLS = 60;
+
 function getStepIndex(step: Step) {
   return STEPS.findIndex((s) => s.key === step);
 }
@@ -222,6 +227,8 @@ export default function DiseaseDetectionPage() {
   const [previewUrls, setPreviewUrls] = useState<string[]>([]);
 
   const [prediction, setPrediction] = useState<MlPredictionResponse | null>(null);
+  // Images stored by /predict, so creating the issue does not upload them again
+  const [upload, setUpload] = useState<{ predictionId?: number; tokens: string[] } | null>(null);
   const [isLeafDetected, setIsLeafDetected] = useState<boolean | null>(null);
   const [notLeaf, setNotLeaf] = useState<string | null>(null);
 
@@ -260,6 +267,37 @@ export default function DiseaseDetectionPage() {
     };
   }, [previewUrls]);
 
+  // ─── Poll for the Bangla translation while it is pending ───
+  const adviceId = advice?.adviceId;
+  const translationPending = advice?.translationStatus === "PENDING";
+  useEffect(() => {
+    if (!adviceId || !translationPending) return;
+
+    let cancelled = false;
+    let attempts = 0;
+    let timer: number | undefined;
+    const poll = async () => {
+      attempts++;
+      try {
+        const updated = await mlAdviceTranslation(adviceId);
+        if (cancelled) return;
+        if (updated.translationStatus !== "PENDING" || attempts >= TRANSLATION_MAX_POLLS) {
+          setAdvice(updated);
+          return;
+        }
+      } catch {
+        return; // advice expired or server unreachable; keep the English advice
+      }
+      if (!cancelled) timer = window.setTimeout(poll, TRANSLATION_POLL_MS);
+    };
+    timer = window.setTimeout(poll, TRANSLATION_POLL_MS);
+
+    return () => {
+      cancelled = true;
+      window.clearTimeout(timer);
+    };
+  }, [adviceId, translationPending]);
+
   // ─── Current step ───
   const currentStep: Step = useMemo(() => {
     if (prediction && adviceReady) return "forward";
@@ -271,6 +309,7 @@ export default function DiseaseDetectionPage() {
   // ─── Helpers ───
   const resetAll = useCallback(() => {
     setPrediction(null);
+    setUpload(null);
     setIsLeafDetected(null);
     setNotLeaf(null);
 
@@ -404,6 +443,11 @@ export default function DiseaseDetectionPage() {
       const res: any = await mlPredict(files);
       const norm = normalizePredictResponse(res);
 
+      const tokens: (string | null)[] = res?.uploadTokens ?? [];
+      if (tokens.length === files.length && tokens.every((t) => t)) {
+        setUpload({ predictionId: res?.predictionId ?? undefined, tokens: tokens as string[] });
+      }
+
       if (norm.error) throw new Error(norm.error);
 
       // Not a leaf
@@ -554,7 +598,9 @@ export default function DiseaseDetectionPage() {
           latitude: lat,
           longitude: lng,
           forwardMode,
-          images: files,
+          ...(upload
+            ? { uploadTokens: upload.tokens, predictionId: upload.predictionId }
+            : { images: files }),
         });
 
         toast({
@@ -576,7 +622,7 @@ export default function DiseaseDetectionPage() {
         setBusyForward(false);
       }
     },
-    [permissionToForward, parsed.crop, parsed.disease, advice, adviceReady, files, toast, navigate, prediction, issueNote, forwardMode]
+    [permissionToForward, parsed.crop, parsed.disease, advice, adviceReady, files, upload, toast, navigate, prediction, issueNote, forwardMode]
   );
 
   // ─── Render ───
@@ -945,6 +991,12 @@ export default function DiseaseDetectionPage() {
                   </div>
 
                   <div className="flex items-center gap-2">
+                    {adviceReady && translationPending && (
+                      <span className="text-xs text-muted-foreground flex items-center gap-1">
+                        <Loader2 className="h-3 w-3 animate-spin" /> বাংলা…
+                      </span>
+                    )}
+
                     {/* EN/BN toggle — only show when advice is ready and Bangla exists */}
                     {adviceReady && advice?.summaryBn && (
                       <div className="flex rounded-md border border-border overflow-hidden text-xs">
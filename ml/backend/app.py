@@ -20,7 +20,10 @@ UPLOAD_DIR = os.path.join(BASE_DIR, "uploads")
 PKL_PATH = os.path.join(MODELS_DIR, "plant_disease_classifier.pkl")
 EXTRACTOR_PATH = os.path.join(MODELS_DIR, "mobilenetv2_feature_extractor.keras")
 
-os.makedirs(UPLOAD_DIR, exist_ok=True)
+# The backend keeps the uploaded photo; set SAVE_UPLOADS=1 to also keep a copy here
+SAVE_UPLOADS = os.environ.get("SAVE_UPLOADS", "0") == "1"
+if SAVE_UPLOADS:
+    os.makedirs(UPLOAD_DIR, exist_ok=True)
 
 app = Flask(__name__)
 CORS(app)
@@ -53,84 +56,164 @@ def health():
     })
 
 
-@app.post("/predict")
-def predict():
-    if "image" not in request.files:
-        return jsonify({"error": "No file field named 'image' found."}), 400
+ALLOWED_EXTENSIONS = [".jpg", ".jpeg", ".png", ".webp", ".bmp"]
+MAX_BATCH = int(os.environ.get("PREDICT_MAX_BATCH", "32"))
 
-    f = request.files["image"]
+
+def leaf_check(f):
+    """
+    Validates and decodes one uploaded file (saving it only when
+    SAVE_UPLOADS is set), then runs the leaf filter.
+    Returns (result, crop_bgr, status): result is the response dict so far,
+    crop_bgr is the leaf crop to classify (None if the image is rejected or
+    invalid), status is the HTTP status a single-image request should use.
+    """
     if not f or f.filename.strip() == "":
-        return jsonify({"error": "Empty filename / no image uploaded."}), 400
+        return {"error": "Empty filename / no image uploaded."}, None, 400
 
     ext = os.path.splitext(f.filename)[1].lower()
-    if ext not in [".jpg", ".jpeg", ".png", ".webp", ".bmp"]:
-        return jsonify({"error": "Unsupported image type. Use jpg/png/webp/bmp."}), 400
-
-    save_name = f"{uuid.uuid4().hex}{ext}"
-    save_path = os.path.join(UPLOAD_DIR, save_name)
-    f.save(save_path)
-
-    try:
-        img_bgr = cv2.imread(save_path)
-        if img_bgr is None:
-            return jsonify({"error": "Failed to read image."}), 400
-
-        # strong leaf check + crop
-        ok, crop_bgr, info = detect_and_crop_leaf(
-            img_bgr,
-            min_green_ratio=0.04,
-            min_area_ratio=0.015,
-            min_fill_ratio=0.25,
-            max_components=12,
-            pad=0.10,
-        )
-
-        if not ok:
-            return jsonify({
-                "is_leaf": False,
-                "reason": info.get("reason", "Not a leaf."),
-                "leaf_debug": info,
-                "saved_as": save_name
-            }), 200
-
-        # disease prediction
-        crop_rgb = cv2.cvtColor(crop_bgr, cv2.COLOR_BGR2RGB)
-        pil_img = Image.fromarray(crop_rgb)
-
-        x = preprocess_image(pil_img)
-        feat = extractor(x, training=False).numpy()
-
-        pred_idx = int(clf.predict(feat)[0])
-        pred_name = class_names[pred_idx]
-
+    if ext not in ALLOWED_EXTENSIONS:
+        return {"error": "Unsupported image type. Use jpg/png/webp/bmp."}, None, 400
+
+    data = f.read()
+    save_name = None
+    if SAVE_UPLOADS:
+        save_name = f"{uuid.uuid4().hex}{ext}"
+        with open(os.path.join(UPLOAD_DIR, save_name), "wb") as out:
+            out.write(data)
+
+    img_bgr = cv2.imdecode(np.frombuffer(data, dtype=np.uint8), cv2.IMREAD_COLOR)
+    if img_bgr is None:
+        return {"error": "Failed to read image."}, None, 400
+
+    # strong leaf check + crop
+    ok, crop_bgr, info = detect_and_crop_leaf(
+        img_bgr,
+        min_green_ratio=0.04,
+        min_area_ratio=0.015,
+        min_fill_ratio=0.25,
+        max_components=12,
+        pad=0.10,
+    )
+
+    if not ok:
+        return {
+            "is_leaf": False,
+            "reason": info.get("reason", "Not a leaf."),
+            "leaf_debug": info,
+            "saved_as": save_name
+        }, None, 200
+
+    return {
+        "is_leaf": True,
+        "leaf_probability": info.get("crop_leaf_prob", info.get("whole_leaf_prob")),
+        "leaf_debug": info,
+        "saved_as": save_name
+    }, crop_bgr, 200
+
+
+def classify(crops_bgr):
+    """
+    Runs the feature extractor once over all crops (one batched forward pass)
+    and returns one prediction dict per crop, in order.
+    """
+    batch = np.concatenate([
+        preprocess_image(Image.fromarray(cv2.cvtColor(crop, cv2.COLOR_BGR2RGB)))
+        for crop in crops_bgr
+    ], axis=0)
+    feats = extractor(batch, training=False).numpy()
+
+    pred_idx = clf.predict(feats)
+    proba = clf.predict_proba(feats) if hasattr(clf, "predict_proba") else None
+
+    predictions = []
+    for row in range(len(crops_bgr)):
+        idx = int(pred_idx[row])
         confidence = None
         top5 = None
 
-        if hasattr(clf, "predict_proba"):
-            proba = clf.predict_proba(feat)[0]
-            confidence = float(np.max(proba))
+        if proba is not None:
+            confidence = float(np.max(proba[row]))
 
             k = min(5, len(class_names))
-            top_idx = np.argsort(proba)[::-1][:k]
+            top_idx = np.argsort(proba[row])[::-1][:k]
             top5 = [
-                {"label": class_names[i], "prob": float(proba[i])}
+                {"label": class_names[i], "prob": float(proba[row][i])}
                 for i in top_idx
             ]
 
-        return jsonify({
-            "is_leaf": True,
-            "leaf_probability": info.get("crop_leaf_prob", info.get("whole_leaf_prob")),
-            "leaf_debug": info,
-            "prediction_index": pred_idx,
-            "prediction": pred_name,
+        predictions.append({
+            "prediction_index": idx,
+            "prediction": class_names[idx],
             "confidence": confidence,
             "top5": top5,
-            "saved_as": save_name
         })
+    return predictions
+
+
+@app.post("/predict")
+def predict():
+    if "image" not in request.files:
+        return jsonify({"error": "No file field named 'image' found."}), 400
+
+    try:
+        result, crop_bgr, status = leaf_check(request.files["image"])
+        if crop_bgr is None:
+            return jsonify(result), status
+
+        # disease prediction
+        result.update(classify([crop_bgr])[0])
+        return jsonify(result)
 
     except Exception as e:
         return jsonify({"error": str(e)}), 500
 
 
+@app.post("/predict-batch")
+def predict_batch():
+    """
+    Same as /predict for several images (file field "images", repeated).
+    The leaf filter runs per image; all leaf crops then go through a single
+    batched feature-extractor pass. Returns {"results": [...]} in upload
+    order, each entry shaped like a /predict response; a bad image gets an
+    "error" entry without failing the others. "statuses" holds, per entry,
+    the HTTP status /predict would have answered that image with (400 for
+    an invalid image, 500 for a failure of the service), so clients can tell
+    the image's own errors from transient ones.
+    """
+    files = request.files.getlist("images")
+    if not files:
+        return jsonify({"error": "No file field named 'images' found."}), 400
+    if len(files) > MAX_BATCH:
+        return jsonify({"error": f"Too many images in one batch (max {MAX_BATCH})."}), 400
+
+    results = []
+    statuses = []
+    crops = []
+    crop_rows = []
+    for f in files:
+        try:
+            result, crop_bgr, status = leaf_check(f)
+        except Exception as e:
+            result, crop_bgr, status = {"error": str(e)}, None, 500
+        if crop_bgr is not None:
+            crops.append(crop_bgr)
+            crop_rows.append(len(results))
+        results.append(result)
+        statuses.append(status)
+
+    if crops:
+        try:
+            for row, prediction in zip(crop_rows, classify(crops)):
+                results[row].update(prediction)
+        except Exception as e:
+            for row in crop_rows:
+                results[row] = {"error": str(e)}
+                statuses[row] = 500
+
+    return jsonify({"results": results, "statuses": statuses})
+
+
 if __name__ == "__main__":
-    app.run(host="0.0.0.0", port=5000, debug=True)
\ No newline at end of file
+    # threaded: the backend sends the images of one request concurrently
+    app.run(host="0.0.0.0", port=5000, debug=True, threaded=True)
\ No newline at end of file
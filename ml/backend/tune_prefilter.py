@@ -0,0 +1,99 @@
+"""
+Tunes the backend's leaf pre-filter (ml.prefilter.min-green-ratio) against
+detect_and_crop_leaf.
+
+For every image under the given directories this computes the green ratio
+the way the Java LeafPrefilter does (downscale to the backend's max edge,
+sample a ~64x64 grid, count pixels in the HSV green range, no morphology)
+and the decision of detect_and_crop_leaf with the parameters app.py uses.
+It then reports, per candidate threshold, how many images the pre-filter
+would reject that the ML service accepts (must be 0) and how many of the ML
+service's rejections it would catch.
+
+Usage (from ml/backend, in the ML service's environment):
+    python tune_prefilter.py ../../Basic_dataset path/to/non_leaf_samples
+    python tune_prefilter.py --max-edge 512 photos/
+"""
+
+import argparse
+import os
+
+import cv2
+import numpy as np
+
+from leaf_filter import detect_and_crop_leaf
+
+IMAGE_EXTENSIONS = {".jpg", ".jpeg", ".png", ".bmp", ".webp"}
+SAMPLE_GRID = 64
+THRESHOLDS = [0.0025, 0.005, 0.0075, 0.01, 0.015, 0.02, 0.025, 0.03, 0.04]
+
+
+def prefilter_ratio(img_bgr, max_edge):
+    h, w = img_bgr.shape[:2]
+    scale = min(1.0, max_edge / max(h, w))
+    if scale < 1.0:
+        img_bgr = cv2.resize(img_bgr, (max(1, round(w * scale)), max(1, round(h * scale))),
+                             interpolation=cv2.INTER_AREA)
+        h, w = img_bgr.shape[:2]
+    step_x = max(1, w // SAMPLE_GRID)
+    step_y = max(1, h // SAMPLE_GRID)
+    samples = img_bgr[step_y // 2::step_y, step_x // 2::step_x]
+    hsv = cv2.cvtColor(samples, cv2.COLOR_BGR2HSV)
+    mask = cv2.inRange(hsv, np.array([20, 20, 20], np.uint8), np.array([100, 255, 255], np.uint8))
+    return float((mask > 0).mean()), img_bgr
+
+
+def images(roots):
+    for root in roots:
+        for folder, _, files in os.walk(root):
+            for name in sorted(files):
+                if os.path.splitext(name)[1].lower() in IMAGE_EXTENSIONS:
+                    yield os.path.join(folder, name)
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Tune the backend leaf pre-filter threshold.")
+    parser.add_argument("dirs", nargs="+", help="directories of leaf and non-leaf images")
+    parser.add_argument("--max-edge", type=int, default=512, help="ml.preprocess.max-edge")
+    args = parser.parse_args()
+
+    rows = []
+    for path in images(args.dirs):
+        img = cv2.imread(path)
+        if img is None:
+            continue
+        ratio, sent = prefilter_ratio(img, args.max_edge)
+        # Same parameters as leaf_check in app.py, on the image the backend sends
+        ok, _, _ = detect_and_crop_leaf(sent, min_green_ratio=0.04, min_area_ratio=0.015,
+                                        min_fill_ratio=0.25, max_components=12, pad=0.10)
+        rows.append((path, ratio, ok))
+
+    if not rows:
+        print("No images found")
+        return
+
+    accepted = [r for r in rows if r[2]]
+    rejected = [r for r in rows if not r[2]]
+    print(f"{len(rows)} images: ML leaf filter accepts {len(accepted)}, rejects {len(rejected)}")
+    if accepted:
+        print(f"lowest pre-filter green ratio among accepted images: {min(r[1] for r in accepted):.4f}")
+
+    print(f"\n{'threshold':>10} {'wrongly rejected':>17} {'rejections caught':>18}")
+    best = None
+    for t in THRESHOLDS:
+        wrong = sum(1 for r in accepted if r[1] < t)
+        caught = sum(1 for r in rejected if r[1] < t)
+        share = f"{caught}/{len(rejected)}" if rejected else "-"
+        print(f"{t:>10} {wrong:>17} {share:>18}")
+        if wrong == 0:
+            best = t
+
+    if best is not None:
+        print(f"\nHighest threshold with no wrong rejections: {best} "
+              f"(leave a margin below it for ml.prefilter.min-green-ratio)")
+    for path, ratio, _ in sorted(accepted, key=lambda r: r[1])[:5]:
+        print(f"  accepted, low ratio {ratio:.4f}: {path}")
+
+
+if __name__ == "__main__":
+    main()